@@ -0,0 +1,26 @@
+package com.ogt.gis.config;
+
+import com.ogt.gis.util.GeoJsonGeometryWriter;
+import com.ogt.gis.util.JtsGeoJsonModule;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Serialización GeoJSON de las geometrías JTS. Spring Boot registra el módulo en el
+ * ObjectMapper de la aplicación.
+ */
+@Configuration
+public class GeoJsonConfig {
+
+    /** Decimales de las coordenadas: 7 en grados son ~1 cm. */
+    @Bean
+    public GeoJsonGeometryWriter geoJsonGeometryWriter(@Value("${gis.geojson.decimals:7}") int decimals) {
+        return new GeoJsonGeometryWriter(decimals);
+    }
+
+    @Bean
+    public JtsGeoJsonModule jtsGeoJsonModule(GeoJsonGeometryWriter writer) {
+        return new JtsGeoJsonModule(writer);
+    }
+}
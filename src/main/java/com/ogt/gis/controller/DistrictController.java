@@ -1,14 +1,19 @@
 package com.ogt.gis.controller;
 
+import com.ogt.gis.dto.CoordinateBatchDTO;
 import com.ogt.gis.entity.DistrictBoundary;
+import com.ogt.gis.service.DistrictBatchService;
 import com.ogt.gis.service.DistrictService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 
 @RestController
@@ -18,6 +23,7 @@ import java.util.UUID;
 public class DistrictController {
 
     private final DistrictService districtService;
+    private final DistrictBatchService districtBatchService;
 
     @GetMapping
     public ResponseEntity<List<DistrictBoundary>> getAll() {
@@ -34,7 +40,35 @@ public class DistrictController {
      * Compatible directamente con Leaflet para renderizar polígonos.
      */
     @GetMapping("/geojson")
-    public ResponseEntity<Map<String, Object>> getAllAsGeoJson() {
-        return ResponseEntity.ok(districtService.getAllAsGeoJson());
+    public ResponseEntity<StreamingResponseBody> getAllAsGeoJson() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(districtService.streamAllAsGeoJson());
+    }
+
+    /**
+     * Distrito de muchos puntos por vez, con arreglos x (lon) / y (lat) empaquetados.
+     *
+     * POST /api/gis/districts/lookup
+     * Body: { "srid": 4326, "x": [-40.31, -40.32], "y": [-20.36, -20.37] }
+     * Respuesta: { "districts": [ {"id": "...", "code": "...", "name": "..."}, null ] }
+     */
+    @PostMapping(value = "/lookup", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> lookup(@RequestBody @Valid CoordinateBatchDTO points) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(districtBatchService.locatePacked(points));
+    }
+
+    /**
+     * Ídem en streaming: un punto {"x":..,"y":..,"srid":..} por línea, un distrito (o null) por línea.
+     * Una línea inválida corta la respuesta con {"error": "Línea N: ..."} en su lugar.
+     */
+    @PostMapping(value = "/lookup", consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> lookupStream(InputStream body) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(districtBatchService.locateNdjson(body));
     }
 }
\ No newline at end of file
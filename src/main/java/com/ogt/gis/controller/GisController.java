@@ -1,16 +1,21 @@
 package com.ogt.gis.controller;
 
+import com.ogt.gis.dto.CoordinateBatchDTO;
 import com.ogt.gis.dto.CoordinateDTO;
 import com.ogt.gis.dto.FeatureResponseDTO;
+import com.ogt.gis.service.CoordinateBatchService;
 import com.ogt.gis.service.CoordinateService;
 import com.ogt.gis.service.GeometryValidationService;
 import com.ogt.gis.service.SpatialQueryService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -21,7 +26,11 @@ import java.util.UUID;
 @PreAuthorize("hasAnyRole('ADMIN', 'OPERATOR', 'TECHNICIAN', 'FISCAL')")
 public class GisController {
 
+    /** Cursor de la página siguiente de {@code /within}. */
+    static final String NEXT_PAGE_HEADER = "X-Next-After";
+
     private final CoordinateService coordinateService;
+    private final CoordinateBatchService coordinateBatchService;
     private final SpatialQueryService spatialQueryService;
     private final GeometryValidationService validationService;
 
@@ -34,6 +43,38 @@ public class GisController {
         return ResponseEntity.ok(coordinateService.convert(source, targetSrid));
     }
 
+    /**
+     * Conversión en lote con arreglos x/y empaquetados, todos en el mismo SRID.
+     *
+     * POST /api/gis/convert/batch?targetSrid=31984
+     * Body: { "srid": 4326, "x": [-40.31, -40.32], "y": [-20.36, -20.37] }
+     */
+    @PostMapping(value = "/convert/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> convertBatch(
+            @RequestBody @Valid CoordinateBatchDTO batch,
+            @RequestParam(defaultValue = "4326") Integer targetSrid
+    ) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(coordinateBatchService.convertPacked(batch, targetSrid));
+    }
+
+    /**
+     * Conversión en lote en streaming: una coordenada {"x":..,"y":..,"srid":..} por línea,
+     * se responde una línea por coordenada a medida que se convierten. Una línea inválida corta
+     * la respuesta con {"error": "Línea N: ..."} en su lugar.
+     */
+    @PostMapping(value = "/convert/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> convertStream(
+            InputStream body,
+            @RequestParam(defaultValue = "4326") Integer targetSrid
+    ) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(coordinateBatchService.convertNdjson(body, targetSrid));
+    }
+
     // 2. Validación de Geometría (WKT)
     @PostMapping("/validate")
     public ResponseEntity<?> validateGeometry(@RequestBody String wkt) {
@@ -98,14 +139,25 @@ public class GisController {
      * ✅ NUEVO - Encuentra features dentro de un polígono GeoJSON.
      *
      * Ejemplo:
-     * POST /api/gis/within?layerCode=DISTRICTS
+     * POST /api/gis/within?layerCode=DISTRICTS&limit=1000
      * Body: { "type": "Polygon", "coordinates": [[[-40.3, -20.3], ...]] }
+     *
+     * Sin {@code limit} devuelve todos los features. Con {@code limit}, si quedan más, la
+     * respuesta trae el header {@value #NEXT_PAGE_HEADER} con el {@code after} de la página
+     * siguiente (mismo request con {@code after=<valor>}).
      */
     @PostMapping("/within")
     public ResponseEntity<List<FeatureResponseDTO>> findWithin(
             @RequestBody Map<String, Object> geoJsonPolygon,
-            @RequestParam String layerCode
+            @RequestParam String layerCode,
+            @RequestParam(required = false) UUID after,
+            @RequestParam(required = false) Integer limit
     ) {
-        return ResponseEntity.ok(spatialQueryService.findWithin(geoJsonPolygon, layerCode));
+        SpatialQueryService.WithinPage page = spatialQueryService.findWithin(geoJsonPolygon, layerCode, after, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextAfter() != null) {
+            response.header(NEXT_PAGE_HEADER, page.nextAfter().toString());
+        }
+        return response.body(page.features());
     }
 }
\ No newline at end of file
@@ -4,9 +4,11 @@ import com.ogt.common.audit.Audit;
 import com.ogt.gis.service.GridGeoJsonService;
 import com.ogt.gis.service.GridService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
@@ -53,10 +55,12 @@ public class GridController {
      * If no scale specified, returns all.
      */
     @GetMapping("/geojson")
-    public ResponseEntity<Map<String, Object>> getGridsGeoJson(
+    public ResponseEntity<StreamingResponseBody> getGridsGeoJson(
             @RequestParam(required = false, defaultValue = "all") String scale
     ) {
-        return ResponseEntity.ok(gridGeoJsonService.getGridsAsGeoJson(scale));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(gridGeoJsonService.streamGridsAsGeoJson(scale));
     }
 
     /**
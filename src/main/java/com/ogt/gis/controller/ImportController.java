@@ -26,9 +26,10 @@ public class ImportController {
     public ResponseEntity<?> upload(
             @RequestParam("file") MultipartFile file,
             @RequestParam("layerCode") String layerCode,
-            @RequestParam(value = "srid", required = false) Integer srid
+            @RequestParam(value = "srid", required = false) Integer srid,
+            @RequestParam(value = "mode", defaultValue = "APPEND") String mode
     ) {
-        UUID jobId = importService.queueImport(file, layerCode, srid);
+        UUID jobId = importService.queueImport(file, layerCode, srid, mode);
         return ResponseEntity.ok(jobId);
     }
 
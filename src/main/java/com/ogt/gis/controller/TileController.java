@@ -0,0 +1,131 @@
+package com.ogt.gis.controller;
+
+import com.ogt.common.audit.Audit;
+import com.ogt.gis.service.VectorTileService;
+import lombok.RequiredArgsConstructor;
+import org.locationtech.jts.geom.Envelope;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/gis/tiles")
+@RequiredArgsConstructor
+@PreAuthorize("hasAnyRole('ADMIN', 'OPERATOR', 'TECHNICIAN', 'FISCAL')")
+public class TileController {
+
+    private static final MediaType MVT = MediaType.parseMediaType("application/vnd.mapbox-vector-tile");
+
+    private final VectorTileService vectorTileService;
+
+    /**
+     * Vector tile (MVT) de una capa, esquema XYZ de Web Mercator.
+     *
+     * Ejemplo (Leaflet.VectorGrid / MapLibre):
+     * GET /api/gis/tiles/RISK_ZONES/14/6234/9220.mvt
+     */
+    @GetMapping("/{layerCode}/{z}/{x}/{y}.mvt")
+    public ResponseEntity<byte[]> getTile(
+            @PathVariable String layerCode,
+            @PathVariable int z,
+            @PathVariable int x,
+            @PathVariable int y
+    ) {
+        return tile(vectorTileService.getTile(layerCode, z, x, y));
+    }
+
+    /** Vector tile de los distritos. */
+    @GetMapping("/districts/{z}/{x}/{y}.mvt")
+    public ResponseEntity<byte[]> getDistrictTile(
+            @PathVariable int z,
+            @PathVariable int x,
+            @PathVariable int y
+    ) {
+        return tile(vectorTileService.getDistrictTile(z, x, y));
+    }
+
+    /** Vector tile de la grilla de una escala. */
+    @GetMapping("/grids/{scale}/{z}/{x}/{y}.mvt")
+    public ResponseEntity<byte[]> getGridTile(
+            @PathVariable String scale,
+            @PathVariable int z,
+            @PathVariable int x,
+            @PathVariable int y
+    ) {
+        return tile(vectorTileService.getGridTile(scale, z, x, y));
+    }
+
+    /**
+     * Precarga en la caché los tiles de una capa en un rango de zooms sobre un rectángulo WGS84.
+     * Se procesa en segundo plano; responde con la cantidad de tiles encolados.
+     *
+     * Ejemplo:
+     * POST /api/gis/tiles/RISK_ZONES/seed?minZoom=10&maxZoom=15&minLon=-40.5&minLat=-20.4&maxLon=-40.2&maxLat=-20.1
+     */
+    @PostMapping("/{layerCode}/seed")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Audit(action = "PRECARREGAR_TILES", module = "GIS", resourceType = "Tile", captureParams = true)
+    public ResponseEntity<Map<String, Object>> seedLayer(
+            @PathVariable String layerCode,
+            @RequestParam int minZoom,
+            @RequestParam int maxZoom,
+            @RequestParam double minLon,
+            @RequestParam double minLat,
+            @RequestParam double maxLon,
+            @RequestParam double maxLat
+    ) {
+        long tiles = vectorTileService.seedLayer(layerCode, minZoom, maxZoom, new Envelope(minLon, maxLon, minLat, maxLat));
+        return seeded(layerCode, tiles);
+    }
+
+    @PostMapping("/districts/seed")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Audit(action = "PRECARREGAR_TILES", module = "GIS", resourceType = "Tile", captureParams = true)
+    public ResponseEntity<Map<String, Object>> seedDistricts(
+            @RequestParam int minZoom,
+            @RequestParam int maxZoom,
+            @RequestParam double minLon,
+            @RequestParam double minLat,
+            @RequestParam double maxLon,
+            @RequestParam double maxLat
+    ) {
+        long tiles = vectorTileService.seedDistricts(minZoom, maxZoom, new Envelope(minLon, maxLon, minLat, maxLat));
+        return seeded("districts", tiles);
+    }
+
+    @PostMapping("/grids/{scale}/seed")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Audit(action = "PRECARREGAR_TILES", module = "GIS", resourceType = "Tile", captureParams = true)
+    public ResponseEntity<Map<String, Object>> seedGrid(
+            @PathVariable String scale,
+            @RequestParam int minZoom,
+            @RequestParam int maxZoom,
+            @RequestParam double minLon,
+            @RequestParam double minLat,
+            @RequestParam double maxLon,
+            @RequestParam double maxLat
+    ) {
+        long tiles = vectorTileService.seedGrid(scale, minZoom, maxZoom, new Envelope(minLon, maxLon, minLat, maxLat));
+        return seeded("grid " + scale, tiles);
+    }
+
+    private ResponseEntity<byte[]> tile(byte[] body) {
+        return ResponseEntity.ok()
+                .contentType(MVT)
+                .cacheControl(CacheControl.maxAge(Duration.ofMinutes(5)).cachePrivate())
+                .body(body);
+    }
+
+    private ResponseEntity<Map<String, Object>> seeded(String source, long tiles) {
+        return ResponseEntity.accepted().body(Map.of(
+                "message", "Tile seeding queued",
+                "source", source,
+                "tiles", tiles
+        ));
+    }
+}
@@ -0,0 +1,26 @@
+package com.ogt.gis.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Lote de coordenadas en un mismo SRID, empaquetadas como dos arreglos paralelos
+ * ({@code x[i]}, {@code y[i]}) en lugar de un objeto por punto.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CoordinateBatchDTO {
+    @NotNull(message = "Los valores X son obligatorios")
+    private double[] x; // Longitudes (WGS84) o Estes (UTM)
+
+    @NotNull(message = "Los valores Y son obligatorios")
+    private double[] y; // Latitudes (WGS84) o Nortes (UTM)
+
+    @NotNull(message = "El SRID es obligatorio")
+    private Integer srid; // En la petición: SRID de origen. En la respuesta: SRID destino
+}
@@ -21,4 +21,6 @@ public class MapLayerDTO {
     private String style;   // JSON de estilo
     private Boolean isActive;
     private Integer zIndex;
+    private String keyAttributes; // Atributos que identifican un feature en imports incrementales (ej. "ID_POSTE")
+    private Boolean cacheInMemory; // Servir las consultas espaciales desde un índice en memoria
 }
\ No newline at end of file
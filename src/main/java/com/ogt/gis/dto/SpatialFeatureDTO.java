@@ -2,6 +2,8 @@ package com.ogt.gis.dto;
 
 import lombok.Builder;
 import lombok.Data;
+import org.locationtech.jts.geom.Geometry;
+
 import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.UUID;
@@ -12,7 +14,7 @@ public class SpatialFeatureDTO {
     private UUID id;
     private String layerCode;
     private String externalId;
-    private Map<String, Object> geometry; // GeoJSON
+    private Geometry geometry; // Se serializa como GeoJSON (JtsGeoJsonModule)
     private Map<String, Object> properties;
     private LocalDateTime createdAt;
 }
\ No newline at end of file
@@ -4,7 +4,6 @@ import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.UuidGenerator;
 
-import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
@@ -30,6 +29,12 @@ public class ImportJob {
     @Column(columnDefinition = "NVARCHAR(MAX)")
     private String parameters; // Ej: "SRID:31984"
 
+    @Column(name = "import_mode", length = 20)
+    private String importMode; // APPEND (default), INCREMENTAL, REPLACE
+
+    @Column(name = "target_layer_version")
+    private Integer targetLayerVersion; // REPLACE: versión de la capa que se está cargando (staging)
+
     @Column(name = "file_url", length = 1000)
     private String fileUrl;
 
@@ -60,22 +65,32 @@ public class ImportJob {
     @Column(name = "error_summary", columnDefinition = "NVARCHAR(MAX)")
     private String errorSummary;
 
-    @Column(name = "processing_speed") // filas por segundo
+    @Column(name = "processing_speed") // filas por segundo (media móvil, ver ImportProgressReporter)
     private Double processingSpeed;
 
+    @Column(name = "checkpoint_offset") // registros del archivo ya confirmados (punto de reanudación)
+    private Integer checkpointOffset;
+
+    @Column(name = "checkpoint_written") // registros escritos/publicados hasta el checkpoint
+    private Integer checkpointWritten;
+
+    @Column(name = "stage_metrics", columnDefinition = "NVARCHAR(MAX)") // JSON: throughput por etapa del pipeline
+    private String stageMetrics;
+
+    // Resultado de un import INCREMENTAL
+    @Column(name = "rows_inserted")
+    private Integer rowsInserted;
+
+    @Column(name = "rows_updated")
+    private Integer rowsUpdated;
+
+    @Column(name = "rows_deleted")
+    private Integer rowsDeleted;
+
     public void updateProgress(int processed, int total, int errors) {
         this.rowsProcessed = processed;
         this.totalRows = total;
         this.rowsWithErrors = errors;
         this.progressPercentage = total > 0 ? (int) ((processed * 100.0) / total) : 0;
     }
-
-    public void calculateSpeed() {
-        if (startedAt != null && rowsProcessed != null && rowsProcessed > 0) {
-            long elapsedSeconds = Duration.between(startedAt, LocalDateTime.now()).getSeconds();
-            if (elapsedSeconds > 0) {
-                this.processingSpeed = (double) rowsProcessed / elapsedSeconds;
-            }
-        }
-    }
 }
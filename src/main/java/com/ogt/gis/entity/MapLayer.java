@@ -38,6 +38,23 @@ public class MapLayer {
     @Column(name = "attribute_mapping", columnDefinition = "NVARCHAR(MAX)")
     private String attributeMapping; // JSON para mapear columnas del SHP a campos del DTO
 
+    @Column(name = "key_attributes", length = 500)
+    private String keyAttributes; // Ej: "ID_POSTE,CIRCUITO". Clave de negocio de cada feature (external_id)
+
+    /**
+     * Versión de spatial_features que ven las consultas (imports REPLACE). Solo la cambia el UPDATE
+     * de {@code SpatialBulkWriter.activateLayerVersion}: JPA no la escribe nunca, así una edición
+     * de la capa concurrente con la publicación no vuelve a poner la versión anterior (que el
+     * import borra enseguida).
+     */
+    @Builder.Default
+    @Column(name = "active_version", nullable = false, insertable = false, updatable = false)
+    private Integer activeVersion = 0;
+
+    @Builder.Default
+    @Column(name = "cache_in_memory", nullable = false)
+    private Boolean cacheInMemory = false; // Capas chicas y muy consultadas: índice espacial en memoria
+
     // ---------------------------------------
 
     private String source;
@@ -20,6 +20,10 @@ public class SpatialFeature {
     @JoinColumn(name = "layer_id")
     private MapLayer layer;
 
+    @Builder.Default
+    @Column(name = "layer_version", nullable = false)
+    private Integer layerVersion = 0; // Solo es visible si coincide con layer.activeVersion
+
     @Column(name = "external_id", length = 200)
     private String externalId;
 
@@ -29,6 +33,9 @@ public class SpatialFeature {
     @Column(columnDefinition = "NVARCHAR(MAX)")
     private String properties; // JSON
 
+    @Column(name = "content_hash", columnDefinition = "VARBINARY(32)")
+    private byte[] contentHash; // SHA-256 de geometría + propiedades (imports incrementales)
+
     @CreationTimestamp
     @Column(updatable = false)
     private LocalDateTime createdAt;
@@ -1,7 +1,24 @@
 package com.ogt.gis.repository;
 import com.ogt.gis.entity.ImportJob;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import java.util.UUID;
 
 public interface ImportJobRepository extends JpaRepository<ImportJob, UUID> {
-}
\ No newline at end of file
+
+    /** Solo las columnas de progreso: no pisa el checkpoint ni el estado del job. */
+    @Modifying
+    @Query("""
+            UPDATE ImportJob j SET j.rowsProcessed = :processed, j.totalRows = :total,
+                   j.rowsWithErrors = :errors, j.progressPercentage = :percentage, j.processingSpeed = :speed
+            WHERE j.id = :id
+            """)
+    int updateProgress(@Param("id") UUID id,
+                       @Param("processed") Integer processed,
+                       @Param("total") Integer total,
+                       @Param("errors") Integer errors,
+                       @Param("percentage") Integer percentage,
+                       @Param("speed") Double speed);
+}
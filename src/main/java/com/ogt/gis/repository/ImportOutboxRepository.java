@@ -0,0 +1,64 @@
+package com.ogt.gis.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Outbox de puntos para light-point-service (tabla import_outbox), por JDBC.
+ *
+ * {@link #append} participa de la transacción del chunk del import; {@link #claim} y
+ * {@link #delete} los usa el relay dentro de su propia transacción.
+ */
+@Repository
+public class ImportOutboxRepository {
+
+    private static final String INSERT = "INSERT INTO import_outbox (job_id, payload) VALUES (?, ?)";
+
+    /** READPAST: varias instancias del relay no se pisan ni esperan los chunks aún sin confirmar. */
+    private static final String CLAIM = """
+            SELECT TOP (?) id, job_id, payload
+            FROM import_outbox WITH (UPDLOCK, READPAST, ROWLOCK)
+            ORDER BY id
+            """;
+
+    private static final String DELETE = "DELETE FROM import_outbox WHERE id = ?";
+
+    private static final String COUNT_BY_JOB = "SELECT COUNT(*) FROM import_outbox WHERE job_id = ?";
+
+    public record OutboxRow(long id, UUID jobId, String payload) {}
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ImportOutboxRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public int append(UUID jobId, List<String> payloads) {
+        if (payloads.isEmpty()) return 0;
+        jdbcTemplate.batchUpdate(INSERT, payloads, payloads.size(), (ps, payload) -> {
+            ps.setString(1, jobId.toString());
+            ps.setString(2, payload);
+        });
+        return payloads.size();
+    }
+
+    /** Toma (y bloquea hasta el fin de la transacción) las filas más antiguas. */
+    public List<OutboxRow> claim(int limit) {
+        return jdbcTemplate.query(CLAIM, (rs, i) -> new OutboxRow(
+                rs.getLong("id"),
+                UUID.fromString(rs.getString("job_id")),
+                rs.getString("payload")), limit);
+    }
+
+    public void delete(List<OutboxRow> rows) {
+        jdbcTemplate.batchUpdate(DELETE, rows, rows.size(), (ps, row) -> ps.setLong(1, row.id()));
+    }
+
+    public int countByJob(UUID jobId) {
+        Integer count = jdbcTemplate.queryForObject(COUNT_BY_JOB, Integer.class, jobId.toString());
+        return count != null ? count : 0;
+    }
+}
@@ -0,0 +1,266 @@
+package com.ogt.gis.repository;
+
+import com.ogt.gis.entity.DistrictBoundary;
+import com.ogt.gis.entity.SpatialFeature;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.io.WKBWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
+
+/**
+ * Inserción masiva de features y distritos para los imports.
+ *
+ * Usa batching JDBC con la geometría como parámetro WKB ({@code geometry::STGeomFromWKB}),
+ * en lugar de un {@code save()} de JPA por fila. Participa de la transacción en curso
+ * (misma conexión que JPA) y limpia el contexto de persistencia después de cada lote
+ * para que no crezca durante imports de cientos de miles de filas.
+ */
+@Repository
+@Slf4j
+public class SpatialBulkWriter {
+
+    private static final String INSERT_FEATURE = """
+            INSERT INTO spatial_features (id, layer_id, external_id, geom, properties, content_hash, layer_version)
+            VALUES (?, ?, ?, geometry::STGeomFromWKB(?, ?), ?, ?, ?)
+            """;
+
+    private static final String UPDATE_FEATURE = """
+            UPDATE spatial_features
+            SET geom = geometry::STGeomFromWKB(?, ?), properties = ?, content_hash = ?
+            WHERE id = ?
+            """;
+
+    private static final String DELETE_FEATURE = "DELETE FROM spatial_features WHERE id = ?";
+
+    private static final String SELECT_FEATURE_INDEX = """
+            SELECT id, external_id, content_hash, geom.STEnvelope().STAsBinary() AS envelope
+            FROM spatial_features
+            WHERE layer_id = ? AND layer_version = ?
+            """;
+
+    /** Solo avanza: publicar dos veces la misma versión (reentrega del job) no cambia nada. */
+    private static final String ACTIVATE_LAYER_VERSION =
+            "UPDATE map_layers SET active_version = ? WHERE id = ? AND active_version < ?";
+
+    /** Versiones ya reemplazadas: nunca toca la activa ni las que esté cargando otro job. */
+    private static final String DELETE_STALE_VERSIONS =
+            "DELETE TOP (?) FROM spatial_features WHERE layer_id = ? AND layer_version < ?";
+
+    private static final String DELETE_VERSION =
+            "DELETE TOP (?) FROM spatial_features WHERE layer_id = ? AND layer_version = ?";
+
+    /** Toma la capa si está libre, si ya es de este job (reentrega) o si el lock venció. */
+    private static final String CLAIM_LAYER_IMPORT = """
+            UPDATE map_layers SET import_job_id = ?, import_locked_at = SYSUTCDATETIME()
+            WHERE id = ?
+              AND (import_job_id IS NULL OR import_job_id = ?
+                   OR import_locked_at < DATEADD(SECOND, -?, SYSUTCDATETIME()))
+            """;
+
+    private static final String TOUCH_LAYER_IMPORT =
+            "UPDATE map_layers SET import_locked_at = SYSUTCDATETIME() WHERE import_job_id = ?";
+
+    private static final String RELEASE_LAYER_IMPORT =
+            "UPDATE map_layers SET import_job_id = NULL, import_locked_at = NULL WHERE id = ? AND import_job_id = ?";
+
+    private static final String INSERT_DISTRICT = """
+            INSERT INTO district_boundaries (id, code, name, geom, area, metadata)
+            VALUES (?, ?, ?, geometry::STGeomFromWKB(?, ?), ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int chunkSize;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public SpatialBulkWriter(JdbcTemplate jdbcTemplate,
+                             @Value("${gis.import.write-chunk-size:1000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkSize = chunkSize;
+    }
+
+    /** Cantidad de filas que conviene acumular antes de llamar a insert*. */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int insertFeatures(List<SpatialFeature> features) {
+        if (features.isEmpty()) return 0;
+        prepareContext();
+
+        WKBWriter wkb = new WKBWriter();
+        jdbcTemplate.batchUpdate(INSERT_FEATURE, features, chunkSize, (ps, f) -> {
+            if (f.getId() == null) f.setId(UUID.randomUUID());
+            ps.setString(1, f.getId().toString());
+            ps.setString(2, f.getLayer() != null ? f.getLayer().getId().toString() : null);
+            ps.setString(3, f.getExternalId());
+            setGeometry(ps, 4, f.getGeom(), wkb);
+            ps.setString(6, f.getProperties());
+            ps.setBytes(7, f.getContentHash());
+            ps.setInt(8, f.getLayerVersion() != null ? f.getLayerVersion() : 0);
+        });
+
+        entityManager.clear();
+        return features.size();
+    }
+
+    /** Reescribe geometría, propiedades y hash de features existentes (por id). */
+    public int updateFeatures(List<SpatialFeature> features) {
+        if (features.isEmpty()) return 0;
+        prepareContext();
+
+        WKBWriter wkb = new WKBWriter();
+        jdbcTemplate.batchUpdate(UPDATE_FEATURE, features, chunkSize, (ps, f) -> {
+            setGeometry(ps, 1, f.getGeom(), wkb);
+            ps.setString(3, f.getProperties());
+            ps.setBytes(4, f.getContentHash());
+            ps.setString(5, f.getId().toString());
+        });
+
+        entityManager.clear();
+        return features.size();
+    }
+
+    public int deleteFeatures(List<UUID> ids) {
+        if (ids.isEmpty()) return 0;
+        prepareContext();
+        jdbcTemplate.batchUpdate(DELETE_FEATURE, ids, chunkSize, (ps, id) -> ps.setString(1, id.toString()));
+        entityManager.clear();
+        return ids.size();
+    }
+
+    /**
+     * Feature ya guardado en la capa, tal como lo necesita un import incremental. El envelope
+     * (null si no tiene geometría) indica qué zona cambia si se modifica o se borra.
+     */
+    public record ExistingFeature(UUID id, byte[] contentHash, Envelope envelope) {}
+
+    /**
+     * @param byKey     features de la capa por external_id (el primero de cada clave)
+     * @param unmatched features sin external_id o con clave repetida: ningún registro nuevo los reemplaza
+     */
+    public record FeatureIndex(Map<String, ExistingFeature> byKey, List<ExistingFeature> unmatched) {}
+
+    /** Lee id, external_id, hash y envelope de los features de una versión de la capa (sin geometrías). */
+    public FeatureIndex loadFeatureIndex(UUID layerId, int layerVersion) {
+        Map<String, ExistingFeature> byKey = new HashMap<>();
+        List<ExistingFeature> unmatched = new ArrayList<>();
+        WKBReader reader = new WKBReader();
+        jdbcTemplate.query(SELECT_FEATURE_INDEX, rs -> {
+            ExistingFeature feature = new ExistingFeature(UUID.fromString(rs.getString("id")),
+                    rs.getBytes("content_hash"), envelope(reader, rs.getBytes("envelope")));
+            String key = rs.getString("external_id");
+            if (key == null || byKey.putIfAbsent(key, feature) != null) {
+                unmatched.add(feature);
+            }
+        }, layerId.toString(), layerVersion);
+        return new FeatureIndex(byKey, unmatched);
+    }
+
+    /**
+     * Publica una versión cargada por un import REPLACE: un único UPDATE de una fila en map_layers,
+     * las consultas pasan de ver la versión anterior completa a la nueva completa.
+     */
+    public boolean activateLayerVersion(UUID layerId, int layerVersion) {
+        return jdbcTemplate.update(ACTIVATE_LAYER_VERSION, layerVersion, layerId.toString(), layerVersion) > 0;
+    }
+
+    /**
+     * Borra los features de la capa con versión menor a {@code activeVersion} (las reemplazadas, o
+     * restos de un REPLACE anterior que falló). Va en tandas de {@code chunkSize} y debe llamarse fuera
+     * de una transacción: cada DELETE se confirma solo y los locks duran lo que dura una tanda.
+     */
+    public int deleteStaleVersions(UUID layerId, int activeVersion) {
+        return deleteInChunks(DELETE_STALE_VERSIONS, layerId, activeVersion);
+    }
+
+    /** Borra, en tandas, los features de una sola versión (lo que dejó un intento previo del mismo REPLACE). */
+    public int deleteVersion(UUID layerId, int layerVersion) {
+        return deleteInChunks(DELETE_VERSION, layerId, layerVersion);
+    }
+
+    private int deleteInChunks(String sql, UUID layerId, int layerVersion) {
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(sql, chunkSize, layerId.toString(), layerVersion);
+            total += deleted;
+        } while (deleted >= chunkSize);
+        return total;
+    }
+
+    /**
+     * Reclama la capa para el job. Devuelve false si otro job la tiene y su lock se renovó hace menos
+     * de {@code timeoutMs}. Es un UPDATE condicional, así que dos pods no pueden ganarla a la vez.
+     */
+    public boolean claimLayerImport(UUID layerId, UUID jobId, long timeoutMs) {
+        return jdbcTemplate.update(CLAIM_LAYER_IMPORT, jobId.toString(), layerId.toString(),
+                jobId.toString(), Math.max(1, timeoutMs / 1000)) > 0;
+    }
+
+    /** Renueva el lock del job; se llama con cada checkpoint, dentro de su transacción. */
+    public void touchLayerImport(UUID jobId) {
+        jdbcTemplate.update(TOUCH_LAYER_IMPORT, jobId.toString());
+    }
+
+    public void releaseLayerImport(UUID layerId, UUID jobId) {
+        jdbcTemplate.update(RELEASE_LAYER_IMPORT, layerId.toString(), jobId.toString());
+    }
+
+    public int insertDistricts(List<DistrictBoundary> districts) {
+        if (districts.isEmpty()) return 0;
+        prepareContext();
+
+        WKBWriter wkb = new WKBWriter();
+        jdbcTemplate.batchUpdate(INSERT_DISTRICT, districts, chunkSize, (ps, d) -> {
+            if (d.getId() == null) d.setId(UUID.randomUUID());
+            ps.setString(1, d.getId().toString());
+            ps.setString(2, d.getCode());
+            ps.setString(3, d.getName());
+            setGeometry(ps, 4, d.getGeom(), wkb);
+            if (d.getArea() != null) ps.setDouble(6, d.getArea()); else ps.setNull(6, Types.DOUBLE);
+            ps.setString(7, d.getMetadata());
+        });
+
+        entityManager.clear();
+        return districts.size();
+    }
+
+    private static Envelope envelope(WKBReader reader, byte[] wkb) {
+        if (wkb == null) return null;
+        try {
+            return reader.read(wkb).getEnvelopeInternal();
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    /** Ocupa dos parámetros: WKB y SRID. */
+    private void setGeometry(PreparedStatement ps, int index, Geometry geom, WKBWriter wkb) throws SQLException {
+        if (geom == null) {
+            ps.setNull(index, Types.VARBINARY);
+            ps.setInt(index + 1, 0);
+        } else {
+            ps.setBytes(index, wkb.write(geom));
+            ps.setInt(index + 1, geom.getSRID());
+        }
+    }
+
+    /** Baja a la BD los cambios JPA pendientes (ej. el job) antes de escribir por JDBC. */
+    private void prepareContext() {
+        if (entityManager.isJoinedToTransaction()) entityManager.flush();
+    }
+}
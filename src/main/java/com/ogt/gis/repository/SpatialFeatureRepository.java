@@ -1,7 +1,6 @@
 package com.ogt.gis.repository;
 
 import com.ogt.gis.entity.SpatialFeature;
-import org.locationtech.jts.geom.Geometry;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -13,12 +12,15 @@ import java.util.UUID;
 
 public interface SpatialFeatureRepository extends JpaRepository<SpatialFeature, UUID> {
 
+    // Todas las consultas ven solo la versión activa de la capa (ver imports REPLACE)
+
     // Para frontend (paginado)
     @Query("""
             SELECT f 
             FROM SpatialFeature f 
             JOIN f.layer l 
             WHERE l.code = :layerCode
+            AND f.layerVersion = l.activeVersion
             """)
     Page<SpatialFeature> findByLayerCode(
             @Param("layerCode") String layerCode,
@@ -32,32 +34,9 @@ public interface SpatialFeatureRepository extends JpaRepository<SpatialFeature,
             FROM SpatialFeature f 
             JOIN f.layer l 
             WHERE l.code = :layerCode
+            AND f.layerVersion = l.activeVersion
             """)
     List<SpatialFeature> findByLayerCode(
             @Param("layerCode") String layerCode
     );
-
-    // Consulta espacial: intersección genérica
-    @Query("""
-            SELECT f 
-            FROM SpatialFeature f 
-            WHERE intersects(f.geom, :filterGeom) = true
-            """)
-    List<SpatialFeature> findIntersecting(
-            @Param("filterGeom") Geometry filterGeom
-    );
-
-    //  Consulta espacial de proximidad (SQL Server + Hibernate Spatial)
-    @Query("""
-            SELECT f
-            FROM SpatialFeature f
-            JOIN f.layer l
-            WHERE l.code = :layerCode
-            ORDER BY distance(f.geom, :pt)
-            """)
-    List<SpatialFeature> findNearest(
-            @Param("pt") Geometry point,
-            @Param("layerCode") String layerCode,
-            Pageable pageable
-    );
 }
@@ -0,0 +1,197 @@
+package com.ogt.gis.repository;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.WKBWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Consultas espaciales sobre spatial_features (y distritos y grillas para tiles y GeoJSON)
+ * resueltas enteras en SQL Server.
+ *
+ * Filtro por capa (versión activa), predicado espacial con el índice espacial y orden/límite van
+ * en la misma consulta; solo vuelven las columnas de la respuesta (sin la geometría completa ni
+ * el MapLayer), así que no se hidrata ninguna entidad.
+ */
+@Repository
+public class SpatialWindowRepository {
+
+    private static final String SELECT_WINDOW = """
+            SELECT TOP (?) f.id, f.external_id, f.properties,
+                   f.geom.STPointN(1).STX AS x, f.geom.STPointN(1).STY AS y, f.geom.STSrid AS srid
+            FROM spatial_features f WITH (INDEX(idx_spatial_features_geom))
+            JOIN map_layers l ON l.id = f.layer_id
+            WHERE l.code = ?
+              AND f.layer_version = l.active_version
+              AND f.geom.STIntersects(geometry::STGeomFromWKB(?, ?)) = 1
+            """;
+
+    private static final String FIRST_PAGE = SELECT_WINDOW + " ORDER BY f.id";
+    private static final String NEXT_PAGE = SELECT_WINDOW + " AND f.id > ? ORDER BY f.id";
+
+    /** El punto de búsqueda va dos veces (distancia devuelta y filtro): x, y, srid cada vez. */
+    private static final String SELECT_NEAREST = """
+            SELECT TOP (?) f.id, f.external_id, f.properties,
+                   f.geom.STPointN(1).STX AS x, f.geom.STPointN(1).STY AS y, f.geom.STSrid AS srid,
+                   f.geom.STDistance(geometry::Point(?, ?, ?)) AS distance
+            FROM spatial_features f WITH (INDEX(idx_spatial_features_geom))
+            JOIN map_layers l ON l.id = f.layer_id
+            WHERE l.code = ?
+              AND f.layer_version = l.active_version
+            """;
+
+    private static final String NEAREST_WITHIN = SELECT_NEAREST
+            + " AND f.geom.STDistance(geometry::Point(?, ?, ?)) <= ? ORDER BY distance";
+
+    /** Forma que SQL Server resuelve con su plan de vecino más cercano sobre el índice espacial. */
+    private static final String NEAREST_UNBOUNDED = SELECT_NEAREST
+            + " AND f.geom.STDistance(geometry::Point(?, ?, ?)) IS NOT NULL ORDER BY distance";
+
+    private static final String SELECT_LAYER = """
+            SELECT f.id, f.external_id, f.properties, f.geom.STAsBinary() AS wkb, f.geom.STSrid AS srid
+            FROM spatial_features f
+            JOIN map_layers l ON l.id = f.layer_id
+            WHERE l.code = ?
+              AND f.layer_version = l.active_version
+              AND f.geom IS NOT NULL
+            """;
+
+    /** Geometría ya reducida en SQL Server ({@code Reduce}, tolerancia en unidades del SRID). */
+    private static final String SELECT_REDUCED = """
+            SELECT f.id, f.external_id, f.properties, f.geom.Reduce(?).STAsBinary() AS wkb, f.geom.STSrid AS srid
+            FROM spatial_features f WITH (INDEX(idx_spatial_features_geom))
+            JOIN map_layers l ON l.id = f.layer_id
+            WHERE l.code = ?
+              AND f.layer_version = l.active_version
+              AND f.geom.STIntersects(geometry::STGeomFromWKB(?, ?)) = 1
+            """;
+
+    private static final String SELECT_GRID_CELLS = """
+            SELECT c.id, c.grid_code, c.light_points_count, c.geom.STAsBinary() AS wkb
+            FROM standard_grids c
+            WHERE c.scale = ?
+              AND c.geom.STIntersects(geometry::STGeomFromWKB(?, ?)) = 1
+            """;
+
+    private static final String SELECT_ALL_DISTRICTS = """
+            SELECT d.id, d.code, d.name, d.area, d.geom.STAsBinary() AS wkb, d.geom.STSrid AS srid
+            FROM district_boundaries d
+            WHERE d.geom IS NOT NULL
+            """;
+
+    private static final String SELECT_ALL_GRIDS = """
+            SELECT c.id, c.grid_code, c.scale, c.light_points_count, c.geom.STAsBinary() AS wkb, c.geom.STSrid AS srid
+            FROM standard_grids c
+            WHERE c.geom IS NOT NULL
+            """;
+
+    private static final String SELECT_GRIDS_BY_SCALE = SELECT_ALL_GRIDS + " AND c.scale = ?";
+
+    /**
+     * Columnas que necesita la respuesta; {@code x, y} es el primer vértice de la geometría.
+     * {@code distance} solo viene en las búsquedas por cercanía.
+     */
+    public record FeatureRow(UUID id, String externalId, String properties, double x, double y, int srid,
+                             Double distance) {}
+
+    private static final RowMapper<FeatureRow> ROW_MAPPER = (rs, i) -> new FeatureRow(
+            UUID.fromString(rs.getString("id")),
+            rs.getString("external_id"),
+            rs.getString("properties"),
+            rs.getDouble("x"),
+            rs.getDouble("y"),
+            rs.getInt("srid"),
+            null);
+
+    private static final RowMapper<FeatureRow> NEAREST_MAPPER = (rs, i) -> new FeatureRow(
+            UUID.fromString(rs.getString("id")),
+            rs.getString("external_id"),
+            rs.getString("properties"),
+            rs.getDouble("x"),
+            rs.getDouble("y"),
+            rs.getInt("srid"),
+            rs.getDouble("distance"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final double initialRadius;
+    private final double maxRadius;
+
+    public SpatialWindowRepository(JdbcTemplate jdbcTemplate,
+                                   @Value("${gis.query.nearest.initial-radius-m:250}") double initialRadius,
+                                   @Value("${gis.query.nearest.max-radius-m:50000}") double maxRadius) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.initialRadius = Math.max(1, initialRadius);
+        this.maxRadius = maxRadius;
+    }
+
+    /**
+     * @param after último id de la página anterior, o null para la primera
+     * @param limit cantidad máxima de filas
+     */
+    public List<FeatureRow> findIntersecting(String layerCode, Geometry window, UUID after, int limit) {
+        byte[] wkb = new WKBWriter().write(window);
+        return after == null
+                ? jdbcTemplate.query(FIRST_PAGE, ROW_MAPPER, limit, layerCode, wkb, window.getSRID())
+                : jdbcTemplate.query(NEXT_PAGE, ROW_MAPPER, limit, layerCode, wkb, window.getSRID(), after.toString());
+    }
+
+    /**
+     * Los {@code k} features de la capa más cercanos al punto, ordenados por distancia (calculada
+     * en SQL Server, en unidades del SRID).
+     *
+     * Busca dentro de un radio que se duplica mientras haya menos de {@code k} resultados: cada
+     * intento solo toca las celdas del índice espacial dentro del radio, no la capa entera. Con
+     * {@code k} resultados dentro del radio el top-k es exacto (todo lo que quedó afuera está más
+     * lejos). Pasado el radio máximo se hace una única búsqueda sin límite de distancia.
+     */
+    public List<FeatureRow> findNearest(String layerCode, double x, double y, int srid, int k) {
+        for (double radius = initialRadius; radius <= maxRadius; radius *= 2) {
+            List<FeatureRow> rows = jdbcTemplate.query(NEAREST_WITHIN, NEAREST_MAPPER,
+                    k, x, y, srid, layerCode, x, y, srid, radius);
+            if (rows.size() >= k) return rows;
+        }
+        return jdbcTemplate.query(NEAREST_UNBOUNDED, NEAREST_MAPPER, k, x, y, srid, layerCode, x, y, srid);
+    }
+
+    /**
+     * Recorre los features de la versión activa de la capa (id, external_id, properties, wkb, srid)
+     * sin armar entidades; lo usa la caché de capas en memoria.
+     */
+    public void streamLayer(String layerCode, RowCallbackHandler handler) {
+        jdbcTemplate.query(SELECT_LAYER, handler, layerCode);
+    }
+
+    /**
+     * Recorre los features de la capa que intersecan la ventana con la geometría simplificada
+     * en el servidor (id, external_id, properties, wkb, srid); lo usan los vector tiles.
+     */
+    public void streamIntersecting(String layerCode, Geometry window, double tolerance, RowCallbackHandler handler) {
+        jdbcTemplate.query(SELECT_REDUCED, handler,
+                tolerance, layerCode, new WKBWriter().write(window), window.getSRID());
+    }
+
+    /** Celdas de la grilla de la escala que intersecan la ventana (id, grid_code, light_points_count, wkb). */
+    public void streamGridCells(String scale, Geometry window, RowCallbackHandler handler) {
+        jdbcTemplate.query(SELECT_GRID_CELLS, handler, scale, new WKBWriter().write(window), window.getSRID());
+    }
+
+    /** Recorre todos los distritos con geometría (id, code, name, area, wkb, srid) sin armar entidades. */
+    public void streamDistricts(RowCallbackHandler handler) {
+        jdbcTemplate.query(SELECT_ALL_DISTRICTS, handler);
+    }
+
+    /**
+     * Recorre las celdas de grilla con geometría (id, grid_code, scale, light_points_count, wkb, srid)
+     * sin armar entidades; {@code scale} null para todas las escalas.
+     */
+    public void streamGrids(String scale, RowCallbackHandler handler) {
+        if (scale == null) jdbcTemplate.query(SELECT_ALL_GRIDS, handler);
+        else jdbcTemplate.query(SELECT_GRIDS_BY_SCALE, handler, scale);
+    }
+}
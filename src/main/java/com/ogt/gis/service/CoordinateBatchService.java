@@ -0,0 +1,70 @@
+package com.ogt.gis.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ogt.gis.dto.CoordinateBatchDTO;
+import com.ogt.gis.dto.CoordinateDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+
+/**
+ * Conversión de coordenadas en lote (sincronización de la app móvil).
+ *
+ * Las coordenadas se llevan a un arreglo intercalado y se convierten con
+ * {@link CoordinateService#transform}, sin un {@code Point} por coordenada. La respuesta se
+ * escribe en streaming con el generador de Jackson, sin armar la lista completa en memoria.
+ * Lectura y formato de los lotes en {@link PointBatch}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CoordinateBatchService {
+
+    private final CoordinateService coordinateService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Arreglos x/y empaquetados. Se convierten antes de empezar a responder (un SRID inválido
+     * se informa como error normal); la respuesta tiene la misma forma, con el SRID destino.
+     */
+    public StreamingResponseBody convertPacked(CoordinateBatchDTO batch, int targetSrid) {
+        double[] xy = PointBatch.packed(batch, coordinateService, targetSrid);
+        int points = xy.length / 2;
+        log.debug("Conversión en lote: {} puntos EPSG:{} -> EPSG:{}", points, batch.getSrid(), targetSrid);
+
+        return out -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+                json.writeStartObject();
+                json.writeArrayFieldStart("x");
+                for (int i = 0; i < points; i++) json.writeNumber(xy[2 * i]);
+                json.writeEndArray();
+                json.writeArrayFieldStart("y");
+                for (int i = 0; i < points; i++) json.writeNumber(xy[2 * i + 1]);
+                json.writeEndArray();
+                json.writeNumberField("srid", targetSrid);
+                json.writeEndObject();
+            }
+        };
+    }
+
+    /**
+     * NDJSON: un {@link CoordinateDTO} por línea, cada uno con su SRID de origen, y una línea
+     * {"x", "y", "srid"} convertida por cada una, en el mismo orden.
+     */
+    public StreamingResponseBody convertNdjson(InputStream body, int targetSrid) {
+        coordinateService.findCrs(targetSrid); // SRID destino inválido -> error antes de responder
+
+        return PointBatch.ndjson("Conversión", body, objectMapper, coordinateService, targetSrid,
+                (xy, points) -> (i, json) -> {
+                    json.writeStartObject();
+                    json.writeNumberField("x", xy[2 * i]);
+                    json.writeNumberField("y", xy[2 * i + 1]);
+                    json.writeNumberField("srid", targetSrid);
+                    json.writeEndObject();
+                });
+    }
+}
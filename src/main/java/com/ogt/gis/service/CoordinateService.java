@@ -1,49 +1,80 @@
 package com.ogt.gis.service;
 
 import com.ogt.gis.dto.CoordinateDTO;
+import com.ogt.gis.entity.MapLayer;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
 import org.geotools.api.referencing.operation.MathTransform;
-import org.geotools.geometry.jts.JTS;
+import org.geotools.api.referencing.operation.TransformException;
 import org.geotools.referencing.CRS;
-import org.locationtech.jts.geom.Coordinate;
-import org.locationtech.jts.geom.GeometryFactory;
-import org.locationtech.jts.geom.Point;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Conversión de coordenadas y registro compartido de sistemas de referencia.
+ *
+ * Decodificar un EPSG y buscar la transformación entre dos sistemas es lo caro de convertir
+ * (mucho más que aplicarla): los {@link CoordinateReferenceSystem} y las {@link MathTransform}
+ * se resuelven una vez por SRID / par de SRID y quedan cacheados. Ambos son inmutables, así que
+ * el mismo objeto se comparte entre requests, el worker de imports, el de exports y las grillas.
+ * Los sistemas que usa el servicio (WGS84 y SIRGAS 2000 UTM 23S/24S/25S) se precargan al arrancar.
+ */
 @Service
 @Slf4j
 public class CoordinateService {
 
-    private final GeometryFactory geometryFactory = new GeometryFactory();
+    private static final int[] WARM_UP_SRIDS = {4326, 31983, 31984, 31985};
+
+    /** Longitud de referencia del municipio: fija la zona UTM de las capas sin SRID propio. */
+    private static final double DEFAULT_LONGITUDE = -40.3;
+
+    /** Puntos por bloque al repartir una conversión en lote entre núcleos. */
+    private static final int PARALLEL_BLOCK_POINTS = 16_384;
+
+    private record TransformKey(int sourceSrid, int targetSrid) {}
+
+    private final Map<Integer, CoordinateReferenceSystem> crsCache = new ConcurrentHashMap<>();
+    private final Map<TransformKey, MathTransform> transformCache = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void warmUp() {
+        long start = System.currentTimeMillis();
+        try {
+            for (int source : WARM_UP_SRIDS) {
+                for (int target : WARM_UP_SRIDS) {
+                    if (source != target) findTransform(source, target);
+                }
+            }
+            log.info("🌐 Transformaciones precargadas para EPSG {} en {} ms",
+                    java.util.Arrays.toString(WARM_UP_SRIDS), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            // Sin precarga se resuelven en el primer uso
+            log.warn("⚠️ No se pudieron precargar las transformaciones: {}", e.getMessage());
+        }
+    }
 
     /**
      * Convierte una coordenada de un SRID a otro.
      */
     public CoordinateDTO convert(CoordinateDTO sourceDto, Integer targetSrid) {
         try {
-            CoordinateReferenceSystem sourceCRS =
-                    CRS.decode("EPSG:" + sourceDto.getSrid(), true);
-
-            CoordinateReferenceSystem targetCRS =
-                    CRS.decode("EPSG:" + targetSrid, true);
-
-            MathTransform transform =
-                    CRS.findMathTransform(sourceCRS, targetCRS, true);
+            MathTransform transform = findTransform(sourceDto.getSrid(), targetSrid);
 
-            Coordinate coord = new Coordinate(sourceDto.getX(), sourceDto.getY());
-            Point sourcePoint = geometryFactory.createPoint(coord);
+            double[] point = {sourceDto.getX(), sourceDto.getY()};
+            transform.transform(point, 0, point, 0, 1);
 
-            Point targetPoint = (Point) JTS.transform(sourcePoint, transform);
-
-            log.info("Conversión: ({}, {}) [EPSG:{}] -> ({}, {}) [EPSG:{}]",
+            log.debug("Conversión: ({}, {}) [EPSG:{}] -> ({}, {}) [EPSG:{}]",
                     sourceDto.getX(), sourceDto.getY(), sourceDto.getSrid(),
-                    targetPoint.getX(), targetPoint.getY(), targetSrid
+                    point[0], point[1], targetSrid
             );
 
             return CoordinateDTO.builder()
-                    .x(targetPoint.getX())
-                    .y(targetPoint.getY())
+                    .x(point[0])
+                    .y(point[1])
                     .srid(targetSrid)
                     .build();
 
@@ -53,6 +84,55 @@ public class CoordinateService {
         }
     }
 
+    /**
+     * Convierte en el lugar {@code points} coordenadas intercaladas ({@code x0, y0, x1, y1, ...}),
+     * a partir de la coordenada {@code firstPoint}, con una sola llamada a {@link MathTransform#transform(double[], int, double[], int, int)} por bloque,
+     * sin crear geometrías. Los lotes de más de un bloque se reparten entre núcleos.
+     */
+    public void transform(int sourceSrid, int targetSrid, double[] xy, int firstPoint, int points) {
+        MathTransform transform = findTransform(sourceSrid, targetSrid);
+        if (transform.isIdentity() || points == 0) return;
+
+        int blocks = (points + PARALLEL_BLOCK_POINTS - 1) / PARALLEL_BLOCK_POINTS;
+        IntStream range = IntStream.range(0, blocks);
+        (blocks > 1 ? range.parallel() : range).forEach(block -> {
+            int from = block * PARALLEL_BLOCK_POINTS;
+            int count = Math.min(PARALLEL_BLOCK_POINTS, points - from);
+            int offset = (firstPoint + from) * 2;
+            try {
+                transform.transform(xy, offset, xy, offset, count);
+            } catch (TransformException e) {
+                throw new RuntimeException("No se pudo convertir las coordenadas: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Transformación entre dos SRID (EPSG, orden lon/lat), cacheada.
+     * Es thread-safe: se puede aplicar a muchas geometrías con {@code JTS.transform} desde varios hilos.
+     */
+    public MathTransform findTransform(int sourceSrid, int targetSrid) {
+        return transformCache.computeIfAbsent(new TransformKey(sourceSrid, targetSrid), key -> {
+            try {
+                return CRS.findMathTransform(findCrs(sourceSrid), findCrs(targetSrid), true);
+            } catch (Exception e) {
+                throw new RuntimeException("No se pudo obtener la transformación EPSG:" + sourceSrid
+                        + " -> EPSG:" + targetSrid + ": " + e.getMessage(), e);
+            }
+        });
+    }
+
+    /** Sistema de referencia de un SRID (EPSG, orden lon/lat), cacheado. */
+    public CoordinateReferenceSystem findCrs(int srid) {
+        return crsCache.computeIfAbsent(srid, code -> {
+            try {
+                return CRS.decode("EPSG:" + code, true);
+            } catch (Exception e) {
+                throw new RuntimeException("SRID no soportado: EPSG:" + code + " (" + e.getMessage() + ")", e);
+            }
+        });
+    }
+
     /**
      * ✅ NUEVO - Detecta la zona UTM correcta para Brasil según la longitud.
      *
@@ -81,6 +161,15 @@ public class CoordinateService {
         }
     }
 
+    /**
+     * SRID en el que están guardadas las geometrías de una capa: el que declara, o la zona UTM del
+     * municipio si no declara ninguno. El import convierte a este SRID y los tiles leen en él, así
+     * que los dos tienen que usar este método.
+     */
+    public int layerStorageSrid(MapLayer layer) {
+        return layer.getSrid() != null ? layer.getSrid() : detectUTMZone(DEFAULT_LONGITUDE);
+    }
+
     /**
      * ✅ NUEVO - Obtiene información completa de una zona UTM.
      *
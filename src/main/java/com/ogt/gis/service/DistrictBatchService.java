@@ -0,0 +1,87 @@
+package com.ogt.gis.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ogt.gis.dto.CoordinateBatchDTO;
+import com.ogt.gis.dto.CoordinateDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.stream.IntStream;
+
+/**
+ * Asignación de distrito a muchos puntos por vez (backfill de postes y reclamos).
+ *
+ * Los puntos se convierten en bloque al SRID de los distritos cargados
+ * ({@link DistrictIndex#getSrid()}) con {@link CoordinateService#transform} y se ubican en
+ * paralelo contra el {@link DistrictIndex} en memoria: no hay consultas a la BD por punto.
+ * Sin distritos cargados todos los puntos responden {@code null}, sin convertir nada.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DistrictBatchService {
+
+    private final CoordinateService coordinateService;
+    private final DistrictIndex districtIndex;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Arreglos x (lon) / y (lat) empaquetados. Responde {"districts": [...]} en el mismo orden,
+     * con {@code null} para los puntos que no caen en ningún distrito.
+     */
+    public StreamingResponseBody locatePacked(CoordinateBatchDTO batch) {
+        int srid = districtIndex.getSrid();
+        double[] xy = PointBatch.packed(batch, coordinateService, srid);
+        DistrictIndex.District[] districts = locate(srid, xy, xy.length / 2);
+        log.debug("Distritos en lote: {} puntos", districts.length);
+
+        return out -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+                json.writeStartObject();
+                json.writeArrayFieldStart("districts");
+                for (DistrictIndex.District d : districts) writeDistrict(json, d);
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+        };
+    }
+
+    /**
+     * NDJSON: un {@link CoordinateDTO} por línea (x = lon, y = lat, srid de origen), una línea de
+     * respuesta por punto en el mismo orden ({@code null} si no cae en ningún distrito).
+     */
+    public StreamingResponseBody locateNdjson(InputStream body) {
+        int srid = districtIndex.getSrid();
+        return PointBatch.ndjson("Distritos", body, objectMapper, coordinateService, srid,
+                (xy, points) -> {
+                    DistrictIndex.District[] districts = locate(srid, xy, points);
+                    return (i, json) -> writeDistrict(json, districts[i]);
+                });
+    }
+
+    /** Ubica los puntos (ya en el SRID {@code srid} de los distritos) repartiéndolos entre núcleos. */
+    private DistrictIndex.District[] locate(int srid, double[] xy, int points) {
+        DistrictIndex.District[] result = new DistrictIndex.District[points];
+        if (srid == 0) return result;
+        IntStream.range(0, points).parallel().forEach(i ->
+                result[i] = districtIndex.findContaining(xy[2 * i], xy[2 * i + 1]).orElse(null));
+        return result;
+    }
+
+    private void writeDistrict(JsonGenerator json, DistrictIndex.District d) throws IOException {
+        if (d == null) {
+            json.writeNull();
+            return;
+        }
+        json.writeStartObject();
+        json.writeStringField("id", d.id() != null ? d.id().toString() : null);
+        json.writeStringField("code", d.code());
+        json.writeStringField("name", d.name());
+        json.writeEndObject();
+    }
+}
@@ -0,0 +1,115 @@
+package com.ogt.gis.service;
+
+import com.ogt.gis.entity.DistrictBoundary;
+import com.ogt.gis.repository.DistrictBoundaryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Índice en memoria de los distritos para ubicar un punto sin ir a la BD.
+ *
+ * Un STRtree con la {@link PreparedGeometry} de cada polígono: la búsqueda es una consulta al
+ * árbol por el punto y un {@code contains} preparado sobre los pocos candidatos. Se arma al
+ * arrancar, al terminar un import DISTRICTS y periódicamente (otras instancias pueden haber
+ * importado). Cada recarga arma un índice nuevo y lo publica de una vez: las consultas en curso
+ * siguen con el anterior, nunca ven uno a medio armar.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DistrictIndex {
+
+    /** Distrito indexado; {@code order} es la posición en la carga, desempata solapamientos. */
+    public record District(UUID id, String code, String name, int order, PreparedGeometry geom) {}
+
+    private final DistrictBoundaryRepository repository;
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+
+    private volatile STRtree tree = emptyTree();
+    /** SRID de los polígonos cargados (0 si no hay distritos). */
+    private volatile int srid;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${gis.districts.index-refresh-ms:300000}",
+            initialDelayString = "${gis.districts.index-refresh-ms:300000}")
+    public void refresh() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.warn("⚠️ No se pudo refrescar el índice de distritos, se mantiene el anterior: {}", e.getMessage());
+        }
+    }
+
+    /** Relee los distritos y reemplaza el índice. */
+    public void reload() {
+        long start = System.currentTimeMillis();
+        List<DistrictBoundary> districts = repository.findAll();
+
+        STRtree next = new STRtree();
+        int order = 0;
+        int nextSrid = 0;
+        for (DistrictBoundary d : districts) {
+            if (d.getGeom() == null || d.getGeom().isEmpty()) continue;
+            if (nextSrid == 0) nextSrid = d.getGeom().getSRID();
+            next.insert(d.getGeom().getEnvelopeInternal(), new District(d.getId(), d.getCode(), d.getName(),
+                    order++, PreparedGeometryFactory.prepare(d.getGeom())));
+        }
+        next.build();
+        tree = next;
+        srid = nextSrid;
+
+        log.info("🗺️ Índice de distritos cargado: {} polígonos en {} ms", order, System.currentTimeMillis() - start);
+    }
+
+    /** Distrito que contiene el punto (en el SRID de los distritos). */
+    public Optional<District> findContaining(Point point) {
+        District found = null;
+        for (Object candidate : tree.query(point.getEnvelopeInternal())) {
+            District d = (District) candidate;
+            if ((found == null || d.order() < found.order()) && d.geom().contains(point)) found = d;
+        }
+        return Optional.ofNullable(found);
+    }
+
+    /** Ídem {@link #findContaining(Point)} con la coordenada suelta (consultas en lote). */
+    public Optional<District> findContaining(double x, double y) {
+        return findContaining(geometryFactory.createPoint(new Coordinate(x, y)));
+    }
+
+    /** Distritos cuyo envelope toca el rectángulo (en el SRID de los distritos). */
+    public List<District> inEnvelope(Envelope envelope) {
+        List<District> districts = new ArrayList<>();
+        for (Object candidate : tree.query(envelope)) districts.add((District) candidate);
+        return districts;
+    }
+
+    public int getSrid() {
+        return srid;
+    }
+
+    private static STRtree emptyTree() {
+        STRtree empty = new STRtree();
+        empty.build();
+        return empty;
+    }
+}
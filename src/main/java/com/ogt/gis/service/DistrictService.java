@@ -1,15 +1,16 @@
 package com.ogt.gis.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ogt.gis.entity.DistrictBoundary;
 import com.ogt.gis.repository.DistrictBoundaryRepository;
+import com.ogt.gis.repository.SpatialWindowRepository;
+import com.ogt.gis.util.FeatureCollectionStream;
+import com.ogt.gis.util.GeoJsonGeometryWriter;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import com.ogt.gis.util.GeoJSONHelper;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.Map;
-import java.util.HashMap;
-import java.util.stream.Collectors;
 import java.util.List;
 import java.util.UUID;
 
@@ -18,6 +19,9 @@ import java.util.UUID;
 public class DistrictService {
 
     private final DistrictBoundaryRepository repository;
+    private final SpatialWindowRepository windowRepository;
+    private final GeoJsonGeometryWriter geometryWriter;
+    private final ObjectMapper objectMapper;
 
     @Transactional(readOnly = true)
     public List<DistrictBoundary> getAll() {
@@ -33,46 +37,19 @@ public class DistrictService {
     /**
      * Devuelve todos los distritos en formato GeoJSON FeatureCollection.
      * Compatible directamente con Leaflet.
+     *
+     * Se escribe en streaming: cada fila del cursor de la BD pasa directo a la respuesta, sin
+     * armar entidades ni la colección en memoria.
      */
-    @Transactional(readOnly = true)
-    public Map<String, Object> getAllAsGeoJson() {
-        List<DistrictBoundary> districts = repository.findAll();
-
-        Map<String, Object> featureCollection = new HashMap<>();
-        featureCollection.put("type", "FeatureCollection");
-
-        List<Map<String, Object>> features = districts.stream()
-                .filter(d -> d.getGeom() != null) // Solo distritos con geometría
-                .map(this::districtToGeoJsonFeature)
-                .collect(Collectors.toList());
-
-        featureCollection.put("features", features);
-
-        return featureCollection;
-    }
-
-    /**
-     * Convierte un DistrictBoundary a un GeoJSON Feature.
-     */
-    private Map<String, Object> districtToGeoJsonFeature(DistrictBoundary district) {
-        Map<String, Object> feature = new HashMap<>();
-        feature.put("type", "Feature");
-
-        // Geometría
-        try {
-            feature.put("geometry", GeoJSONHelper.geometryToGeoJson(district.getGeom()));
-        } catch (Exception e) {
-            feature.put("geometry", null);
-        }
-
-        // Propiedades
-        Map<String, Object> properties = new HashMap<>();
-        properties.put("id", district.getId() != null ? district.getId().toString() : null);
-        properties.put("code", district.getCode());
-        properties.put("name", district.getName());
-        properties.put("area", district.getArea());
-        feature.put("properties", properties);
-
-        return feature;
+    public StreamingResponseBody streamAllAsGeoJson() {
+        return FeatureCollectionStream.of("distritos", objectMapper, geometryWriter,
+                windowRepository::streamDistricts, (rs, json) -> {
+                    json.writeStringField("id", UUID.fromString(rs.getString("id")).toString());
+                    json.writeStringField("code", rs.getString("code"));
+                    json.writeStringField("name", rs.getString("name"));
+                    double area = rs.getDouble("area");
+                    if (rs.wasNull()) json.writeNullField("area");
+                    else json.writeNumberField("area", area);
+                });
     }
-}
\ No newline at end of file
+}
@@ -1,47 +1,45 @@
 package com.ogt.gis.service;
 
-import com.ogt.gis.entity.StandardGridCell;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ogt.gis.repository.SpatialWindowRepository;
 import com.ogt.gis.repository.StandardGridCellRepository;
-import com.ogt.gis.util.GeoJSONHelper;
+import com.ogt.gis.util.FeatureCollectionStream;
+import com.ogt.gis.util.GeoJsonGeometryWriter;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
 public class GridGeoJsonService {
 
     private final StandardGridCellRepository repository;
+    private final SpatialWindowRepository windowRepository;
+    private final GeoJsonGeometryWriter geometryWriter;
+    private final ObjectMapper objectMapper;
 
     /**
      * Devuelve todas las cuadrículas de una escala en formato GeoJSON FeatureCollection.
+     *
+     * Se escribe en streaming desde el cursor de la BD: la memoria por request no depende de la
+     * cantidad de celdas (una grilla 1:1000 tiene decenas de miles).
      */
-    @Transactional(readOnly = true)
-    public Map<String, Object> getGridsAsGeoJson(String scale) {
-        List<StandardGridCell> grids;
-
-        if (scale == null || scale.isBlank() || scale.equalsIgnoreCase("all")) {
-            grids = repository.findAll();
-        } else {
-            grids = repository.findByScale(scale);
-        }
-
-        Map<String, Object> featureCollection = new HashMap<>();
-        featureCollection.put("type", "FeatureCollection");
-
-        List<Map<String, Object>> features = grids.stream()
-                .filter(g -> g.getGeom() != null)
-                .map(this::gridToGeoJsonFeature)
-                .collect(Collectors.toList());
-
-        featureCollection.put("features", features);
-
-        return featureCollection;
+    public StreamingResponseBody streamGridsAsGeoJson(String scale) {
+        String filter = scale == null || scale.isBlank() || scale.equalsIgnoreCase("all") ? null : scale;
+
+        return FeatureCollectionStream.of("grillas " + (filter != null ? filter : "(todas)"), objectMapper,
+                geometryWriter, handler -> windowRepository.streamGrids(filter, handler), (rs, json) -> {
+                    json.writeStringField("id", UUID.fromString(rs.getString("id")).toString());
+                    json.writeStringField("gridCode", rs.getString("grid_code"));
+                    json.writeStringField("scale", rs.getString("scale"));
+                    int count = rs.getInt("light_points_count");
+                    if (rs.wasNull()) json.writeNullField("lightPointsCount");
+                    else json.writeNumberField("lightPointsCount", count);
+                });
     }
 
     /**
@@ -51,29 +49,4 @@ public class GridGeoJsonService {
     public List<String> getAvailableScales() {
         return repository.findDistinctScales();
     }
-
-    /**
-     * Convierte un StandardGridCell a un GeoJSON Feature.
-     */
-    private Map<String, Object> gridToGeoJsonFeature(StandardGridCell grid) {
-        Map<String, Object> feature = new HashMap<>();
-        feature.put("type", "Feature");
-
-        // Geometría
-        try {
-            feature.put("geometry", GeoJSONHelper.geometryToGeoJson(grid.getGeom()));
-        } catch (Exception e) {
-            feature.put("geometry", null);
-        }
-
-        // Propiedades
-        Map<String, Object> properties = new HashMap<>();
-        properties.put("id", grid.getId() != null ? grid.getId().toString() : null);
-        properties.put("gridCode", grid.getGridCode());
-        properties.put("scale", grid.getScale());
-        properties.put("lightPointsCount", grid.getLightPointsCount());
-        feature.put("properties", properties);
-
-        return feature;
-    }
-}
\ No newline at end of file
+}
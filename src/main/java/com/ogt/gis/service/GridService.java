@@ -8,17 +8,19 @@ import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.Query;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
 import org.geotools.api.referencing.operation.MathTransform;
 import org.geotools.geometry.jts.JTS;
-import org.geotools.referencing.CRS;
 import org.locationtech.jts.geom.*;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 @Service
 @RequiredArgsConstructor
@@ -27,6 +29,7 @@ public class GridService {
 
     private final StandardGridCellRepository gridRepository;
     private final CoordinateService coordinateService;
+    private final VectorTileService vectorTileService;
 
     @PersistenceContext
     private EntityManager entityManager;
@@ -66,11 +69,9 @@ public class GridService {
                 scaleName, rows, cols, utmSrid);
 
         try {
-            // Set up CRS transformations
-            CoordinateReferenceSystem wgs84Crs = CRS.decode("EPSG:4326", true);
-            CoordinateReferenceSystem utmCrs = CRS.decode("EPSG:" + utmSrid, true);
-            MathTransform toUtm = CRS.findMathTransform(wgs84Crs, utmCrs, true);
-            MathTransform toWgs84 = CRS.findMathTransform(utmCrs, wgs84Crs, true);
+            // CRS transformations (shared cache in CoordinateService)
+            MathTransform toUtm = coordinateService.findTransform(4326, utmSrid);
+            MathTransform toWgs84 = coordinateService.findTransform(utmSrid, 4326);
 
             // Convert WGS84 origin to UTM
             GeometryFactory utmFactory = new GeometryFactory(new PrecisionModel(), utmSrid);
@@ -130,6 +131,7 @@ public class GridService {
             }
 
             gridRepository.saveAll(buffer);
+            invalidateTiles(Set.of(scaleName));
 
             log.info("Grid '{}' generated with {} cells (stored in WGS84/EPSG:4326)",
                     scaleName, buffer.size());
@@ -172,6 +174,7 @@ public class GridService {
         List<StandardGridCell> cells = gridRepository.findByScale(scale);
         if (cells.isEmpty()) return 0;
         gridRepository.deleteAll(cells);
+        invalidateTiles(Set.of(scale));
         log.info("Deleted {} grid cells for scale '{}'", cells.size(), scale);
         return cells.size();
     }
@@ -224,6 +227,9 @@ public class GridService {
 
         if (totalUpdated > 0) {
             gridRepository.saveAll(cells);
+            Set<String> scales = new TreeSet<>();
+            cells.forEach(c -> scales.add(c.getScale()));
+            invalidateTiles(scales);
             log.info("Updated counts for {} cells (of {} total)", totalUpdated, cells.size());
         } else {
             log.info("No count changes detected");
@@ -232,6 +238,23 @@ public class GridService {
         return totalUpdated;
     }
 
+    /**
+     * Drops the cached vector tiles of the given scales once the transaction commits,
+     * so no request re-caches the old cells in between.
+     */
+    private void invalidateTiles(Set<String> scales) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            scales.forEach(vectorTileService::invalidateGrid);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                scales.forEach(vectorTileService::invalidateGrid);
+            }
+        });
+    }
+
     private void validateParameters(String scaleName, double width, double height, int rows, int cols) {
         if (scaleName == null || scaleName.isBlank()) {
             throw new IllegalArgumentException("Scale name cannot be empty.");
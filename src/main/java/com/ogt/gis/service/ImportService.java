@@ -34,9 +34,18 @@ public class ImportService {
     /**
      * Guarda el archivo (y si es zip, lo descomprime buscando .shp o .xlsx/.xls) y encola el job.
      * Devuelve jobId.
+     *
+     * @param mode APPEND agrega todos los features; INCREMENTAL sincroniza la capa con el archivo
+     *             (inserta, actualiza y borra solo lo que cambió, por external_id + hash de contenido);
+     *             REPLACE carga el archivo como versión nueva de la capa y la publica al terminar
      */
     @Transactional
-    public UUID queueImport(MultipartFile file, String layerCode, Integer srid) {
+    public UUID queueImport(MultipartFile file, String layerCode, Integer srid, String mode) {
+        String importMode = mode != null ? mode.toUpperCase() : "APPEND";
+        if (!importMode.equals("APPEND") && !importMode.equals("INCREMENTAL") && !importMode.equals("REPLACE")) {
+            throw new BusinessException("Modo de importación no soportado: " + mode + ". Usar APPEND, INCREMENTAL o REPLACE");
+        }
+
         try {
             if (!Files.exists(tempDir)) Files.createDirectories(tempDir);
 
@@ -57,6 +66,7 @@ public class ImportService {
             Path finalPath = target;
 
             // Solo validar como ZIP si el archivo termina en .zip
+            // (un .kmz también es ZIP, pero el worker lo lee en streaming sin extraerlo)
             if (lowerName.endsWith(".zip")) {
                 if (isZipFile(target)) {
                     finalPath = extractFromZip(target); // Modificado para manejar .shp o .xlsx
@@ -70,9 +80,10 @@ public class ImportService {
                         !lowerName.endsWith(".geojson") &&
                         !lowerName.endsWith(".json") &&
                         !lowerName.endsWith(".kml") &&
+                        !lowerName.endsWith(".kmz") &&
                         !lowerName.endsWith(".xlsx") &&
                         !lowerName.endsWith(".xls")) {
-                    throw new RuntimeException("Formato no soportado. Usar: .zip, .shp, .geojson, .kml, .xlsx o .xls");
+                    throw new RuntimeException("Formato no soportado. Usar: .zip, .shp, .geojson, .kml, .kmz, .xlsx o .xls");
                 }
             }
 
@@ -80,6 +91,7 @@ public class ImportService {
             ImportJob job = ImportJob.builder()
                     .jobType("IMPORT_SHAPEFILE")
                     .status("PENDING")
+                    .importMode(importMode)
                     .fileUrl(finalPath.toAbsolutePath().toString())
                     .parameters("Layer: " + layerCode + ", SRID: " + (srid != null ? srid : "auto"))
                     .createdAt(LocalDateTime.now())
@@ -0,0 +1,261 @@
+package com.ogt.gis.service;
+
+import com.ogt.gis.entity.MapLayer;
+import com.ogt.gis.repository.SpatialWindowRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.ItemBoundable;
+import org.locationtech.jts.index.strtree.ItemDistance;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Caché de capas de referencia en memoria ({@code MapLayer.cacheInMemory}).
+ *
+ * Cada capa habilitada se carga entera la primera vez que se consulta, en un STRtree de geometrías
+ * compactas (coordenadas empaquetadas en un double[], sin un objeto Coordinate por vértice), y
+ * {@code findNearest} / {@code findWithin} se resuelven contra ese árbol sin ir a SQL Server.
+ *
+ * - Presupuesto de memoria ({@code gis.layer-cache.max-bytes}, estimado por vértices y textos):
+ *   al pasarlo se descartan las capas menos usadas; una capa que sola no entra no se cachea.
+ * - Se invalida al terminar un import de la capa y al editarla. Además cada entrada recuerda la
+ *   versión activa con la que se cargó (un REPLACE en otra instancia la deja vieja) y vence a los
+ *   {@code gis.layer-cache.ttl-ms} (imports APPEND/INCREMENTAL de otra instancia).
+ */
+@Component
+@Slf4j
+public class LayerIndexCache {
+
+    /** Overhead aproximado por feature: objetos, envelope, nodo del árbol. */
+    private static final long FEATURE_OVERHEAD_BYTES = 160;
+
+    public record CachedFeature(UUID id, String externalId, String properties, Geometry geom) {}
+
+    public record Hit(CachedFeature feature, double distance) {}
+
+    private final SpatialWindowRepository windowRepository;
+    private final long maxBytes;
+    private final long ttlMs;
+
+    /** Orden de acceso: la primera entrada es la menos usada. */
+    private final LinkedHashMap<String, LayerIndex> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /** Capas que no entran en el presupuesto, por versión: no se reintenta cargarlas en cada request. */
+    private final Map<String, Integer> oversized = new HashMap<>();
+    /**
+     * Invalidaciones de cada capa: una carga que empezó antes de un {@link #invalidate} leyó datos
+     * que pueden ser viejos y no se guarda.
+     */
+    private final Map<String, Long> generations = new HashMap<>();
+    private long totalBytes;
+
+    public LayerIndexCache(SpatialWindowRepository windowRepository,
+                           @Value("${gis.layer-cache.max-bytes:134217728}") long maxBytes,
+                           @Value("${gis.layer-cache.ttl-ms:600000}") long ttlMs) {
+        this.windowRepository = windowRepository;
+        this.maxBytes = maxBytes;
+        this.ttlMs = ttlMs;
+    }
+
+    /** Índice de la capa, cargándolo si hace falta; vacío si la capa no usa caché o no entra. */
+    public Optional<LayerIndex> get(MapLayer layer) {
+        if (!Boolean.TRUE.equals(layer.getCacheInMemory())) return Optional.empty();
+
+        String code = layer.getCode();
+        int version = layer.getActiveVersion() != null ? layer.getActiveVersion() : 0;
+        long generation;
+        synchronized (this) {
+            LayerIndex index = entries.get(code);
+            if (index != null && index.version == version
+                    && System.currentTimeMillis() - index.loadedAt < ttlMs) {
+                return Optional.of(index);
+            }
+            if (Objects.equals(oversized.get(code), version)) return Optional.empty();
+            generation = generations.getOrDefault(code, 0L);
+        }
+
+        // Fuera del lock: dos requests simultáneos pueden cargar la misma capa, queda la última
+        LayerIndex loaded = load(code, version);
+        synchronized (this) {
+            if (generations.getOrDefault(code, 0L) != generation) {
+                // Invalidada mientras se cargaba: este request va a SQL Server y el próximo recarga
+                log.debug("Capa {} invalidada durante la carga, se descarta el índice", code);
+                return Optional.empty();
+            }
+            if (loaded == null) {
+                oversized.put(code, version);
+                return Optional.empty();
+            }
+            put(code, loaded);
+        }
+        return Optional.of(loaded);
+    }
+
+    public synchronized void invalidate(String layerCode) {
+        LayerIndex removed = entries.remove(layerCode);
+        if (removed != null) totalBytes -= removed.bytes;
+        oversized.remove(layerCode);
+        generations.merge(layerCode, 1L, Long::sum);
+    }
+
+    private void put(String code, LayerIndex index) {
+        LayerIndex previous = entries.put(code, index);
+        if (previous != null) totalBytes -= previous.bytes;
+        totalBytes += index.bytes;
+
+        Iterator<Map.Entry<String, LayerIndex>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, LayerIndex> entry = eldest.next();
+            if (entry.getKey().equals(code)) continue;
+            totalBytes -= entry.getValue().bytes;
+            eldest.remove();
+            log.info("🗑️ Capa {} descartada de la caché en memoria (presupuesto {} MB)",
+                    entry.getKey(), maxBytes / (1024 * 1024));
+        }
+    }
+
+    /** @return null si la capa supera el presupuesto */
+    private LayerIndex load(String code, int version) {
+        long start = System.currentTimeMillis();
+        STRtree tree = new STRtree();
+        long[] bytes = {0};
+        int[] count = {0};
+        Map<Integer, WKBReader> readers = new HashMap<>();
+
+        try {
+            windowRepository.streamLayer(code, rs -> {
+                int srid = rs.getInt("srid");
+                Geometry geom;
+                try {
+                    geom = readers.computeIfAbsent(srid, LayerIndexCache::compactReader).read(rs.getBytes("wkb"));
+                } catch (ParseException e) {
+                    log.warn("⚠️ Geometría ilegible en la capa {} (feature {}), se omite", code, rs.getString("id"));
+                    return;
+                }
+                geom.setSRID(srid);
+                CachedFeature feature = new CachedFeature(UUID.fromString(rs.getString("id")),
+                        rs.getString("external_id"), rs.getString("properties"), geom);
+
+                bytes[0] += estimateBytes(feature);
+                if (bytes[0] > maxBytes) throw new OverBudget();
+                tree.insert(geom.getEnvelopeInternal(), feature);
+                count[0]++;
+            });
+        } catch (OverBudget e) {
+            log.warn("⚠️ La capa {} supera el presupuesto de la caché en memoria ({} MB), se consulta en SQL Server",
+                    code, maxBytes / (1024 * 1024));
+            return null;
+        }
+
+        tree.build();
+        log.info("🧠 Capa {} (v{}) cargada en memoria: {} features, ~{} KB en {} ms",
+                code, version, count[0], bytes[0] / 1024, System.currentTimeMillis() - start);
+        return new LayerIndex(tree, count[0], bytes[0], version);
+    }
+
+    private static WKBReader compactReader(int srid) {
+        return new WKBReader(new GeometryFactory(new PrecisionModel(), srid,
+                PackedCoordinateSequenceFactory.DOUBLE_FACTORY));
+    }
+
+    private static long estimateBytes(CachedFeature f) {
+        long text = (f.externalId() != null ? f.externalId().length() : 0)
+                + (f.properties() != null ? f.properties().length() : 0);
+        return FEATURE_OVERHEAD_BYTES + f.geom().getNumPoints() * 16L + text * 2;
+    }
+
+    private static final class OverBudget extends RuntimeException {
+        OverBudget() {
+            super(null, null, false, false);
+        }
+    }
+
+    /** Índice armado de una capa. Inmutable: se consulta desde varios hilos sin sincronizar. */
+    public static final class LayerIndex {
+
+        private static final ItemDistance GEOMETRY_DISTANCE =
+                (ItemBoundable a, ItemBoundable b) -> geometryOf(a.getItem()).distance(geometryOf(b.getItem()));
+
+        private final STRtree tree;
+        private final int size;
+        private final long bytes;
+        private final int version;
+        private final long loadedAt = System.currentTimeMillis();
+
+        private LayerIndex(STRtree tree, int size, long bytes, int version) {
+            this.tree = tree;
+            this.size = size;
+            this.bytes = bytes;
+            this.version = version;
+        }
+
+        /** Top-k exacto por distancia al punto, ordenado de menor a mayor. */
+        public List<Hit> nearest(Point point, int k) {
+            if (size == 0 || k <= 0) return List.of();
+            Object[] items = tree.nearestNeighbour(point.getEnvelopeInternal(), point, GEOMETRY_DISTANCE,
+                    Math.min(k, size));
+
+            List<Hit> hits = new ArrayList<>(items.length);
+            for (Object item : items) {
+                CachedFeature f = (CachedFeature) item;
+                hits.add(new Hit(f, f.geom().distance(point)));
+            }
+            hits.sort(Comparator.comparingDouble(Hit::distance));
+            return hits;
+        }
+
+        /**
+         * Features que intersecan la ventana, en el orden del keyset de SQL Server (mismo orden que
+         * {@link SpatialWindowRepository#findIntersecting}: se puede paginar pasando de uno al otro).
+         */
+        public List<CachedFeature> intersecting(Geometry window, UUID after, int limit) {
+            PreparedGeometry prepared = PreparedGeometryFactory.prepare(window);
+            List<CachedFeature> matches = new ArrayList<>();
+            for (Object item : tree.query(window.getEnvelopeInternal())) {
+                CachedFeature f = (CachedFeature) item;
+                if (after != null && SQL_SERVER_UUID_ORDER.compare(f.id(), after) <= 0) continue;
+                if (prepared.intersects(f.geom())) matches.add(f);
+            }
+            matches.sort(Comparator.comparing(CachedFeature::id, SQL_SERVER_UUID_ORDER));
+            return matches.size() > limit ? matches.subList(0, limit) : matches;
+        }
+
+        /** Features cuyo envelope toca el rectángulo (sin recortar ni filtrar por la geometría exacta). */
+        public List<CachedFeature> inEnvelope(Envelope envelope) {
+            List<CachedFeature> features = new ArrayList<>();
+            for (Object item : tree.query(envelope)) features.add((CachedFeature) item);
+            return features;
+        }
+
+        private static Geometry geometryOf(Object item) {
+            return item instanceof CachedFeature f ? f.geom() : (Geometry) item;
+        }
+    }
+
+    /** Bytes del UUID (orden del texto) en el orden en que SQL Server compara un uniqueidentifier. */
+    private static final int[] SQL_SERVER_BYTE_ORDER = {10, 11, 12, 13, 14, 15, 8, 9, 7, 6, 5, 4, 3, 2, 1, 0};
+
+    static final Comparator<UUID> SQL_SERVER_UUID_ORDER = (a, b) -> {
+        for (int i : SQL_SERVER_BYTE_ORDER) {
+            int cmp = Integer.compare(uuidByte(a, i), uuidByte(b, i));
+            if (cmp != 0) return cmp;
+        }
+        return 0;
+    };
+
+    private static int uuidByte(UUID id, int i) {
+        long half = i < 8 ? id.getMostSignificantBits() : id.getLeastSignificantBits();
+        return (int) (half >>> (56 - 8 * (i % 8))) & 0xff;
+    }
+}
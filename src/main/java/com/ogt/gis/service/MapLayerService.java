@@ -18,6 +18,7 @@ import java.util.stream.Collectors;
 public class MapLayerService {
 
     private final MapLayerRepository layerRepository;
+    private final LayerIndexCache layerIndexCache;
 
     @Transactional(readOnly = true)
     public List<MapLayerDTO> getAllLayers() {
@@ -44,8 +45,12 @@ public class MapLayerService {
         layer.setStyle(dto.getStyle());
         layer.setIsActive(dto.getIsActive());
         layer.setZIndex(dto.getZIndex());
+        layer.setKeyAttributes(dto.getKeyAttributes());
+        if (dto.getCacheInMemory() != null) layer.setCacheInMemory(dto.getCacheInMemory());
 
-        return toDTO(layerRepository.save(layer));
+        MapLayer saved = layerRepository.save(layer);
+        layerIndexCache.invalidate(saved.getCode());
+        return toDTO(saved);
     }
 
     // Mappers simples
@@ -59,6 +64,8 @@ public class MapLayerService {
                 .style(entity.getStyle())
                 .isActive(entity.getIsActive())
                 .zIndex(entity.getZIndex())
+                .keyAttributes(entity.getKeyAttributes())
+                .cacheInMemory(entity.getCacheInMemory())
                 .build();
     }
 
@@ -71,6 +78,8 @@ public class MapLayerService {
                 .style(dto.getStyle())
                 .isActive(dto.getIsActive() != null ? dto.getIsActive() : true)
                 .zIndex(dto.getZIndex() != null ? dto.getZIndex() : 0)
+                .keyAttributes(dto.getKeyAttributes())
+                .cacheInMemory(dto.getCacheInMemory() != null ? dto.getCacheInMemory() : false)
                 .build();
     }
 }
\ No newline at end of file
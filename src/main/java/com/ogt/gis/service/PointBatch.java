@@ -0,0 +1,152 @@
+package com.ogt.gis.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ogt.common.exception.BusinessException;
+import com.ogt.gis.dto.CoordinateBatchDTO;
+import com.ogt.gis.dto.CoordinateDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Lectura y escritura de los lotes de puntos, compartida por {@link CoordinateBatchService} y
+ * {@link DistrictBatchService}: cada servicio solo aporta lo que hace con un bloque de puntos.
+ *
+ * - Empaquetado: arreglos x / y que se validan y convierten enteros antes de responder, así un
+ *   error es una respuesta de error normal.
+ * - NDJSON: un {@link CoordinateDTO} por línea, procesado por bloques a medida que llega el
+ *   cuerpo; una línea de respuesta por punto, en el mismo orden. Como la respuesta ya empezó, una
+ *   línea inválida no puede volverse un 400: en su posición sale {@code {"error": "Línea N: ..."}}
+ *   y el stream termina ahí.
+ */
+@Slf4j
+final class PointBatch {
+
+    /** Líneas NDJSON que se leen, procesan y devuelven por vez. */
+    private static final int NDJSON_BLOCK_POINTS = 8_192;
+
+    /**
+     * Procesa un bloque de puntos intercalados ({@code x0, y0, x1, y1, ...}, ya en el SRID
+     * destino) y devuelve cómo escribir el resultado de cada uno.
+     */
+    @FunctionalInterface
+    interface BlockOperation {
+        PointWriter apply(double[] xy, int points);
+    }
+
+    /** Escribe el valor de respuesta (un único valor JSON) del punto {@code i} del bloque. */
+    @FunctionalInterface
+    interface PointWriter {
+        void write(int i, JsonGenerator json) throws IOException;
+    }
+
+    private PointBatch() {
+    }
+
+    /**
+     * Los arreglos x / y del lote, intercalados y convertidos a {@code targetSrid}
+     * ({@code 0}: se validan pero no se convierten, el resultado no depende de ellos).
+     */
+    static double[] packed(CoordinateBatchDTO batch, CoordinateService coordinateService, int targetSrid) {
+        double[] xs = batch.getX();
+        double[] ys = batch.getY();
+        if (xs.length != ys.length) {
+            throw new BusinessException("x e y deben tener la misma cantidad de valores ("
+                    + xs.length + " != " + ys.length + ")");
+        }
+
+        int points = xs.length;
+        double[] xy = new double[points * 2];
+        for (int i = 0; i < points; i++) {
+            xy[2 * i] = xs[i];
+            xy[2 * i + 1] = ys[i];
+        }
+        if (targetSrid != 0) coordinateService.transform(batch.getSrid(), targetSrid, xy, 0, points);
+        return xy;
+    }
+
+    /**
+     * Procesa el cuerpo NDJSON por bloques: dentro de un bloque cada tramo de líneas con el mismo
+     * SRID de origen se convierte a {@code targetSrid} con una sola llamada y el bloque pasa
+     * entero por {@code operation}. Con {@code targetSrid} 0 los puntos no se convierten.
+     *
+     * @param name para el log
+     */
+    static StreamingResponseBody ndjson(String name, InputStream body, ObjectMapper objectMapper,
+                                        CoordinateService coordinateService, int targetSrid,
+                                        BlockOperation operation) {
+        return out -> {
+            double[] xy = new double[NDJSON_BLOCK_POINTS * 2];
+            int[] srids = new int[NDJSON_BLOCK_POINTS];
+            long line = 0;
+            long errorLine = 0;
+            String error = null;
+
+            try (MappingIterator<CoordinateDTO> lines = objectMapper.readerFor(CoordinateDTO.class).readValues(body);
+                 JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+                json.setRootValueSeparator(null);
+
+                boolean more = true;
+                while (more) {
+                    long firstLine = line + 1;
+                    int count = 0;
+                    try {
+                        while (count < NDJSON_BLOCK_POINTS && (more = lines.hasNextValue())) {
+                            CoordinateDTO c = lines.nextValue();
+                            if (c.getX() == null || c.getY() == null || c.getSrid() == null) {
+                                errorLine = line + 1;
+                                error = "x, y y srid son obligatorios";
+                                break;
+                            }
+                            xy[2 * count] = c.getX();
+                            xy[2 * count + 1] = c.getY();
+                            srids[count] = c.getSrid();
+                            count++;
+                            line++;
+                        }
+                    } catch (JsonProcessingException e) {
+                        errorLine = line + 1;
+                        error = "JSON inválido (" + e.getOriginalMessage() + ")";
+                    }
+
+                    for (int run = 0; targetSrid != 0 && run < count; ) {
+                        int end = run + 1;
+                        while (end < count && srids[end] == srids[run]) end++;
+                        try {
+                            coordinateService.transform(srids[run], targetSrid, xy, run, end - run);
+                        } catch (RuntimeException e) {
+                            // Se responden los puntos anteriores al tramo y el error en su lugar
+                            errorLine = firstLine + run;
+                            error = "no se puede convertir desde EPSG:" + srids[run] + " (" + e.getMessage() + ")";
+                            count = run;
+                            break;
+                        }
+                        run = end;
+                    }
+
+                    PointWriter writer = operation.apply(xy, count);
+                    for (int i = 0; i < count; i++) {
+                        writer.write(i, json);
+                        json.writeRaw('\n');
+                    }
+                    if (error != null) {
+                        json.writeStartObject();
+                        json.writeStringField("error", "Línea " + errorLine + ": " + error);
+                        json.writeEndObject();
+                        json.writeRaw('\n');
+                        more = false;
+                    }
+                    json.flush();
+                }
+            }
+
+            if (error != null) log.warn("⚠️ {} NDJSON cortado en la línea {}: {}", name, errorLine, error);
+            else log.debug("{} NDJSON: {} puntos -> EPSG:{}", name, line, targetSrid);
+        };
+    }
+}
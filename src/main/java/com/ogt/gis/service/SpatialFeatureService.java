@@ -39,7 +39,7 @@ public class SpatialFeatureService {
                     .id(entity.getId())
                     .layerCode(entity.getLayer() != null ? entity.getLayer().getCode() : null)
                     .externalId(entity.getExternalId())
-                    .geometry(GeoJSONHelper.geometryToGeoJson(entity.getGeom()))
+                    .geometry(entity.getGeom())
                     .properties(GeoJSONHelper.parseProperties(entity.getProperties()))
                     .createdAt(entity.getCreatedAt())
                     .build();
@@ -3,21 +3,22 @@ package com.ogt.gis.service;
 import com.ogt.gis.dto.CoordinateDTO;
 import com.ogt.gis.dto.FeatureResponseDTO;
 import com.ogt.gis.dto.SpatialFeatureDTO;
-import com.ogt.gis.entity.DistrictBoundary;
 import com.ogt.gis.entity.SpatialFeature;
-import com.ogt.gis.repository.DistrictBoundaryRepository;
+import com.ogt.gis.repository.MapLayerRepository;
 import com.ogt.gis.repository.SpatialFeatureRepository;
+import com.ogt.gis.repository.SpatialWindowRepository;
 import com.ogt.gis.util.GeoJSONHelper;
 import lombok.RequiredArgsConstructor;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.Point;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -26,11 +27,15 @@ import java.util.stream.Collectors;
 public class SpatialQueryService {
 
     private final SpatialFeatureRepository featureRepository;
-    private final DistrictBoundaryRepository districtRepository; // Para buscar distrito por punto
+    private final SpatialWindowRepository windowRepository;
+    private final MapLayerRepository layerRepository;
+    private final LayerIndexCache layerIndexCache; // Capas de referencia en memoria (opt-in por capa)
+    private final DistrictIndex districtIndex; // Para buscar distrito por punto (en memoria)
     private final CoordinateService coordinateService;
 
     private final GeometryFactory geometryFactory = new GeometryFactory();
     private static final int STORAGE_SRID = 31984;
+    private static final int MAX_WINDOW_LIMIT = 10_000;
 
     /**
      * Busca features genéricos cercanos (NO POSTES).
@@ -49,24 +54,38 @@ public class SpatialQueryService {
         Point searchPoint = geometryFactory.createPoint(new Coordinate(converted.getX(), converted.getY()));
         searchPoint.setSRID(STORAGE_SRID);
 
-        // 3. Buscar en SpatialFeature (Capas de referencia)
-        List<SpatialFeature> features = featureRepository.findNearest(
-                searchPoint,
+        // 3a. Capa cacheada en memoria: top-k sobre el STRtree
+        Optional<LayerIndexCache.LayerIndex> cached = cachedLayer(layerCode);
+        if (cached.isPresent()) {
+            return cached.get().nearest(searchPoint, limit).stream().map(hit -> FeatureResponseDTO.builder()
+                    .id(hit.feature().id())
+                    .externalId(hit.feature().externalId())
+                    .properties(hit.feature().properties())
+                    .distanceMeters(hit.distance())
+                    .location(location(hit.feature().geom()))
+                    .build()
+            ).collect(Collectors.toList());
+        }
+
+        // 3b. Buscar en SpatialFeature (Capas de referencia): KNN con radio creciente sobre el
+        //     índice espacial; la distancia ya viene calculada por SQL Server
+        List<SpatialWindowRepository.FeatureRow> features = windowRepository.findNearest(
                 layerCode,
-                PageRequest.of(0, limit)
+                searchPoint.getX(),
+                searchPoint.getY(),
+                STORAGE_SRID,
+                Math.max(1, limit)
         );
 
         // 4. Mapear respuesta
-        return features.stream().map(f -> {
-            double distance = f.getGeom().distance(searchPoint);
-            return FeatureResponseDTO.builder()
-                    .id(f.getId())
-                    .externalId(f.getExternalId())
-                    .properties(f.getProperties())
-                    .distanceMeters(distance)
-                    .location(new CoordinateDTO(f.getGeom().getCoordinate().x, f.getGeom().getCoordinate().y, STORAGE_SRID))
-                    .build();
-        }).collect(Collectors.toList());
+        return features.stream().map(f -> FeatureResponseDTO.builder()
+                .id(f.id())
+                .externalId(f.externalId())
+                .properties(f.properties())
+                .distanceMeters(f.distance())
+                .location(new CoordinateDTO(f.x(), f.y(), STORAGE_SRID))
+                .build()
+        ).collect(Collectors.toList());
     }
 
     /**
@@ -80,13 +99,9 @@ public class SpatialQueryService {
         Point point = geometryFactory.createPoint(new Coordinate(converted.getX(), converted.getY()));
         point.setSRID(STORAGE_SRID);
 
-        // Nota: Esto requiere un método en el repositorio, o traerlos y filtrar (si son pocos)
-        // Para eficiencia, asumimos que son pocos distritos (<100) y filtramos en memoria
-        // o implementamos una @Query con STIntersects en el repo.
-        return districtRepository.findAll().stream()
-                .filter(d -> d.getGeom().contains(point))
-                .map(DistrictBoundary::getName)
-                .findFirst()
+        // Consulta al índice en memoria (STRtree + PreparedGeometry), sin ir a la BD
+        return districtIndex.findContaining(point)
+                .map(DistrictIndex.District::name)
                 .orElse("Desconocido");
     }
 
@@ -117,11 +132,20 @@ public class SpatialQueryService {
         );
     }
 
+    /** Una página de {@link #findWithin}; {@code nextAfter} es null si no hay más resultados. */
+    public record WithinPage(List<FeatureResponseDTO> features, UUID nextAfter) {}
+
     /**
      * ✅ NUEVO - Encuentra features que están dentro de un polígono GeoJSON.
+     *
+     * Filtro de capa, intersección y paginación se resuelven en SQL Server
+     * ({@link SpatialWindowRepository}). Paginación por keyset: con {@code limit} se devuelve una
+     * página y, si quedan más, el id a pasar como {@code after} para la siguiente. Sin
+     * {@code limit} se devuelve la intersección completa, leída de a páginas.
      */
     @Transactional(readOnly = true)
-    public List<FeatureResponseDTO> findWithin(Map<String, Object> geoJsonPolygon, String layerCode) {
+    public WithinPage findWithin(Map<String, Object> geoJsonPolygon, String layerCode,
+                                 UUID after, Integer limit) {
         try {
             // 1. Convertir GeoJSON a JTS Geometry
             org.locationtech.jts.geom.Geometry polygon =
@@ -136,26 +160,64 @@ public class SpatialQueryService {
                 polygon.setSRID(STORAGE_SRID);
             }
 
-            // 3. Buscar intersecciones en la BD
-            List<SpatialFeature> features = featureRepository.findIntersecting(polygon);
+            Optional<LayerIndexCache.LayerIndex> cached = cachedLayer(layerCode);
+            if (limit != null) {
+                return withinPage(polygon, layerCode, cached, after, Math.max(1, Math.min(limit, MAX_WINDOW_LIMIT)));
+            }
 
-            // 4. Filtrar por capa y mapear a DTO
-            return features.stream()
-                    .filter(f -> f.getLayer() != null && f.getLayer().getCode().equals(layerCode))
-                    .map(f -> FeatureResponseDTO.builder()
-                            .id(f.getId())
-                            .externalId(f.getExternalId())
-                            .properties(f.getProperties())
-                            .location(new CoordinateDTO(
-                                    f.getGeom().getCoordinate().x,
-                                    f.getGeom().getCoordinate().y,
-                                    f.getGeom().getSRID()
-                            ))
-                            .build())
-                    .collect(Collectors.toList());
+            // 3. Sin limit: todas las páginas
+            List<FeatureResponseDTO> all = new ArrayList<>();
+            UUID next = after;
+            do {
+                WithinPage page = withinPage(polygon, layerCode, cached, next, MAX_WINDOW_LIMIT);
+                all.addAll(page.features());
+                next = page.nextAfter();
+            } while (next != null);
+            return new WithinPage(all, null);
 
         } catch (Exception e) {
             throw new RuntimeException("Error procesando consulta espacial: " + e.getMessage(), e);
         }
     }
+
+    /** Se pide una fila de más para saber si hay otra página. */
+    private WithinPage withinPage(org.locationtech.jts.geom.Geometry polygon, String layerCode,
+                                  Optional<LayerIndexCache.LayerIndex> cached, UUID after, int pageSize) {
+        List<FeatureResponseDTO> features;
+        if (cached.isPresent()) {
+            // Capa cacheada en memoria
+            features = cached.get().intersecting(polygon, after, pageSize + 1).stream()
+                    .map(f -> FeatureResponseDTO.builder()
+                            .id(f.id())
+                            .externalId(f.externalId())
+                            .properties(f.properties())
+                            .location(location(f.geom()))
+                            .build())
+                    .collect(Collectors.toList());
+        } else {
+            // Intersecciones de la capa en la BD (solo las columnas de la respuesta)
+            features = windowRepository.findIntersecting(layerCode, polygon, after, pageSize + 1).stream()
+                    .map(f -> FeatureResponseDTO.builder()
+                            .id(f.id())
+                            .externalId(f.externalId())
+                            .properties(f.properties())
+                            .location(new CoordinateDTO(f.x(), f.y(), f.srid()))
+                            .build())
+                    .collect(Collectors.toList());
+        }
+
+        if (features.size() <= pageSize) return new WithinPage(features, null);
+        List<FeatureResponseDTO> page = new ArrayList<>(features.subList(0, pageSize));
+        return new WithinPage(page, page.get(pageSize - 1).getId());
+    }
+
+    private Optional<LayerIndexCache.LayerIndex> cachedLayer(String layerCode) {
+        return layerRepository.findByCode(layerCode).flatMap(layerIndexCache::get);
+    }
+
+    /** Primer vértice de la geometría, igual que la consulta SQL. */
+    private CoordinateDTO location(org.locationtech.jts.geom.Geometry geom) {
+        Coordinate first = geom.getCoordinate();
+        return new CoordinateDTO(first.x, first.y, geom.getSRID());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,431 @@
+package com.ogt.gis.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Caché de vector tiles ya codificados, por (fuente, versión, z, x, y).
+ *
+ * Dos niveles:
+ * - Memoria: LRU con presupuesto en bytes ({@code gis.tiles.cache.memory-max-bytes}).
+ * - Disco: un único archivo por fuente y versión ({@code <dir>/<fuente>/v<versión>.tiles}, a la
+ *   MBTiles pero sin SQLite) donde los tiles se agregan al final y se leen a través de un mapeo
+ *   en memoria del archivo: una lectura es copiar los bytes del tile, sin syscalls. El índice
+ *   clave -> posición vive en memoria y se reconstruye recorriendo el archivo al abrirlo, así
+ *   que el caché sobrevive a un reinicio.
+ *
+ * Un tile vence a los {@code gis.tiles.cache.ttl-ms} (cambios hechos por otra instancia). Al
+ * cambiar la versión de una fuente (REPLACE) el archivo de la versión anterior se borra; los
+ * cambios parciales se descartan por rango de tiles con {@link #evict}. Un tile que se estaba
+ * generando mientras se descartaba su fuente no se guarda (pudo leer los datos de antes).
+ */
+@Component
+@Slf4j
+public class TileCache {
+
+    /** Overhead aproximado por tile en memoria: clave, entrada, nodo del mapa. */
+    private static final long ENTRY_OVERHEAD_BYTES = 128;
+
+    public record TileKey(String source, int version, int z, int x, int y) {}
+
+    /** Tile cacheado y cuándo se generó. */
+    private record Entry(byte[] tile, long writtenAt) {}
+
+    @FunctionalInterface
+    public interface TileFilter {
+        boolean test(int z, int x, int y);
+    }
+
+    private final Path directory;
+    private final long memoryMaxBytes;
+    private final long maxFileBytes;
+    private final long ttlMs;
+
+    /** Orden de acceso: la primera entrada es la menos usada. */
+    private final LinkedHashMap<TileKey, Entry> memory = new LinkedHashMap<>(1024, 0.75f, true);
+    private long memoryBytes;
+
+    /** Archivo abierto de cada fuente (el de su versión vigente). */
+    private final Map<String, TileFile> files = new HashMap<>();
+    /** Descartes de cada fuente: un tile generado antes de un descarte no se guarda. */
+    private final Map<String, Long> epochs = new HashMap<>();
+
+    public TileCache(@Value("${gis.tiles.cache.dir:${java.io.tmpdir}/ogt-gis-tiles}") String directory,
+                     @Value("${gis.tiles.cache.memory-max-bytes:67108864}") long memoryMaxBytes,
+                     @Value("${gis.tiles.cache.max-file-bytes:1073741824}") long maxFileBytes,
+                     @Value("${gis.tiles.cache.ttl-ms:3600000}") long ttlMs) {
+        this.directory = Path.of(directory);
+        this.memoryMaxBytes = memoryMaxBytes;
+        // Un MappedByteBuffer llega a 2 GB
+        this.maxFileBytes = Math.min(maxFileBytes, Integer.MAX_VALUE);
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * Tile cacheado, o el que genera {@code render} (que queda cacheado salvo que la fuente se
+     * haya descartado mientras se generaba).
+     */
+    public byte[] get(TileKey key, Supplier<byte[]> render) {
+        long epoch = epoch(key.source());
+        byte[] tile = lookup(key);
+        if (tile != null) return tile;
+        tile = render.get();
+        put(key, tile, epoch);
+        return tile;
+    }
+
+    private byte[] lookup(TileKey key) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Entry entry = memory.get(key);
+            if (entry != null) {
+                if (now - entry.writtenAt() < ttlMs) return entry.tile();
+                forget(key);
+            }
+        }
+
+        TileFile file = file(key.source(), key.version(), false);
+        Entry entry = file != null ? file.read(pack(key)) : null;
+        if (entry == null || now - entry.writtenAt() >= ttlMs) return null;
+        remember(key, entry);
+        return entry.tile();
+    }
+
+    private void put(TileKey key, byte[] tile, long epoch) {
+        Entry entry = new Entry(tile, System.currentTimeMillis());
+        synchronized (this) {
+            if (epoch(key.source()) != epoch) return;
+            remember(key, entry);
+        }
+        TileFile file = file(key.source(), key.version(), true);
+        if (file == null) return;
+        file.write(pack(key), entry);
+
+        // Un descarte que llegó durante la escritura pudo marcar el tile antes de que se agregara
+        synchronized (this) {
+            if (epoch(key.source()) == epoch) return;
+            forget(key);
+        }
+        file.remove(pack(key));
+    }
+
+    private synchronized long epoch(String source) {
+        return epochs.getOrDefault(source, 0L);
+    }
+
+    /** Descarta todos los tiles de la fuente, de cualquier versión, en memoria y en disco. */
+    public void evictAll(String source) {
+        TileFile file;
+        synchronized (this) {
+            epochs.merge(source, 1L, Long::sum);
+            memory.keySet().stream().filter(k -> k.source().equals(source)).toList().forEach(this::forget);
+            file = files.remove(source);
+        }
+        if (file != null) file.delete();
+        deleteFiles(source, -1);
+        log.info("🗑️ Caché de tiles de {} descartada", source);
+    }
+
+    /**
+     * Descarta los tiles de la versión de la fuente que cumplen el filtro.
+     *
+     * @return los tiles descartados (los que estaban en memoria o en disco)
+     */
+    public Set<TileKey> evict(String source, int version, TileFilter filter) {
+        Set<TileKey> evicted = new LinkedHashSet<>();
+        TileFile file;
+        synchronized (this) {
+            epochs.merge(source, 1L, Long::sum);
+            for (TileKey key : memory.keySet().stream().filter(k -> k.source().equals(source)).toList()) {
+                if (filter.test(key.z(), key.x(), key.y())) {
+                    forget(key);
+                    if (key.version() == version) evicted.add(key);
+                }
+            }
+            file = files.get(source);
+        }
+        if (file == null) file = file(source, version, false);
+        if (file != null && file.version == version) {
+            for (long packed : file.keys()) {
+                int z = (int) (packed >>> 58);
+                int x = (int) ((packed >>> 29) & 0x1FFFFFFF);
+                int y = (int) (packed & 0x1FFFFFFF);
+                if (filter.test(z, x, y)) {
+                    file.remove(packed);
+                    evicted.add(new TileKey(source, version, z, x, y));
+                }
+            }
+        }
+        return evicted;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        files.values().forEach(TileFile::close);
+        files.clear();
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Memoria
+    // ---------------------------------------------------------------------------------------
+
+    private synchronized void remember(TileKey key, Entry entry) {
+        Entry previous = memory.put(key, entry);
+        if (previous != null) memoryBytes -= cost(previous);
+        memoryBytes += cost(entry);
+
+        Iterator<Map.Entry<TileKey, Entry>> eldest = memory.entrySet().iterator();
+        while (memoryBytes > memoryMaxBytes && eldest.hasNext()) {
+            memoryBytes -= cost(eldest.next().getValue());
+            eldest.remove();
+        }
+    }
+
+    private void forget(TileKey key) {
+        Entry removed = memory.remove(key);
+        if (removed != null) memoryBytes -= cost(removed);
+    }
+
+    /** Bytes del tile más lo que ocupan clave y entrada (cuenta también los tiles vacíos). */
+    private static long cost(Entry entry) {
+        return entry.tile().length + ENTRY_OVERHEAD_BYTES;
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Disco
+    // ---------------------------------------------------------------------------------------
+
+    /**
+     * Archivo de la versión de la fuente; null si no existe (y {@code create} es false), si la
+     * versión pedida es anterior a la abierta (request en vuelo durante un REPLACE) o si no se
+     * puede abrir.
+     */
+    private TileFile file(String source, int version, boolean create) {
+        TileFile opened;
+        TileFile stale;
+        synchronized (this) {
+            TileFile current = files.get(source);
+            if (current != null && current.version == version) return current;
+            if (current != null && current.version > version) return null;
+
+            Path path = directory.resolve(folder(source)).resolve("v" + version + ".tiles");
+            if (!create && !Files.exists(path)) return null;
+            try {
+                opened = TileFile.open(path, version, maxFileBytes);
+            } catch (IOException e) {
+                log.warn("⚠️ No se pudo abrir la caché en disco de {}: {}", source, e.getMessage());
+                return null;
+            }
+            files.put(source, opened);
+            stale = current;
+        }
+
+        if (stale != null) stale.delete();
+        deleteFiles(source, version);
+        log.info("💾 Caché de tiles de {} (v{}) abierta: {} tiles", source, version, opened.keys().size());
+        return opened;
+    }
+
+    /** Borra los archivos de la fuente de versiones anteriores a {@code keepVersion} (-1: todos). */
+    private void deleteFiles(String source, int keepVersion) {
+        Path folder = directory.resolve(folder(source));
+        if (!Files.isDirectory(folder)) return;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, "v*.tiles")) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                int version = Integer.parseInt(name.substring(1, name.length() - ".tiles".length()));
+                if (keepVersion < 0 || version < keepVersion) Files.deleteIfExists(path);
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.warn("⚠️ No se pudieron borrar los tiles viejos de {}: {}", source, e.getMessage());
+        }
+    }
+
+    /** Nombre de carpeta seguro para la fuente (los códigos de escala traen ':' por ejemplo). */
+    private static String folder(String source) {
+        return source.replaceAll("[^A-Za-z0-9_-]", "_") + "-" + Integer.toHexString(source.hashCode());
+    }
+
+    /** z (5 bits) | x (29 bits) | y (29 bits). */
+    private static long pack(TileKey key) {
+        return ((long) key.z() << 58) | ((long) key.x() << 29) | key.y();
+    }
+
+    /**
+     * Archivo de tiles: registros {@code clave (8) | generado (8) | largo (4) | bytes}, solo se
+     * agrega al final; un largo -1 marca un tile descartado. Se lee por un mapeo del archivo que
+     * se amplía cuando el tile pedido cae después de lo mapeado.
+     *
+     * Lecturas con el lock de lectura (concurrentes), escrituras con el de escritura: al reiniciar
+     * el archivo (lleno) ningún lector está usando el mapeo anterior.
+     */
+    private static final class TileFile {
+
+        private static final int HEADER = 20;
+
+        private record Slot(long offset, int length, long writtenAt) {}
+
+        private final Path path;
+        private final int version;
+        private final long maxBytes;
+        private final FileChannel channel;
+        private final Map<Long, Slot> index = new ConcurrentHashMap<>();
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private volatile MappedByteBuffer mapped;
+        private long size;
+        private boolean closed;
+
+        private TileFile(Path path, int version, long maxBytes, FileChannel channel) {
+            this.path = path;
+            this.version = version;
+            this.maxBytes = maxBytes;
+            this.channel = channel;
+        }
+
+        static TileFile open(Path path, int version, long maxBytes) throws IOException {
+            Files.createDirectories(path.getParent());
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            TileFile file = new TileFile(path, version, maxBytes, channel);
+            try {
+                file.scan();
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e instanceof IOException io ? io : new IOException(e);
+            }
+            return file;
+        }
+
+        /** Reconstruye el índice; corta un registro a medio escribir (proceso interrumpido). */
+        private void scan() throws IOException {
+            long fileSize = Math.min(channel.size(), maxBytes);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            long position = 0;
+            while (position + HEADER <= fileSize) {
+                long key = buffer.getLong((int) position);
+                long writtenAt = buffer.getLong((int) position + 8);
+                int length = buffer.getInt((int) position + 16);
+                long data = position + HEADER;
+                if (length < -1 || data + Math.max(length, 0) > fileSize) break;
+
+                if (length < 0) index.remove(key);
+                else index.put(key, new Slot(data, length, writtenAt));
+                position = data + Math.max(length, 0);
+            }
+            if (position < channel.size()) channel.truncate(position);
+            size = position;
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        Set<Long> keys() {
+            return new HashSet<>(index.keySet());
+        }
+
+        Entry read(long key) {
+            lock.readLock().lock();
+            try {
+                Slot slot = index.get(key);
+                if (slot == null || closed) return null;
+                MappedByteBuffer buffer = mapped;
+                if (slot.offset() + slot.length() > buffer.capacity()) buffer = remap();
+
+                byte[] tile = new byte[slot.length()];
+                buffer.get((int) slot.offset(), tile);
+                return new Entry(tile, slot.writtenAt());
+            } catch (IOException e) {
+                log.warn("⚠️ No se pudo leer la caché de tiles {}: {}", path, e.getMessage());
+                return null;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private synchronized MappedByteBuffer remap() throws IOException {
+            if (mapped.capacity() < channel.size()) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            return mapped;
+        }
+
+        void write(long key, Entry entry) {
+            append(key, entry.writtenAt(), entry.tile());
+        }
+
+        void remove(long key) {
+            if (index.containsKey(key)) append(key, 0, null);
+        }
+
+        private void append(long key, long writtenAt, byte[] tile) {
+            lock.writeLock().lock();
+            try {
+                if (closed) return;
+                int length = tile != null ? tile.length : 0;
+                if (size + HEADER + length > maxBytes) {
+                    // Lleno de tiles vencidos o reescritos: se empieza de nuevo
+                    log.info("♻️ Caché de tiles {} llena ({} MB), se reinicia", path, size / (1024 * 1024));
+                    channel.truncate(0);
+                    index.clear();
+                    size = 0;
+                    mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, 0);
+                    if (tile == null) return;
+                }
+
+                ByteBuffer record = ByteBuffer.allocate(HEADER + length)
+                        .putLong(key)
+                        .putLong(writtenAt)
+                        .putInt(tile != null ? length : -1);
+                if (tile != null) record.put(tile);
+                record.flip();
+                long position = size;
+                while (record.hasRemaining()) position += channel.write(record, position);
+
+                if (tile != null) index.put(key, new Slot(size + HEADER, length, writtenAt));
+                else index.remove(key);
+                size = position;
+            } catch (IOException e) {
+                log.warn("⚠️ No se pudo escribir la caché de tiles {}: {}", path, e.getMessage());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void close() {
+            lock.writeLock().lock();
+            try {
+                closed = true;
+                index.clear();
+                channel.close();
+            } catch (IOException e) {
+                log.warn("⚠️ No se pudo cerrar la caché de tiles {}: {}", path, e.getMessage());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void delete() {
+            close();
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("⚠️ No se pudo borrar la caché de tiles {}: {}", path, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,532 @@
+package com.ogt.gis.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ogt.common.exception.BusinessException;
+import com.ogt.common.exception.ResourceNotFoundException;
+import com.ogt.gis.entity.MapLayer;
+import com.ogt.gis.repository.MapLayerRepository;
+import com.ogt.gis.repository.SpatialWindowRepository;
+import com.ogt.gis.service.TileCache.TileKey;
+import com.ogt.gis.util.MvtEncoder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.geotools.api.metadata.extent.GeographicBoundingBox;
+import org.geotools.api.referencing.operation.MathTransform;
+import org.geotools.api.referencing.operation.TransformException;
+import org.geotools.geometry.jts.JTS;
+import org.geotools.referencing.CRS;
+import org.locationtech.jts.geom.*;
+import org.locationtech.jts.geom.util.AffineTransformation;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.locationtech.jts.simplify.DouglasPeuckerSimplifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Vector tiles (Mapbox Vector Tile) de las capas de spatial_features, de los distritos y de las
+ * grillas cartográficas.
+ *
+ * Por tile z/x/y (esquema XYZ de Web Mercator): se leen los features que tocan el tile (de la
+ * caché en memoria si la capa la usa, del índice de distritos, o de SQL Server con la geometría
+ * ya reducida en el servidor), se reproyectan a Web Mercator, se recortan al tile más un margen,
+ * se simplifican a la resolución del zoom (un píxel de tile) y se cuantizan a la grilla de
+ * {@value #EXTENT} del tile. Así el cliente baja solo lo visible y con el detalle justo.
+ *
+ * Los tiles generados quedan en {@link TileCache}. Los imports y la generación de grillas
+ * descartan los tiles afectados; los de zoom bajo ({@code gis.tiles.cache.reseed-max-zoom}) se
+ * vuelven a generar en segundo plano, igual que los rangos que se precargan desde el endpoint
+ * de administración.
+ */
+@Service
+@Slf4j
+public class VectorTileService {
+
+    private static final int GRID_SRID = 4326;
+    private static final int WEB_MERCATOR = 3857;
+    private static final double MERCATOR_ORIGIN = 20037508.342789244;
+    private static final double MAX_LATITUDE = 85.0511287798066;
+    private static final int MAX_ZOOM = 24;
+
+    /** Resolución del tile y margen alrededor (en unidades de tile) para que no se vean cortes. */
+    private static final int EXTENT = 4096;
+    private static final int BUFFER = 64;
+
+    /**
+     * Margen (en grados) alrededor del área de uso declarada del CRS: una proyección UTM sigue
+     * siendo utilizable unos grados fuera de su zona, pero no en el otro lado del mundo.
+     */
+    private static final double DOMAIN_MARGIN_DEGREES = 3;
+    /** Puntos por lado al reproyectar la ventana: los bordes rectos en Mercator son curvos en UTM. */
+    private static final int WINDOW_DENSIFY_POINTS = 32;
+
+    // Fuentes de tiles (clave en la caché)
+    private static final String LAYER_SOURCE = "layer/";
+    private static final String DISTRICTS_SOURCE = "districts";
+    private static final String GRID_SOURCE = "grid/";
+
+    private final MapLayerRepository layerRepository;
+    private final SpatialWindowRepository windowRepository;
+    private final LayerIndexCache layerIndexCache;
+    private final DistrictIndex districtIndex;
+    private final TileCache tileCache;
+    private final CoordinateService coordinateService;
+    private final ObjectMapper objectMapper;
+    private final int reseedMaxZoom;
+    private final long maxSeedTiles;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+    /** Área de uso de cada SRID en Web Mercator (ver {@link #mercatorDomain}). */
+    private final Map<Integer, Envelope> mercatorDomains = new ConcurrentHashMap<>();
+    /** Precarga y regeneración de tiles, de a un tile por vez para no competir con los requests. */
+    private final ExecutorService seeder = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "tile-seed");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public VectorTileService(MapLayerRepository layerRepository,
+                             SpatialWindowRepository windowRepository,
+                             LayerIndexCache layerIndexCache,
+                             DistrictIndex districtIndex,
+                             TileCache tileCache,
+                             CoordinateService coordinateService,
+                             ObjectMapper objectMapper,
+                             @Value("${gis.tiles.cache.reseed-max-zoom:14}") int reseedMaxZoom,
+                             @Value("${gis.tiles.seed.max-tiles:200000}") long maxSeedTiles) {
+        this.layerRepository = layerRepository;
+        this.windowRepository = windowRepository;
+        this.layerIndexCache = layerIndexCache;
+        this.districtIndex = districtIndex;
+        this.tileCache = tileCache;
+        this.coordinateService = coordinateService;
+        this.objectMapper = objectMapper;
+        this.reseedMaxZoom = reseedMaxZoom;
+        this.maxSeedTiles = maxSeedTiles;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        seeder.shutdownNow();
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Tiles
+    // ---------------------------------------------------------------------------------------
+
+    /** Tile de una capa codificado en MVT; vacío (0 bytes) si no hay features en el tile. */
+    public byte[] getTile(String layerCode, int z, int x, int y) {
+        checkTile(z, x, y);
+        MapLayer layer = findLayer(layerCode);
+        return tileCache.get(new TileKey(LAYER_SOURCE + layerCode, version(layer), z, x, y),
+                () -> renderLayer(layer, z, x, y));
+    }
+
+    /** Tile de los distritos (id, code, name). */
+    public byte[] getDistrictTile(int z, int x, int y) {
+        checkTile(z, x, y);
+        return tileCache.get(new TileKey(DISTRICTS_SOURCE, 0, z, x, y), () -> renderDistricts(z, x, y));
+    }
+
+    /** Tile de la grilla de una escala (id, gridCode, lightPointsCount). */
+    public byte[] getGridTile(String scale, int z, int x, int y) {
+        checkTile(z, x, y);
+        return tileCache.get(new TileKey(GRID_SOURCE + scale, 0, z, x, y), () -> renderGrid(scale, z, x, y));
+    }
+
+    private byte[] renderLayer(MapLayer layer, int z, int x, int y) {
+        String layerCode = layer.getCode();
+        TileFrame frame = new TileFrame(layerCode, z, x, y);
+        // El mismo SRID al que convirtió el import (el de la capa o, si no declara, la zona por defecto)
+        int srid = coordinateService.layerStorageSrid(layer);
+        Geometry window = frame.window(srid);
+        if (window == null) return frame.encode();
+        MathTransform toMercator = coordinateService.findTransform(srid, WEB_MERCATOR);
+
+        Optional<LayerIndexCache.LayerIndex> cached = layerIndexCache.get(layer);
+        if (cached.isPresent()) {
+            for (LayerIndexCache.CachedFeature f : cached.get().inEnvelope(window.getEnvelopeInternal())) {
+                frame.add(f.geom(), toMercator(f.geom().getSRID(), srid, toMercator),
+                        featureAttributes(f.id().toString(), f.externalId(), f.properties()));
+            }
+        } else {
+            WKBReader wkb = new WKBReader(geometryFactory);
+            // Reduce en el servidor con medio píxel (UTM y Mercator difieren poco a estas latitudes)
+            windowRepository.streamIntersecting(layerCode, window, frame.pixel / 2, rs -> {
+                try {
+                    frame.add(wkb.read(rs.getBytes("wkb")), toMercator(rs.getInt("srid"), srid, toMercator),
+                            featureAttributes(rs.getString("id"), rs.getString("external_id"), rs.getString("properties")));
+                } catch (ParseException e) {
+                    log.debug("Geometría ilegible en {} (feature {}), se omite del tile", layerCode, rs.getString("id"));
+                }
+            });
+        }
+        return frame.encode();
+    }
+
+    private byte[] renderDistricts(int z, int x, int y) {
+        TileFrame frame = new TileFrame(DISTRICTS_SOURCE, z, x, y);
+        int srid = districtIndex.getSrid();
+        if (srid == 0) return frame.encode();
+
+        Geometry window = frame.window(srid);
+        if (window == null) return frame.encode();
+        MathTransform toMercator = coordinateService.findTransform(srid, WEB_MERCATOR);
+        for (DistrictIndex.District d : districtIndex.inEnvelope(window.getEnvelopeInternal())) {
+            Map<String, Object> attributes = new LinkedHashMap<>();
+            attributes.put("id", d.id().toString());
+            attributes.put("code", d.code());
+            attributes.put("name", d.name());
+            frame.add(d.geom().getGeometry(), toMercator, attributes);
+        }
+        return frame.encode();
+    }
+
+    private byte[] renderGrid(String scale, int z, int x, int y) {
+        TileFrame frame = new TileFrame("grid", z, x, y);
+        Geometry window = frame.window(GRID_SRID);
+        if (window == null) return frame.encode();
+        MathTransform toMercator = coordinateService.findTransform(GRID_SRID, WEB_MERCATOR);
+        WKBReader wkb = new WKBReader(geometryFactory);
+
+        windowRepository.streamGridCells(scale, window, rs -> {
+            Map<String, Object> attributes = new LinkedHashMap<>();
+            attributes.put("id", rs.getString("id"));
+            attributes.put("gridCode", rs.getString("grid_code"));
+            attributes.put("lightPointsCount", rs.getInt("light_points_count"));
+            try {
+                frame.add(wkb.read(rs.getBytes("wkb")), toMercator, attributes);
+            } catch (ParseException e) {
+                log.debug("Celda ilegible en la grilla {} ({}), se omite del tile", scale, rs.getString("grid_code"));
+            }
+        });
+        return frame.encode();
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Invalidación y precarga
+    // ---------------------------------------------------------------------------------------
+
+    /** Descarta todos los tiles de la capa (REPLACE, o import retomado sin el área tocada). */
+    public void invalidateLayer(String layerCode) {
+        tileCache.evictAll(LAYER_SOURCE + layerCode);
+    }
+
+    /**
+     * Descarta los tiles de la capa que tocan el área modificada (en {@code srid}) y regenera
+     * en segundo plano los de zoom bajo.
+     */
+    public void invalidateLayerArea(String layerCode, Envelope area, int srid) {
+        MapLayer layer = layerRepository.findByCode(layerCode).orElse(null);
+        if (layer == null) return;
+        invalidateArea(LAYER_SOURCE + layerCode, version(layer), area, srid);
+    }
+
+    public void invalidateDistricts() {
+        tileCache.evictAll(DISTRICTS_SOURCE);
+    }
+
+    /** Ídem {@link #invalidateLayerArea} para los distritos (después de recargar su índice). */
+    public void invalidateDistrictArea(Envelope area, int srid) {
+        invalidateArea(DISTRICTS_SOURCE, 0, area, srid);
+    }
+
+    /** Descarta todos los tiles de la grilla de la escala (se regenera entera). */
+    public void invalidateGrid(String scale) {
+        tileCache.evictAll(GRID_SOURCE + scale);
+    }
+
+    private void invalidateArea(String source, int version, Envelope area, int srid) {
+        if (area == null || area.isNull()) return;
+        Envelope mercator = transform(area, coordinateService.findTransform(srid, WEB_MERCATOR));
+
+        Set<TileKey> evicted = tileCache.evict(source, version, (z, x, y) -> {
+            double size = tileSize(z);
+            double margin = size * BUFFER / EXTENT;
+            double minX = -MERCATOR_ORIGIN + x * size;
+            double maxY = MERCATOR_ORIGIN - y * size;
+            return mercator.intersects(new Envelope(minX - margin, minX + size + margin, maxY - size - margin, maxY + margin));
+        });
+
+        List<TileKey> reseed = evicted.stream().filter(k -> k.z() <= reseedMaxZoom).toList();
+        log.info("🧩 Tiles de {} descartados por cambios: {} ({} se regeneran)", source, evicted.size(), reseed.size());
+        if (!reseed.isEmpty()) {
+            seeder.submit(() -> reseed.forEach(k -> refresh(k.source(), k.z(), k.x(), k.y())));
+        }
+    }
+
+    /** Precarga de una capa en un rango de zooms sobre un rectángulo WGS84; devuelve cuántos tiles encola. */
+    public long seedLayer(String layerCode, int minZoom, int maxZoom, Envelope bbox) {
+        findLayer(layerCode);
+        return seed(LAYER_SOURCE + layerCode, minZoom, maxZoom, bbox);
+    }
+
+    public long seedDistricts(int minZoom, int maxZoom, Envelope bbox) {
+        return seed(DISTRICTS_SOURCE, minZoom, maxZoom, bbox);
+    }
+
+    public long seedGrid(String scale, int minZoom, int maxZoom, Envelope bbox) {
+        return seed(GRID_SOURCE + scale, minZoom, maxZoom, bbox);
+    }
+
+    private long seed(String source, int minZoom, int maxZoom, Envelope bbox) {
+        if (minZoom < 0 || maxZoom > MAX_ZOOM || minZoom > maxZoom) {
+            throw new BusinessException("Rango de zoom inválido (0-" + MAX_ZOOM + "): " + minZoom + "-" + maxZoom);
+        }
+        if (bbox.getMinX() < -180 || bbox.getMaxX() > 180 || bbox.getMinY() < -90 || bbox.getMaxY() > 90) {
+            throw new BusinessException("El rectángulo debe estar en WGS84 (longitud, latitud)");
+        }
+
+        long total = 0;
+        List<int[]> ranges = new ArrayList<>();
+        for (int z = minZoom; z <= maxZoom; z++) {
+            int[] range = tileRange(z, bbox);
+            ranges.add(range);
+            total += (long) (range[2] - range[0] + 1) * (range[3] - range[1] + 1);
+        }
+        if (total > maxSeedTiles) {
+            throw new BusinessException("La precarga pedida son " + total + " tiles (máximo " + maxSeedTiles
+                    + "): reduzca el rango de zoom o el rectángulo");
+        }
+
+        long tiles = total;
+        seeder.submit(() -> {
+            long start = System.currentTimeMillis();
+            for (int[] r : ranges) {
+                for (int x = r[0]; x <= r[2]; x++) {
+                    for (int y = r[1]; y <= r[3]; y++) refresh(source, r[4], x, y);
+                }
+            }
+            log.info("🧩 Precarga de {} terminada: {} tiles (zoom {}-{}) en {} ms",
+                    source, tiles, minZoom, maxZoom, System.currentTimeMillis() - start);
+        });
+        log.info("🧩 Precarga de {} encolada: {} tiles (zoom {}-{})", source, total, minZoom, maxZoom);
+        return total;
+    }
+
+    /** Genera (y deja en caché) un tile de la fuente; los errores solo se registran. */
+    private void refresh(String source, int z, int x, int y) {
+        try {
+            if (source.startsWith(LAYER_SOURCE)) getTile(source.substring(LAYER_SOURCE.length()), z, x, y);
+            else if (source.startsWith(GRID_SOURCE)) getGridTile(source.substring(GRID_SOURCE.length()), z, x, y);
+            else getDistrictTile(z, x, y);
+        } catch (Exception e) {
+            log.warn("⚠️ No se pudo generar el tile {}/{}/{}/{}: {}", source, z, x, y, e.getMessage());
+        }
+    }
+
+    /** {minX, minY, maxX, maxY, z} de los tiles del zoom que cubren el rectángulo WGS84. */
+    private static int[] tileRange(int z, Envelope bbox) {
+        return new int[]{
+                tileX(bbox.getMinX(), z), tileY(bbox.getMaxY(), z),
+                tileX(bbox.getMaxX(), z), tileY(bbox.getMinY(), z), z};
+    }
+
+    private static int tileX(double lon, int z) {
+        int n = 1 << z;
+        return Math.min(n - 1, Math.max(0, (int) Math.floor((lon + 180) / 360 * n)));
+    }
+
+    private static int tileY(double lat, int z) {
+        int n = 1 << z;
+        double rad = Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, lat)));
+        double y = (1 - Math.log(Math.tan(rad) + 1 / Math.cos(rad)) / Math.PI) / 2 * n;
+        return Math.min(n - 1, Math.max(0, (int) Math.floor(y)));
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Auxiliares
+    // ---------------------------------------------------------------------------------------
+
+    private void checkTile(int z, int x, int y) {
+        if (z < 0 || z > MAX_ZOOM) throw new BusinessException("Zoom fuera de rango (0-" + MAX_ZOOM + "): " + z);
+        long tiles = 1L << z;
+        if (x < 0 || y < 0 || x >= tiles || y >= tiles) {
+            throw new BusinessException("Tile inexistente para el zoom " + z + ": " + x + "/" + y);
+        }
+    }
+
+    private MapLayer findLayer(String layerCode) {
+        return layerRepository.findByCode(layerCode)
+                .orElseThrow(() -> new ResourceNotFoundException("Capa no encontrada: " + layerCode));
+    }
+
+    private static int version(MapLayer layer) {
+        return layer.getActiveVersion() != null ? layer.getActiveVersion() : 0;
+    }
+
+    private static double tileSize(int z) {
+        return 2 * MERCATOR_ORIGIN / (1L << z);
+    }
+
+    /** La transformación de la capa, o la del SRID propio de la geometría si se guardó en otro. */
+    private MathTransform toMercator(int geomSrid, int layerSrid, MathTransform layerTransform) {
+        return geomSrid == 0 || geomSrid == layerSrid
+                ? layerTransform
+                : coordinateService.findTransform(geomSrid, WEB_MERCATOR);
+    }
+
+    /**
+     * Ventana de búsqueda en {@code srid} para un rectángulo Web Mercator: se recorta al área de
+     * uso del CRS (fuera de ella una proyección UTM diverge o no está definida) y se reproyecta
+     * densificando los bordes, así la ventana cubre todo el rectángulo aun a zoom bajo, donde un
+     * borde recto en Mercator es una curva en UTM. Null si el rectángulo cae fuera del área.
+     */
+    Envelope searchEnvelope(Envelope mercator, int srid) {
+        Envelope area = mercator.intersection(mercatorDomain(srid));
+        if (area.isNull() || area.getWidth() == 0 || area.getHeight() == 0) return null;
+        return transform(area, coordinateService.findTransform(WEB_MERCATOR, srid));
+    }
+
+    /** Área de uso declarada por el CRS (más un margen) en Web Mercator; todo el mundo si no la declara. */
+    private Envelope mercatorDomain(int srid) {
+        return mercatorDomains.computeIfAbsent(srid, code -> {
+            GeographicBoundingBox box = CRS.getGeographicBoundingBox(coordinateService.findCrs(code));
+            if (box == null) {
+                return new Envelope(-MERCATOR_ORIGIN, MERCATOR_ORIGIN, -MERCATOR_ORIGIN, MERCATOR_ORIGIN);
+            }
+            return new Envelope(
+                    mercatorX(box.getWestBoundLongitude() - DOMAIN_MARGIN_DEGREES),
+                    mercatorX(box.getEastBoundLongitude() + DOMAIN_MARGIN_DEGREES),
+                    mercatorY(box.getSouthBoundLatitude() - DOMAIN_MARGIN_DEGREES),
+                    mercatorY(box.getNorthBoundLatitude() + DOMAIN_MARGIN_DEGREES));
+        });
+    }
+
+    private static double mercatorX(double lon) {
+        return Math.max(-180, Math.min(180, lon)) / 180 * MERCATOR_ORIGIN;
+    }
+
+    private static double mercatorY(double lat) {
+        double rad = Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, lat)));
+        return Math.log(Math.tan(Math.PI / 4 + rad / 2)) / Math.PI * MERCATOR_ORIGIN;
+    }
+
+    /**
+     * Un tile en construcción: su rectángulo en Web Mercator (con margen), la transformación a
+     * coordenadas de tile (0..EXTENT, y hacia abajo) y el encoder.
+     */
+    private final class TileFrame {
+
+        private final double pixel;
+        private final Envelope clipEnvelope;
+        private final Geometry clip;
+        private final AffineTransformation toTile;
+        private final MvtEncoder encoder;
+        private final String name;
+        private final int z, x, y;
+
+        TileFrame(String name, int z, int x, int y) {
+            this.name = name;
+            this.z = z;
+            this.x = x;
+            this.y = y;
+            double size = tileSize(z);
+            double minX = -MERCATOR_ORIGIN + x * size;
+            double maxY = MERCATOR_ORIGIN - y * size;
+            double margin = size * BUFFER / EXTENT;
+            this.pixel = size / EXTENT;
+            this.clipEnvelope = new Envelope(minX - margin, minX + size + margin, maxY - size - margin, maxY + margin);
+            this.clip = geometryFactory.toGeometry(clipEnvelope);
+            this.toTile = new AffineTransformation(
+                    EXTENT / size, 0, -minX * EXTENT / size,
+                    0, -EXTENT / size, maxY * EXTENT / size);
+            this.encoder = new MvtEncoder(name, EXTENT);
+        }
+
+        /**
+         * El tile (con margen) en el SRID de los datos, para buscar los candidatos; null si el
+         * tile queda fuera del área de uso del SRID (no puede haber datos).
+         */
+        Geometry window(int srid) {
+            Envelope envelope = searchEnvelope(clipEnvelope, srid);
+            if (envelope == null) return null;
+            Geometry window = geometryFactory.toGeometry(envelope);
+            window.setSRID(srid);
+            return window;
+        }
+
+        void add(Geometry geom, MathTransform toMercator, Map<String, Object> attributes) {
+            Geometry tileGeom = toTileGeometry(geom, toMercator);
+            if (tileGeom != null) encoder.addFeature(tileGeom, attributes);
+        }
+
+        byte[] encode() {
+            byte[] tile = encoder.encode();
+            log.debug("Tile {}/{}/{}/{}: {} features, {} bytes", name, z, x, y, encoder.getFeatureCount(), tile.length);
+            return tile;
+        }
+
+        /** Reproyecta, recorta, simplifica y lleva a coordenadas de tile; null si no queda nada. */
+        private Geometry toTileGeometry(Geometry geom, MathTransform toMercator) {
+            if (geom == null || geom.isEmpty()) return null;
+            Geometry g = transform(geom, toMercator);
+
+            if (!clipEnvelope.covers(g.getEnvelopeInternal())) {
+                try {
+                    g = g.intersection(clip);
+                } catch (TopologyException e) {
+                    // Polígono inválido: se intenta repararlo antes de recortar, si no se omite del tile
+                    try {
+                        g = g.buffer(0).intersection(clip);
+                    } catch (TopologyException again) {
+                        return null;
+                    }
+                }
+                if (g.isEmpty()) return null;
+            }
+
+            if (g.getDimension() > 0) {
+                g = DouglasPeuckerSimplifier.simplify(g, pixel);
+                if (g.isEmpty()) return null;
+            }
+            return toTile.transform(g);
+        }
+    }
+
+    private Geometry transform(Geometry geom, MathTransform transform) {
+        try {
+            return JTS.transform(geom, transform);
+        } catch (TransformException e) {
+            throw new RuntimeException("No se pudo reproyectar la geometría del tile: " + e.getMessage(), e);
+        }
+    }
+
+    /** Reproyecta un rectángulo densificando sus bordes; devuelve el rectángulo que lo contiene. */
+    private static Envelope transform(Envelope envelope, MathTransform transform) {
+        try {
+            return JTS.transform(envelope, null, transform, WINDOW_DENSIFY_POINTS);
+        } catch (TransformException e) {
+            throw new RuntimeException("No se pudo reproyectar el rectángulo del tile: " + e.getMessage(), e);
+        }
+    }
+
+    /** id, externalId y las propiedades escalares de primer nivel del JSON del feature. */
+    private Map<String, Object> featureAttributes(String id, String externalId, String properties) {
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("id", id);
+        attributes.put("externalId", externalId);
+        if (properties == null || properties.isBlank()) return attributes;
+
+        try {
+            JsonNode json = objectMapper.readTree(properties);
+            json.fields().forEachRemaining(field -> {
+                JsonNode value = field.getValue();
+                if (attributes.containsKey(field.getKey())) return;
+                if (value.isTextual()) attributes.put(field.getKey(), value.asText());
+                else if (value.isIntegralNumber()) attributes.put(field.getKey(), value.asLong());
+                else if (value.isNumber()) attributes.put(field.getKey(), value.asDouble());
+                else if (value.isBoolean()) attributes.put(field.getKey(), value.asBoolean());
+            });
+        } catch (Exception e) {
+            log.debug("Propiedades ilegibles en el feature {}: {}", id, e.getMessage());
+        }
+        return attributes;
+    }
+}
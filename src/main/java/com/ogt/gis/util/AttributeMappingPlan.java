@@ -0,0 +1,78 @@
+package com.ogt.gis.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code MapLayer.attributeMapping} compilado contra el esquema del shapefile.
+ *
+ * El JSON ({"ATRIBUTO_SHP": "campoDto", ...}) se parsea una sola vez por import y cada atributo
+ * se resuelve a su índice en el {@link SimpleFeatureType}: por feature solo quedan lecturas por
+ * índice. Es inmutable, se puede usar desde varios hilos.
+ */
+@Slf4j
+public final class AttributeMappingPlan {
+
+    private static final TypeReference<Map<String, Object>> MAPPING_TYPE = new TypeReference<>() {};
+
+    /** Sin mapeo configurado el DTO lleva solo el ID del feature como "code". */
+    private final boolean identityOnly;
+    private final int[] indexes;
+    private final String[] targets;
+
+    private AttributeMappingPlan(boolean identityOnly, int[] indexes, String[] targets) {
+        this.identityOnly = identityOnly;
+        this.indexes = indexes;
+        this.targets = targets;
+    }
+
+    public static AttributeMappingPlan compile(String mappingJson, SimpleFeatureType type, ObjectMapper objectMapper) {
+        if (mappingJson == null || mappingJson.isBlank()) {
+            return new AttributeMappingPlan(true, new int[0], new String[0]);
+        }
+
+        Map<String, Object> mapping;
+        try {
+            mapping = objectMapper.readValue(mappingJson, MAPPING_TYPE);
+        } catch (Exception e) {
+            log.warn("⚠️ attributeMapping inválido, se ignora: {}", e.getMessage());
+            return new AttributeMappingPlan(false, new int[0], new String[0]);
+        }
+
+        List<Integer> indexes = new ArrayList<>();
+        List<String> targets = new ArrayList<>();
+        for (var entry : mapping.entrySet()) {
+            int index = type.indexOf(entry.getKey());
+            if (index < 0 || entry.getValue() == null) {
+                log.debug("Atributo '{}' no existe en {}, se omite del mapeo", entry.getKey(), type.getTypeName());
+                continue;
+            }
+            indexes.add(index);
+            targets.add(entry.getValue().toString());
+        }
+        return new AttributeMappingPlan(false,
+                indexes.stream().mapToInt(Integer::intValue).toArray(),
+                targets.toArray(new String[0]));
+    }
+
+    public Map<String, Object> apply(SimpleFeature f) {
+        Map<String, Object> dto = new HashMap<>();
+        if (identityOnly) {
+            dto.put("code", f.getID());
+            return dto;
+        }
+        for (int i = 0; i < indexes.length; i++) {
+            Object value = f.getAttribute(indexes[i]);
+            if (value != null) dto.put(targets[i], value);
+        }
+        return dto;
+    }
+}
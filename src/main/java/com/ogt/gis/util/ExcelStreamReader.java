@@ -0,0 +1,188 @@
+package com.ogt.gis.util;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Lectura de la primera hoja de una planilla Excel, fila por fila.
+ *
+ * Los .xlsx se recorren con el modelo de eventos (SAX) de POI: nunca se arma el DOM del libro,
+ * así que el consumo de memoria es plano sin importar la cantidad de filas.
+ * Los .xls (binario, máx. 65.536 filas) se leen con el modelo clásico.
+ */
+public final class ExcelStreamReader {
+
+    /**
+     * Receptor de filas. Cada fila llega como arreglo de valores indexado por columna
+     * (celdas vacías = null). Las filas sin celdas no se entregan.
+     */
+    public interface RowHandler {
+
+        /** Índice (base 0) de la última fila declarada por la hoja. Se invoca antes de la primera fila, si se conoce. */
+        default void onSheetDimension(int lastRowIndex) {}
+
+        void onRow(int rowIndex, String[] cells);
+    }
+
+    private ExcelStreamReader() {}
+
+    public static void read(File file, RowHandler handler) throws Exception {
+        if (file.getName().toLowerCase().endsWith(".xls")) {
+            readLegacy(file, handler);
+        } else {
+            readXlsx(file, handler);
+        }
+    }
+
+    /** Valor de una celda como texto (mismo criterio que el modelo de eventos). */
+    public static String getCellValueAsString(Cell cell) {
+        if (cell == null) return null;
+        switch (cell.getCellType()) {
+            case STRING: return cell.getStringCellValue();
+            case NUMERIC:
+                if (DateUtil.isCellDateFormatted(cell)) return cell.getDateCellValue().toString();
+                return formatNumber(cell.getNumericCellValue());
+            case BOOLEAN: return String.valueOf(cell.getBooleanCellValue());
+            case FORMULA:
+                try { return String.valueOf(cell.getNumericCellValue()); }
+                catch (Exception e) { return cell.getStringCellValue(); }
+            default: return null;
+        }
+    }
+
+    private static String formatNumber(double num) {
+        return (num == (long) num) ? String.valueOf((long) num) : String.valueOf(num);
+    }
+
+    // =================================================================================
+    // XLSX (SAX)
+    // =================================================================================
+
+    private static void readXlsx(File file, RowHandler handler) throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) return;
+
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new DimensionAwareSheetHandler(
+                        styles, strings, new RowCollector(handler), handler));
+                parser.parse(new InputSource(sheet));
+            }
+        }
+    }
+
+    /**
+     * Intercepta {@code <dimension ref="A1:Z15000"/>} para conocer el total de filas
+     * antes de recorrer {@code sheetData}.
+     */
+    private static final class DimensionAwareSheetHandler extends XSSFSheetXMLHandler {
+
+        private final RowHandler handler;
+
+        DimensionAwareSheetHandler(StylesTable styles, ReadOnlySharedStringsTable strings,
+                                   SheetContentsHandler contents, RowHandler handler) {
+            super(styles, strings, contents, new RawNumberFormatter(), false);
+            this.handler = handler;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            if ("dimension".equals(localName)) {
+                String ref = attributes.getValue("ref");
+                if (ref != null && !ref.isBlank()) {
+                    String last = ref.substring(ref.indexOf(':') + 1);
+                    handler.onSheetDimension(new CellReference(last).getRow());
+                }
+            }
+            super.startElement(uri, localName, qName, attributes);
+        }
+    }
+
+    /** Arma el arreglo de celdas de cada fila a partir de los eventos de POI. */
+    private static final class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final RowHandler handler;
+        private final List<String> cells = new ArrayList<>();
+
+        RowCollector(RowHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cells.clear();
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (!cells.isEmpty()) handler.onRow(rowNum, cells.toArray(new String[0]));
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            if (formattedValue == null) return;
+            int col = new CellReference(cellReference).getCol();
+            while (cells.size() <= col) cells.add(null);
+            cells.set(col, formattedValue);
+        }
+    }
+
+    /**
+     * Devuelve los números sin aplicar el formato de la celda: una coordenada con formato "0.00"
+     * debe llegar con todos sus decimales. Las fechas sí se formatean.
+     */
+    private static final class RawNumberFormatter extends DataFormatter {
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString, boolean use1904Windowing) {
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                return DateUtil.getJavaDate(value, use1904Windowing).toString();
+            }
+            return formatNumber(value);
+        }
+    }
+
+    // =================================================================================
+    // XLS (modelo clásico)
+    // =================================================================================
+
+    private static void readLegacy(File file, RowHandler handler) throws Exception {
+        try (Workbook workbook = WorkbookFactory.create(file, null, true)) {
+            Sheet sheet = workbook.getSheetAt(0);
+            handler.onSheetDimension(sheet.getLastRowNum());
+
+            for (int i = 0; i <= sheet.getLastRowNum(); i++) {
+                Row row = sheet.getRow(i);
+                if (row == null || row.getPhysicalNumberOfCells() == 0) continue;
+
+                String[] cells = new String[Math.max(row.getLastCellNum(), 0)];
+                for (Cell cell : row) {
+                    cells[cell.getColumnIndex()] = getCellValueAsString(cell);
+                }
+                handler.onRow(i, cells);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.ogt.gis.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+/**
+ * FeatureCollection GeoJSON escrita fila por fila desde un cursor de la BD: la memoria no
+ * depende de cuántos features tenga la colección.
+ *
+ * Cada fila trae la geometría en la columna {@code wkb}; el llamador solo escribe las
+ * propiedades. Si la consulta falla a mitad de camino la colección NO se cierra: el cliente
+ * recibe un JSON incompleto (error de parseo) en lugar de una colección bien formada pero
+ * truncada, que no podría distinguir de una completa.
+ */
+@Slf4j
+public final class FeatureCollectionStream {
+
+    /** Escribe los campos de "properties" de la fila actual. */
+    @FunctionalInterface
+    public interface PropertiesWriter {
+        void write(ResultSet rs, JsonGenerator json) throws SQLException, IOException;
+    }
+
+    private final JsonGenerator json;
+    private final GeoJsonGeometryWriter geometryWriter;
+    private final PropertiesWriter properties;
+    private final WKBReader wkb = new WKBReader();
+    private long count;
+
+    private FeatureCollectionStream(JsonGenerator json, GeoJsonGeometryWriter geometryWriter,
+                                    PropertiesWriter properties) {
+        this.json = json;
+        this.geometryWriter = geometryWriter;
+        this.properties = properties;
+    }
+
+    /**
+     * @param name  para el log
+     * @param query recorre las filas pasándolas al handler (ej. {@code windowRepository::streamDistricts})
+     */
+    public static StreamingResponseBody of(String name, ObjectMapper objectMapper, GeoJsonGeometryWriter geometryWriter,
+                                           Consumer<RowCallbackHandler> query, PropertiesWriter properties) {
+        return out -> {
+            long start = System.currentTimeMillis();
+            JsonGenerator json = objectMapper.getFactory().createGenerator(out);
+            FeatureCollectionStream features = new FeatureCollectionStream(json, geometryWriter, properties);
+            boolean complete = false;
+            try {
+                json.writeStartObject();
+                json.writeStringField("type", "FeatureCollection");
+                json.writeArrayFieldStart("features");
+                query.accept(features::writeRow);
+                json.writeEndArray();
+                json.writeEndObject();
+                complete = true;
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                // Por defecto close() cierra los arreglos y objetos abiertos: tras un error no debe
+                if (!complete) json.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+                json.close();
+                if (!complete) log.warn("⚠️ GeoJSON de {} interrumpido tras {} features", name, features.count);
+            }
+            log.debug("GeoJSON de {}: {} features en {} ms", name, features.count, System.currentTimeMillis() - start);
+        };
+    }
+
+    private void writeRow(ResultSet rs) throws SQLException {
+        try {
+            json.writeStartObject();
+            json.writeStringField("type", "Feature");
+            json.writeFieldName("geometry");
+            geometryWriter.write(readGeometry(rs), json);
+            json.writeObjectFieldStart("properties");
+            properties.write(rs, json);
+            json.writeEndObject();
+            json.writeEndObject();
+            count++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Geometría de la columna wkb; null si está vacía o ilegible. */
+    private Geometry readGeometry(ResultSet rs) throws SQLException {
+        byte[] bytes = rs.getBytes("wkb");
+        if (bytes == null) return null;
+        try {
+            return wkb.read(bytes);
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+}
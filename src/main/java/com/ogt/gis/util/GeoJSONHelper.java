@@ -7,11 +7,11 @@ import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 
 import java.io.StringReader;
-import java.io.StringWriter;
 import java.util.Map;
 
 /**
- * Helpers to convert JTS Geometry <-> GeoJSON (as Map)
+ * Helpers to read GeoJSON (Map or String) into JTS Geometry.
+ * Writing geometries as GeoJSON goes through {@link JtsGeoJsonModule} instead.
  */
 public final class GeoJSONHelper {
 
@@ -23,15 +23,6 @@ public final class GeoJSONHelper {
 
     private GeoJSONHelper() {}
 
-    /** Convert JTS Geometry -> GeoJSON Map */
-    public static Map<String, Object> geometryToGeoJson(Geometry geom) throws Exception {
-        if (geom == null) return null;
-        StringWriter writer = new StringWriter();
-        GEOJSON.write(geom, writer);
-        String json = writer.toString();
-        return MAPPER.readValue(json, new TypeReference<Map<String, Object>>() {});
-    }
-
     /** Convert GeoJSON object (Map or JSON string) -> JTS Geometry */
     @SuppressWarnings("unchecked")
     public static Geometry geoJsonToGeometry(Object geoJsonObj) throws Exception {
@@ -0,0 +1,100 @@
+package com.ogt.gis.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.locationtech.jts.geom.*;
+
+import java.io.IOException;
+
+/**
+ * Escribe una geometría JTS como objeto GeoJSON directo sobre un {@link JsonGenerator}.
+ *
+ * Recorre las {@link CoordinateSequence} y escribe cada ordenada como número, redondeada a
+ * {@code decimals} decimales: sin texto intermedio, sin Map ni Doubles en caja. Misma forma que
+ * {@code GeometryJSON} de GeoTools (la Z solo si la coordenada la tiene).
+ */
+public final class GeoJsonGeometryWriter {
+
+    private final int decimals;
+    private final double scale;
+
+    public GeoJsonGeometryWriter(int decimals) {
+        if (decimals < 0 || decimals > 15) {
+            throw new IllegalArgumentException("La precisión GeoJSON debe estar entre 0 y 15 decimales: " + decimals);
+        }
+        this.decimals = decimals;
+        this.scale = Math.pow(10, decimals);
+    }
+
+    public int getDecimals() {
+        return decimals;
+    }
+
+    public void write(Geometry geom, JsonGenerator gen) throws IOException {
+        if (geom == null) {
+            gen.writeNull();
+            return;
+        }
+        gen.writeStartObject();
+        // GeoJSON no tiene LinearRing
+        gen.writeStringField("type", geom instanceof LinearRing ? "LineString" : geom.getGeometryType());
+
+        if (geom instanceof GeometryCollection && !(geom instanceof MultiPoint)
+                && !(geom instanceof MultiLineString) && !(geom instanceof MultiPolygon)) {
+            gen.writeArrayFieldStart("geometries");
+            for (int i = 0; i < geom.getNumGeometries(); i++) write(geom.getGeometryN(i), gen);
+            gen.writeEndArray();
+        } else {
+            gen.writeFieldName("coordinates");
+            writeCoordinates(geom, gen);
+        }
+        gen.writeEndObject();
+    }
+
+    private void writeCoordinates(Geometry geom, JsonGenerator gen) throws IOException {
+        if (geom instanceof Point point) {
+            if (point.isEmpty()) {
+                gen.writeStartArray();
+                gen.writeEndArray();
+            } else {
+                writePosition(point.getCoordinateSequence(), 0, gen);
+            }
+        } else if (geom instanceof LineString line) {
+            writeSequence(line.getCoordinateSequence(), gen);
+        } else if (geom instanceof Polygon polygon) {
+            gen.writeStartArray();
+            if (!polygon.isEmpty()) {
+                writeSequence(polygon.getExteriorRing().getCoordinateSequence(), gen);
+                for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+                    writeSequence(polygon.getInteriorRingN(i).getCoordinateSequence(), gen);
+                }
+            }
+            gen.writeEndArray();
+        } else {
+            // MultiPoint, MultiLineString, MultiPolygon
+            gen.writeStartArray();
+            for (int i = 0; i < geom.getNumGeometries(); i++) writeCoordinates(geom.getGeometryN(i), gen);
+            gen.writeEndArray();
+        }
+    }
+
+    private void writeSequence(CoordinateSequence seq, JsonGenerator gen) throws IOException {
+        gen.writeStartArray();
+        for (int i = 0; i < seq.size(); i++) writePosition(seq, i, gen);
+        gen.writeEndArray();
+    }
+
+    private void writePosition(CoordinateSequence seq, int i, JsonGenerator gen) throws IOException {
+        gen.writeStartArray();
+        gen.writeNumber(round(seq.getX(i)));
+        gen.writeNumber(round(seq.getY(i)));
+        if (seq.hasZ()) {
+            double z = seq.getZ(i);
+            if (!Double.isNaN(z)) gen.writeNumber(round(z));
+        }
+        gen.writeEndArray();
+    }
+
+    private double round(double value) {
+        return Math.round(value * scale) / scale;
+    }
+}
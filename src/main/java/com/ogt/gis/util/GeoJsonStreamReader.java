@@ -0,0 +1,215 @@
+package com.ogt.gis.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.locationtech.jts.geom.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Lector GeoJSON en streaming (Jackson token a token).
+ *
+ * Recorre el FeatureCollection entregando cada Feature al consumidor apenas se termina de leer:
+ * las geometrías JTS se arman directo desde los arreglos de coordenadas, sin pasar por
+ * texto intermedio ni por GeoJSONHelper. La memoria queda acotada a un Feature por vez.
+ */
+public final class GeoJsonStreamReader {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final JsonFactory FACTORY = MAPPER.getFactory();
+    private static final TypeReference<Map<String, Object>> PROPERTIES_TYPE = new TypeReference<>() {};
+
+    /** RFC 7946: sin "crs" las coordenadas son WGS84 lon/lat. */
+    public static final int DEFAULT_SRID = 4326;
+
+    public static class Feature {
+        private final String id;
+        private final Geometry geometry;
+        private final Map<String, Object> properties;
+
+        Feature(String id, Geometry geometry, Map<String, Object> properties) {
+            this.id = id;
+            this.geometry = geometry;
+            this.properties = properties;
+        }
+
+        public String getId() { return id; }
+        public Geometry getGeometry() { return geometry; }
+        public Map<String, Object> getProperties() { return properties; }
+    }
+
+    private GeoJsonStreamReader() {}
+
+    /**
+     * Lee un FeatureCollection. El SRID sale del miembro "crs" (GeoJSON 2008) si aparece
+     * antes de "features"; si no, se asume {@link #DEFAULT_SRID}.
+     *
+     * @return SRID de las geometrías entregadas
+     */
+    public static int read(InputStream in, Consumer<Feature> consumer) throws IOException {
+        try (JsonParser p = FACTORY.createParser(in)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("GeoJSON inválido: se esperaba un objeto FeatureCollection");
+            }
+
+            int srid = DEFAULT_SRID;
+            GeometryFactory factory = factoryFor(srid);
+
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+
+                if ("crs".equals(field) && value == JsonToken.START_OBJECT) {
+                    srid = parseCrs(MAPPER.readTree(p));
+                    factory = factoryFor(srid);
+                } else if ("features".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (p.nextToken() == JsonToken.START_OBJECT) {
+                        Feature feature = readFeature(p, factory);
+                        if (feature.geometry != null && !feature.geometry.isEmpty()) consumer.accept(feature);
+                    }
+                } else {
+                    p.skipChildren();
+                }
+            }
+            return srid;
+        }
+    }
+
+    // =================================================================================
+    // Feature / Geometry (el parser queda sobre el END_OBJECT correspondiente)
+    // =================================================================================
+
+    private static Feature readFeature(JsonParser p, GeometryFactory factory) throws IOException {
+        String id = null;
+        Geometry geometry = null;
+        Map<String, Object> properties = null;
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+
+            switch (field) {
+                case "id" -> id = value == JsonToken.VALUE_NULL ? null : p.getValueAsString();
+                case "geometry" -> geometry = value == JsonToken.START_OBJECT ? readGeometry(p, factory) : null;
+                case "properties" -> properties = value == JsonToken.START_OBJECT ? MAPPER.readValue(p, PROPERTIES_TYPE) : null;
+                default -> p.skipChildren();
+            }
+        }
+        return new Feature(id, geometry, properties);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Geometry readGeometry(JsonParser p, GeometryFactory factory) throws IOException {
+        String type = null;
+        Object coordinates = null;
+        List<Geometry> geometries = null;
+
+        // "type" puede venir después de "coordinates": se lee todo y se arma al final
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+
+            switch (field) {
+                case "type" -> type = p.getText();
+                case "coordinates" -> coordinates = value == JsonToken.START_ARRAY ? readCoordinates(p) : null;
+                case "geometries" -> {
+                    geometries = new ArrayList<>();
+                    if (value == JsonToken.START_ARRAY) {
+                        while (p.nextToken() == JsonToken.START_OBJECT) {
+                            Geometry g = readGeometry(p, factory);
+                            if (g != null) geometries.add(g);
+                        }
+                    }
+                }
+                default -> p.skipChildren();
+            }
+        }
+
+        if (type == null) return null;
+        if ("GeometryCollection".equals(type)) {
+            return factory.createGeometryCollection(geometries != null ? geometries.toArray(new Geometry[0]) : new Geometry[0]);
+        }
+        if (coordinates == null) return null;
+
+        try {
+            return switch (type) {
+                case "Point" -> coordinates instanceof Coordinate c ? factory.createPoint(c) : factory.createPoint();
+                case "MultiPoint" -> factory.createMultiPointFromCoords(toArray((List<Object>) coordinates));
+                case "LineString" -> factory.createLineString(toArray((List<Object>) coordinates));
+                case "MultiLineString" -> factory.createMultiLineString(((List<Object>) coordinates).stream()
+                        .map(line -> factory.createLineString(toArray((List<Object>) line)))
+                        .toArray(LineString[]::new));
+                case "Polygon" -> toPolygon((List<Object>) coordinates, factory);
+                case "MultiPolygon" -> factory.createMultiPolygon(((List<Object>) coordinates).stream()
+                        .map(poly -> toPolygon((List<Object>) poly, factory))
+                        .toArray(Polygon[]::new));
+                default -> throw new IOException("Tipo de geometría GeoJSON no soportado: " + type);
+            };
+        } catch (IllegalArgumentException | ClassCastException | ArrayStoreException e) {
+            // Anillo sin cerrar, línea de un solo punto, anidamiento incorrecto...: se omite el Feature
+            return null;
+        }
+    }
+
+    /**
+     * Arreglo de coordenadas anidado: una posición se devuelve como {@link Coordinate}
+     * (se descartan Z/M), cualquier nivel superior como lista.
+     */
+    private static Object readCoordinates(JsonParser p) throws IOException {
+        JsonToken t = p.nextToken();
+        if (t == JsonToken.VALUE_NUMBER_INT || t == JsonToken.VALUE_NUMBER_FLOAT) {
+            double x = p.getDoubleValue();
+            p.nextToken();
+            double y = p.getDoubleValue();
+            while (p.nextToken() != JsonToken.END_ARRAY) { /* Z / M */ }
+            return new Coordinate(x, y);
+        }
+
+        List<Object> list = new ArrayList<>();
+        while (t == JsonToken.START_ARRAY) {
+            list.add(readCoordinates(p));
+            t = p.nextToken();
+        }
+        return list;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Polygon toPolygon(List<Object> rings, GeometryFactory factory) {
+        if (rings.isEmpty()) return factory.createPolygon();
+        LinearRing shell = factory.createLinearRing(toArray((List<Object>) rings.get(0)));
+        LinearRing[] holes = new LinearRing[rings.size() - 1];
+        for (int i = 1; i < rings.size(); i++) {
+            holes[i - 1] = factory.createLinearRing(toArray((List<Object>) rings.get(i)));
+        }
+        return factory.createPolygon(shell, holes);
+    }
+
+    private static Coordinate[] toArray(List<Object> positions) {
+        return positions.toArray(new Coordinate[0]);
+    }
+
+    /** {"type":"name","properties":{"name":"urn:ogc:def:crs:EPSG::31984"}} -> 31984 */
+    private static int parseCrs(JsonNode crs) {
+        String name = crs.path("properties").path("name").asText("");
+        if (name.isEmpty() || name.endsWith("CRS84")) return DEFAULT_SRID;
+        String code = name.substring(name.lastIndexOf(':') + 1);
+        try {
+            return Integer.parseInt(code);
+        } catch (NumberFormatException e) {
+            return DEFAULT_SRID;
+        }
+    }
+
+    private static GeometryFactory factoryFor(int srid) {
+        return new GeometryFactory(new PrecisionModel(), srid);
+    }
+}
@@ -0,0 +1,177 @@
+package com.ogt.gis.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Pipeline productor/consumidor para imports, en tres etapas:
+ * lectura (un hilo) -> preparación (pool de hilos) -> escritura (el hilo que llama a {@link #run}).
+ *
+ * El lector agrupa los registros en bloques y los entrega al pool. Los bloques preparados llegan
+ * al escritor en el mismo orden de lectura (cola acotada de futures), así el checkpoint del import
+ * sigue siendo un offset válido. La cola acotada frena al lector cuando el pool o el escritor no
+ * dan abasto: en memoria nunca hay más de (capacidad de la cola + 1) bloques.
+ *
+ * @param <I> registro leído
+ * @param <O> registro preparado (puede ser null: se entrega igual para no perder la posición)
+ */
+public final class ImportPipeline<I, O> {
+
+    private final int threads;
+    private final int blockSize;
+    private final int queueCapacity;
+
+    private final Stage read = new Stage();
+    private final Stage prepare = new Stage();
+    private final Stage write = new Stage();
+
+    public ImportPipeline(int threads, int blockSize, int queueCapacity) {
+        this.threads = Math.max(1, threads);
+        this.blockSize = Math.max(1, blockSize);
+        this.queueCapacity = Math.max(1, queueCapacity);
+    }
+
+    /**
+     * Recorre la fuente hasta el final. Vuelve cuando el escritor procesó el último registro,
+     * o con la primera excepción de cualquier etapa (en ese caso se cancela el resto).
+     * Al volver, el hilo lector ya terminó: la fuente se puede cerrar.
+     *
+     * @param skip registros iniciales a descartar sin preparar (ya confirmados en un intento anterior)
+     */
+    public void run(Iterator<I> source, long skip, Function<I, O> mapper, Consumer<O> writer) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, namedThreads("import-prepare"));
+        BlockingQueue<Future<List<O>>> queue = new ArrayBlockingQueue<>(queueCapacity);
+        Future<List<O>> end = CompletableFuture.completedFuture(null);
+        AtomicReference<Throwable> readError = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            try {
+                long skipped = 0;
+                List<I> block = new ArrayList<>(blockSize);
+                while (true) {
+                    long start = System.nanoTime();
+                    boolean hasNext = source.hasNext();
+                    I item = hasNext ? source.next() : null;
+                    read.add(System.nanoTime() - start, hasNext ? 1 : 0);
+                    if (!hasNext) break;
+
+                    if (skipped < skip) {
+                        skipped++;
+                        continue;
+                    }
+                    block.add(item);
+                    if (block.size() >= blockSize) {
+                        queue.put(submit(pool, block, mapper));
+                        block = new ArrayList<>(blockSize);
+                    }
+                }
+                if (!block.isEmpty()) queue.put(submit(pool, block, mapper));
+            } catch (InterruptedException e) {
+                return; // el escritor abortó: nadie espera el fin de la cola
+            } catch (Throwable t) {
+                readError.set(t);
+            }
+            try {
+                queue.put(end);
+            } catch (InterruptedException ignored) {
+                // el escritor abortó
+            }
+        }, "import-reader");
+
+        reader.start();
+        try {
+            while (true) {
+                Future<List<O>> next = queue.take();
+                if (next == end) break;
+
+                List<O> prepared = await(next);
+                long start = System.nanoTime();
+                for (O o : prepared) writer.accept(o);
+                write.add(System.nanoTime() - start, prepared.size());
+            }
+            rethrow(readError.get());
+        } finally {
+            if (reader.isAlive()) reader.interrupt();
+            reader.join();
+            queue.forEach(f -> f.cancel(true));
+            pool.shutdownNow();
+        }
+    }
+
+    private Future<List<O>> submit(ExecutorService pool, List<I> block, Function<I, O> mapper) {
+        return pool.submit(() -> {
+            long start = System.nanoTime();
+            List<O> out = new ArrayList<>(block.size());
+            for (I item : block) out.add(mapper.apply(item));
+            prepare.add(System.nanoTime() - start, block.size());
+            return out;
+        });
+    }
+
+    private List<O> await(Future<List<O>> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            rethrow(e.getCause());
+            throw e;
+        }
+    }
+
+    private static void rethrow(Throwable t) throws Exception {
+        if (t == null) return;
+        if (t instanceof Exception e) throw e;
+        if (t instanceof Error e) throw e;
+        throw new RuntimeException(t);
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Métricas por etapa: registros, tiempo ocupado y registros/seg. En la preparación el tiempo
+     * ocupado se suma entre hilos y se divide por su cantidad (equivalente en tiempo real).
+     */
+    public Map<String, Object> metrics() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("threads", threads);
+        m.put("read", read.toMap(1));
+        m.put("prepare", prepare.toMap(threads));
+        m.put("write", write.toMap(1));
+        return m;
+    }
+
+    private static final class Stage {
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder records = new LongAdder();
+
+        void add(long elapsedNanos, int count) {
+            nanos.add(elapsedNanos);
+            records.add(count);
+        }
+
+        Map<String, Object> toMap(int parallelism) {
+            long total = records.sum();
+            double busySeconds = nanos.sum() / 1e9 / parallelism;
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("records", total);
+            m.put("busyMs", Math.round(busySeconds * 1000));
+            m.put("recordsPerSecond", busySeconds > 0 ? Math.round(total / busySeconds) : 0);
+            return m;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.ogt.gis.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.locationtech.jts.geom.Geometry;
+
+import java.io.IOException;
+
+/**
+ * Módulo Jackson que serializa cualquier {@link Geometry} JTS como GeoJSON con
+ * {@link GeoJsonGeometryWriter}: DTOs, Maps y entidades con geometría salen directo al stream
+ * de la respuesta.
+ */
+public class JtsGeoJsonModule extends SimpleModule {
+
+    public JtsGeoJsonModule(GeoJsonGeometryWriter writer) {
+        super("JtsGeoJsonModule");
+        addSerializer(Geometry.class, new GeometrySerializer(writer));
+    }
+
+    static final class GeometrySerializer extends StdSerializer<Geometry> {
+
+        private final transient GeoJsonGeometryWriter writer;
+
+        GeometrySerializer(GeoJsonGeometryWriter writer) {
+            super(Geometry.class);
+            this.writer = writer;
+        }
+
+        @Override
+        public void serialize(Geometry value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            writer.write(value, gen);
+        }
+    }
+}
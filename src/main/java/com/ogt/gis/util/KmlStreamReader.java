@@ -0,0 +1,323 @@
+package com.ogt.gis.util;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.PrecisionModel;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Lector KML/KMZ en streaming (StAX).
+ *
+ * Entrega cada Placemark al consumidor apenas se cierra su etiqueta, sin armar el DOM
+ * ni acumular la lista completa. La tabla HTML de la descripción se extrae en una sola
+ * pasada a un mapa campo -> valor.
+ *
+ * Geometrías soportadas: Point, LineString, LinearRing, Polygon (con huecos) y
+ * MultiGeometry (homogéneas -> Multi*, mixtas -> GeometryCollection), siempre en WGS84.
+ */
+public final class KmlStreamReader {
+
+    /** Par de celdas "<td>CAMPO</td><td>valor</td>" de la tabla de descripción. */
+    private static final Pattern TABLE_ROW = Pattern.compile(
+            "<td[^>]*>([^<]*)</td>\\s*<td[^>]*>([^<]*)</td>", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    /** KML siempre es lon/lat WGS84. */
+    private static final GeometryFactory WGS84 = new GeometryFactory(new PrecisionModel(), 4326);
+
+    /** Abre (o reabre) el contenido KML. Permite reintentar con otro encoding. */
+    @FunctionalInterface
+    public interface StreamOpener {
+        InputStream open() throws IOException;
+    }
+
+    public static class Placemark {
+        private String name;
+        private Geometry geometry;
+        private Map<String, String> fields = Collections.emptyMap();
+
+        public String getName() { return name; }
+        public Geometry getGeometry() { return geometry; }
+        public Map<String, String> getFields() { return fields; }
+
+        /** Longitud del primer vértice. */
+        public double getLon() { return geometry.getCoordinate().x; }
+
+        /** Latitud del primer vértice. */
+        public double getLat() { return geometry.getCoordinate().y; }
+
+        /** Valor de la tabla de descripción (clave sin distinguir mayúsculas), o null. */
+        public String field(String key) {
+            return fields.get(key.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private KmlStreamReader() {}
+
+    /**
+     * Abre el primer .kml (normalmente doc.kml) de un KMZ, descomprimiendo en streaming:
+     * no se escribe nada a disco.
+     */
+    public static InputStream openKmz(File kmz) throws IOException {
+        ZipInputStream zis = new ZipInputStream(new BufferedInputStream(new FileInputStream(kmz)));
+        try {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                if (!entry.isDirectory() && entry.getName().toLowerCase().endsWith(".kml")) return zis;
+            }
+        } catch (IOException e) {
+            zis.close();
+            throw e;
+        }
+        zis.close();
+        throw new IOException("El KMZ no contiene ningún archivo .kml");
+    }
+
+    /**
+     * Recorre el KML y entrega cada Placemark con geometría al consumidor.
+     * Si el archivo no es UTF-8 válido y todavía no se entregó ningún Placemark,
+     * se reintenta como ISO-8859-1 (exportaciones viejas de municipios).
+     *
+     * @return cantidad de placemarks entregados
+     */
+    public static int read(StreamOpener opener, Consumer<Placemark> consumer) throws IOException, XMLStreamException {
+        int[] emitted = {0};
+        Consumer<Placemark> counting = pm -> { consumer.accept(pm); emitted[0]++; };
+
+        try (InputStream in = opener.open()) {
+            XMLStreamReader reader = FACTORY.createXMLStreamReader(in);
+            try { parse(reader, counting); } finally { reader.close(); }
+        } catch (XMLStreamException e) {
+            if (emitted[0] > 0) throw e;
+            try (InputStream in = opener.open()) {
+                XMLStreamReader reader = FACTORY.createXMLStreamReader(
+                        new InputStreamReader(in, StandardCharsets.ISO_8859_1));
+                try { parse(reader, counting); } finally { reader.close(); }
+            }
+        }
+        return emitted[0];
+    }
+
+    private static void parse(XMLStreamReader r, Consumer<Placemark> consumer) throws XMLStreamException {
+        Placemark current = null;
+
+        while (r.hasNext()) {
+            int event = r.next();
+
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String tag = r.getLocalName();
+                if ("Placemark".equals(tag)) {
+                    current = new Placemark();
+                } else if (current != null) {
+                    switch (tag) {
+                        case "name" -> {
+                            if (current.name == null) current.name = readText(r).trim();
+                        }
+                        case "description" -> current.fields = parseDescriptionTable(readText(r));
+                        case "Point", "LineString", "LinearRing", "Polygon", "MultiGeometry" -> {
+                            Geometry geom = readGeometry(r, tag);
+                            if (current.geometry == null) current.geometry = geom;
+                        }
+                        default -> { }
+                    }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT
+                    && "Placemark".equals(r.getLocalName()) && current != null) {
+                if (current.geometry != null && !current.geometry.isEmpty()) consumer.accept(current);
+                current = null;
+            }
+        }
+    }
+
+    // =================================================================================
+    // Geometrías (el lector queda posicionado sobre la etiqueta de cierre)
+    // =================================================================================
+
+    private static Geometry readGeometry(XMLStreamReader r, String tag) throws XMLStreamException {
+        return switch (tag) {
+            case "Point" -> {
+                Coordinate[] c = readCoordinatesUntil(r, tag);
+                yield c.length > 0 ? WGS84.createPoint(c[0]) : null;
+            }
+            case "LineString" -> {
+                Coordinate[] c = readCoordinatesUntil(r, tag);
+                yield c.length >= 2 ? WGS84.createLineString(c) : null;
+            }
+            case "LinearRing" -> toRing(readCoordinatesUntil(r, tag));
+            case "Polygon" -> readPolygon(r);
+            case "MultiGeometry" -> readMultiGeometry(r);
+            default -> {
+                skipElement(r);
+                yield null;
+            }
+        };
+    }
+
+    private static Coordinate[] readCoordinatesUntil(XMLStreamReader r, String endTag) throws XMLStreamException {
+        Coordinate[] coords = new Coordinate[0];
+        while (r.hasNext()) {
+            int event = r.next();
+            if (event == XMLStreamConstants.START_ELEMENT && "coordinates".equals(r.getLocalName())) {
+                coords = parseCoordinates(readText(r));
+            } else if (event == XMLStreamConstants.END_ELEMENT && endTag.equals(r.getLocalName())) {
+                break;
+            }
+        }
+        return coords;
+    }
+
+    private static Geometry readPolygon(XMLStreamReader r) throws XMLStreamException {
+        LinearRing shell = null;
+        List<LinearRing> holes = new ArrayList<>();
+        boolean inner = false;
+
+        while (r.hasNext()) {
+            int event = r.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                switch (r.getLocalName()) {
+                    case "outerBoundaryIs" -> inner = false;
+                    case "innerBoundaryIs" -> inner = true;
+                    case "LinearRing" -> {
+                        LinearRing ring = toRing(readCoordinatesUntil(r, "LinearRing"));
+                        if (ring != null) {
+                            if (inner) holes.add(ring);
+                            else if (shell == null) shell = ring;
+                        }
+                    }
+                    default -> { }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && "Polygon".equals(r.getLocalName())) {
+                break;
+            }
+        }
+        return shell != null ? WGS84.createPolygon(shell, holes.toArray(new LinearRing[0])) : null;
+    }
+
+    private static Geometry readMultiGeometry(XMLStreamReader r) throws XMLStreamException {
+        List<Geometry> parts = new ArrayList<>();
+        while (r.hasNext()) {
+            int event = r.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                Geometry part = readGeometry(r, r.getLocalName());
+                if (part != null && !part.isEmpty()) parts.add(part);
+            } else if (event == XMLStreamConstants.END_ELEMENT && "MultiGeometry".equals(r.getLocalName())) {
+                break;
+            }
+        }
+        return parts.isEmpty() ? null : WGS84.buildGeometry(parts);
+    }
+
+    /** Consume un elemento desconocido completo (ej. gx:Track dentro de MultiGeometry). */
+    private static void skipElement(XMLStreamReader r) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && r.hasNext()) {
+            int event = r.next();
+            if (event == XMLStreamConstants.START_ELEMENT) depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT) depth--;
+        }
+    }
+
+    /** "lon,lat[,alt] lon,lat[,alt] ..." (la altitud se descarta). */
+    private static Coordinate[] parseCoordinates(String text) {
+        String trimmed = text.trim();
+        if (trimmed.isEmpty()) return new Coordinate[0];
+
+        String[] tuples = WHITESPACE.split(trimmed);
+        List<Coordinate> coords = new ArrayList<>(tuples.length);
+        for (String tuple : tuples) {
+            int comma = tuple.indexOf(',');
+            if (comma < 0) continue;
+            int next = tuple.indexOf(',', comma + 1);
+            try {
+                double lon = Double.parseDouble(tuple.substring(0, comma));
+                double lat = Double.parseDouble(next < 0 ? tuple.substring(comma + 1) : tuple.substring(comma + 1, next));
+                coords.add(new Coordinate(lon, lat));
+            } catch (NumberFormatException ignored) { /* tupla inválida */ }
+        }
+        return coords.toArray(new Coordinate[0]);
+    }
+
+    /** Cierra el anillo si hace falta; null si no alcanza para un anillo válido. */
+    private static LinearRing toRing(Coordinate[] coords) {
+        if (coords.length < 3) return null;
+        if (!coords[0].equals2D(coords[coords.length - 1])) {
+            Coordinate[] closed = new Coordinate[coords.length + 1];
+            System.arraycopy(coords, 0, closed, 0, coords.length);
+            closed[coords.length] = new Coordinate(coords[0]);
+            coords = closed;
+        }
+        return coords.length >= 4 ? WGS84.createLinearRing(coords) : null;
+    }
+
+    /**
+     * Texto de un elemento, tolerando HTML sin CDATA dentro de la descripción:
+     * las etiquetas anidadas se reescriben para que la tabla siga siendo legible.
+     */
+    private static String readText(XMLStreamReader r) throws XMLStreamException {
+        StringBuilder sb = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            switch (r.next()) {
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA,
+                     XMLStreamConstants.SPACE, XMLStreamConstants.ENTITY_REFERENCE -> sb.append(r.getText());
+                case XMLStreamConstants.START_ELEMENT -> {
+                    depth++;
+                    sb.append('<').append(r.getLocalName()).append('>');
+                }
+                case XMLStreamConstants.END_ELEMENT -> {
+                    depth--;
+                    if (depth > 0) sb.append("</").append(r.getLocalName()).append('>');
+                }
+                default -> { }
+            }
+        }
+        return sb.toString();
+    }
+
+    static Map<String, String> parseDescriptionTable(String html) {
+        Map<String, String> fields = new HashMap<>();
+        Matcher m = TABLE_ROW.matcher(html);
+        while (m.find()) {
+            String key = m.group(1).trim().toUpperCase(Locale.ROOT);
+            String val = m.group(2).trim();
+            if (key.isEmpty() || val.isEmpty() || "null".equalsIgnoreCase(val)) continue;
+            fields.putIfAbsent(key, val);
+        }
+        return fields;
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
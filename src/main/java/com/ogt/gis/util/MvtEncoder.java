@@ -0,0 +1,282 @@
+package com.ogt.gis.util;
+
+import org.locationtech.jts.geom.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Codificador mínimo de Mapbox Vector Tiles (spec 2.1) para una capa por tile.
+ *
+ * Recibe geometrías ya recortadas y en coordenadas de tile (0..extent, y hacia abajo) y escribe el
+ * protobuf a mano: no hace falta la librería de protobuf para los pocos mensajes de la spec
+ * (Tile > Layer > Feature / Value). Las coordenadas se redondean a enteros acá; los vértices
+ * repetidos tras el redondeo se descartan, y los anillos o líneas que quedan degenerados también.
+ * Los anillos se reorientan como pide la spec (exterior con área positiva en coordenadas de tile).
+ */
+public final class MvtEncoder {
+
+    // Comandos de geometría
+    private static final int MOVE_TO = 1;
+    private static final int LINE_TO = 2;
+    private static final int CLOSE_PATH = 7;
+
+    // GeomType
+    private static final int POINT = 1;
+    private static final int LINESTRING = 2;
+    private static final int POLYGON = 3;
+
+    private final String layerName;
+    private final int extent;
+
+    private final Map<String, Integer> keys = new LinkedHashMap<>();
+    private final Map<Object, Integer> values = new LinkedHashMap<>();
+    private final ByteArrayOutputStream features = new ByteArrayOutputStream();
+    private int featureCount;
+
+    public MvtEncoder(String layerName, int extent) {
+        this.layerName = layerName;
+        this.extent = extent;
+    }
+
+    public int getFeatureCount() {
+        return featureCount;
+    }
+
+    /**
+     * Agrega un feature. Los atributos nulos se omiten; los valores que no son String, Boolean
+     * o Number se escriben como texto.
+     *
+     * @return false si la geometría quedó vacía al cuantizarla
+     */
+    public boolean addFeature(Geometry geom, Map<String, ?> attributes) {
+        List<Integer> commands = new ArrayList<>();
+        int type = encodeGeometry(geom, commands);
+        if (type == 0 || commands.isEmpty()) return false;
+
+        List<Integer> tags = new ArrayList<>();
+        attributes.forEach((key, value) -> {
+            if (value == null) return;
+            Object normalized = value instanceof String || value instanceof Boolean || value instanceof Number
+                    ? normalizeNumber(value) : value.toString();
+            tags.add(keys.computeIfAbsent(key, k -> keys.size()));
+            tags.add(values.computeIfAbsent(normalized, v -> values.size()));
+        });
+
+        ByteArrayOutputStream feature = new ByteArrayOutputStream();
+        writePacked(feature, 2, tags);
+        writeVarintField(feature, 3, type);
+        writePacked(feature, 4, commands);
+        writeBytesField(features, 2, feature.toByteArray());
+        featureCount++;
+        return true;
+    }
+
+    /** Tile con esta capa; vacío si no se agregó ningún feature. */
+    public byte[] encode() {
+        if (featureCount == 0) return new byte[0];
+
+        ByteArrayOutputStream layer = new ByteArrayOutputStream();
+        writeVarintField(layer, 15, 2); // version
+        writeBytesField(layer, 1, layerName.getBytes(StandardCharsets.UTF_8));
+        layer.writeBytes(features.toByteArray());
+        for (String key : keys.keySet()) writeBytesField(layer, 3, key.getBytes(StandardCharsets.UTF_8));
+        for (Object value : values.keySet()) writeBytesField(layer, 4, encodeValue(value));
+        writeVarintField(layer, 5, extent);
+
+        ByteArrayOutputStream tile = new ByteArrayOutputStream();
+        writeBytesField(tile, 3, layer.toByteArray());
+        return tile.toByteArray();
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Geometría
+    // ---------------------------------------------------------------------------------------
+
+    private int encodeGeometry(Geometry geom, List<Integer> out) {
+        if (geom == null || geom.isEmpty()) return 0;
+        Cursor cursor = new Cursor();
+
+        if (geom instanceof Point || geom instanceof MultiPoint) {
+            List<int[]> points = new ArrayList<>();
+            for (int i = 0; i < geom.getNumGeometries(); i++) {
+                Coordinate c = geom.getGeometryN(i).getCoordinate();
+                if (c == null) continue;
+                int[] p = quantize(c);
+                if (p[0] < 0 || p[1] < 0 || p[0] > extent || p[1] > extent) continue;
+                points.add(p);
+            }
+            if (points.isEmpty()) return 0;
+            out.add(command(MOVE_TO, points.size()));
+            for (int[] p : points) cursor.moveTo(p, out);
+            return POINT;
+        }
+
+        if (geom instanceof LineString || geom instanceof MultiLineString) {
+            for (int i = 0; i < geom.getNumGeometries(); i++) {
+                List<int[]> line = dedupe(geom.getGeometryN(i).getCoordinates());
+                if (line.size() >= 2) writeLine(line, false, cursor, out);
+            }
+            return out.isEmpty() ? 0 : LINESTRING;
+        }
+
+        if (geom instanceof Polygon || geom instanceof MultiPolygon) {
+            for (int i = 0; i < geom.getNumGeometries(); i++) {
+                Polygon polygon = (Polygon) geom.getGeometryN(i);
+                List<int[]> shell = ring(polygon.getExteriorRing(), true);
+                if (shell == null) continue;
+                writeLine(shell, true, cursor, out);
+                for (int h = 0; h < polygon.getNumInteriorRing(); h++) {
+                    List<int[]> hole = ring(polygon.getInteriorRingN(h), false);
+                    if (hole != null) writeLine(hole, true, cursor, out);
+                }
+            }
+            return out.isEmpty() ? 0 : POLYGON;
+        }
+
+        if (geom instanceof GeometryCollection) {
+            // Colección mixta (p. ej. resultado de un recorte): se codifica la primera parte no vacía
+            for (int i = 0; i < geom.getNumGeometries(); i++) {
+                int type = encodeGeometry(geom.getGeometryN(i), out);
+                if (type != 0) return type;
+            }
+        }
+        return 0;
+    }
+
+    /** Anillo sin el punto de cierre, orientado según sea exterior o agujero; null si degenera. */
+    private List<int[]> ring(LineString ring, boolean exterior) {
+        List<int[]> points = dedupe(ring.getCoordinates());
+        if (points.size() > 1 && Arrays.equals(points.get(0), points.get(points.size() - 1))) {
+            points.remove(points.size() - 1);
+        }
+        if (points.size() < 3) return null;
+
+        long area = signedArea(points);
+        if (area == 0) return null;
+        if ((area > 0) != exterior) Collections.reverse(points);
+        return points;
+    }
+
+    private void writeLine(List<int[]> points, boolean closed, Cursor cursor, List<Integer> out) {
+        out.add(command(MOVE_TO, 1));
+        cursor.moveTo(points.get(0), out);
+        out.add(command(LINE_TO, points.size() - 1));
+        for (int i = 1; i < points.size(); i++) cursor.moveTo(points.get(i), out);
+        if (closed) out.add(command(CLOSE_PATH, 1));
+    }
+
+    private List<int[]> dedupe(Coordinate[] coordinates) {
+        List<int[]> points = new ArrayList<>(coordinates.length);
+        int[] previous = null;
+        for (Coordinate c : coordinates) {
+            int[] p = quantize(c);
+            if (previous == null || p[0] != previous[0] || p[1] != previous[1]) {
+                points.add(p);
+                previous = p;
+            }
+        }
+        return points;
+    }
+
+    private static int[] quantize(Coordinate c) {
+        return new int[]{(int) Math.round(c.x), (int) Math.round(c.y)};
+    }
+
+    /** Fórmula del agrimensor en coordenadas de tile (y hacia abajo): positivo = sentido horario en pantalla. */
+    private static long signedArea(List<int[]> ring) {
+        long sum = 0;
+        for (int i = 0; i < ring.size(); i++) {
+            int[] a = ring.get(i);
+            int[] b = ring.get((i + 1) % ring.size());
+            sum += (long) a[0] * b[1] - (long) b[0] * a[1];
+        }
+        return sum;
+    }
+
+    private static int command(int id, int count) {
+        return (id & 0x7) | (count << 3);
+    }
+
+    /** Las coordenadas de los comandos son deltas respecto del punto anterior, en zigzag. */
+    private static final class Cursor {
+        private int x;
+        private int y;
+
+        void moveTo(int[] p, List<Integer> out) {
+            out.add(zigzag(p[0] - x));
+            out.add(zigzag(p[1] - y));
+            x = p[0];
+            y = p[1];
+        }
+    }
+
+    private static int zigzag(int n) {
+        return (n << 1) ^ (n >> 31);
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Protobuf
+    // ---------------------------------------------------------------------------------------
+
+    private static Object normalizeNumber(Object value) {
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Float) return ((Float) value).doubleValue();
+        if (value instanceof Number n && !(value instanceof Long) && !(value instanceof Double)) {
+            return n.doubleValue();
+        }
+        return value;
+    }
+
+    private static byte[] encodeValue(Object value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (value instanceof String s) {
+            writeBytesField(out, 1, s.getBytes(StandardCharsets.UTF_8));
+        } else if (value instanceof Double d) {
+            writeTag(out, 3, 1);
+            long bits = Double.doubleToLongBits(d);
+            for (int i = 0; i < 8; i++) out.write((int) (bits >>> (8 * i)) & 0xff);
+        } else if (value instanceof Long l) {
+            writeTag(out, 6, 0);
+            writeVarint(out, (l << 1) ^ (l >> 63)); // sint64
+        } else if (value instanceof Boolean b) {
+            writeVarintField(out, 7, b ? 1 : 0);
+        } else {
+            writeBytesField(out, 1, value.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+
+    private static void writePacked(ByteArrayOutputStream out, int field, List<Integer> values) {
+        if (values.isEmpty()) return;
+        ByteArrayOutputStream packed = new ByteArrayOutputStream(values.size() * 2);
+        for (int v : values) writeVarint(packed, v & 0xffffffffL);
+        writeBytesField(out, field, packed.toByteArray());
+    }
+
+    private static void writeVarintField(ByteArrayOutputStream out, int field, long value) {
+        writeTag(out, field, 0);
+        writeVarint(out, value);
+    }
+
+    private static void writeBytesField(ByteArrayOutputStream out, int field, byte[] bytes) {
+        writeTag(out, field, 2);
+        writeVarint(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    private static void writeTag(ByteArrayOutputStream out, int field, int wireType) {
+        writeVarint(out, ((long) field << 3) | wireType);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
@@ -0,0 +1,33 @@
+package com.ogt.gis.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * JSON de {@code import_jobs.stage_metrics}: un objeto con una entrada por etapa
+ * ("read", "prepare", "write", "publish"...). Distintos componentes agregan la suya.
+ */
+public final class StageMetricsJson {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<LinkedHashMap<String, Object>> TYPE = new TypeReference<>() {};
+
+    private StageMetricsJson() {}
+
+    /** Agrega (o reemplaza) etapas sin pisar las ya registradas. */
+    public static String merge(String json, Map<String, Object> stages) {
+        Map<String, Object> merged = new LinkedHashMap<>();
+        if (json != null && !json.isBlank()) {
+            try { merged.putAll(MAPPER.readValue(json, TYPE)); } catch (Exception ignored) { /* se reescribe */ }
+        }
+        merged.putAll(stages);
+        try {
+            return MAPPER.writeValueAsString(merged);
+        } catch (Exception e) {
+            return json;
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.ogt.gis.entity.SpatialFeature;
 import com.ogt.gis.repository.ExportJobRepository;
 import com.ogt.gis.repository.MapLayerRepository;
 import com.ogt.gis.repository.SpatialFeatureRepository;
+import com.ogt.gis.service.CoordinateService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -15,7 +16,6 @@ import org.geotools.api.data.SimpleFeatureSource;
 import org.geotools.api.data.SimpleFeatureStore;
 import org.geotools.api.feature.simple.SimpleFeature;
 import org.geotools.api.feature.simple.SimpleFeatureType;
-import org.geotools.api.referencing.FactoryException;
 import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
 
 // ✅ Implementaciones
@@ -26,7 +26,6 @@ import org.geotools.data.shapefile.ShapefileDataStoreFactory;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.geojson.geom.GeometryJSON;
-import org.geotools.referencing.CRS;
 
 // ✅ JTS Geometrías
 import org.locationtech.jts.geom.*;
@@ -53,6 +52,7 @@ public class ExportWorker {
     private final MapLayerRepository layerRepository;
     private final SpatialFeatureRepository featureRepository;
     private final ExportJobRepository jobRepository;
+    private final CoordinateService coordinateService;
 
     private static final int STORAGE_SRID = 31984;
     private static final int DECIMAL_PRECISION = 8;
@@ -189,10 +189,10 @@ public class ExportWorker {
         }
     }
 
-    private SimpleFeatureType createShapefileSchema(List<SpatialFeature> features) throws FactoryException {
+    private SimpleFeatureType createShapefileSchema(List<SpatialFeature> features) {
         SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
         builder.setName("Export");
-        builder.setCRS(CRS.decode("EPSG:" + STORAGE_SRID));
+        builder.setCRS(coordinateService.findCrs(STORAGE_SRID));
         builder.add("the_geom", determineGeometryType(features));
         builder.add("id", String.class);
         builder.add("ext_id", String.class);
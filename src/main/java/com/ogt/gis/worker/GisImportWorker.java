@@ -4,34 +4,44 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ogt.gis.entity.*;
 import com.ogt.gis.repository.*;
 import com.ogt.gis.service.CoordinateService;
+import com.ogt.gis.service.DistrictIndex;
+import com.ogt.gis.service.LayerIndexCache;
+import com.ogt.gis.service.VectorTileService;
+import com.ogt.gis.util.AttributeMappingPlan;
+import com.ogt.gis.util.ExcelStreamReader;
+import com.ogt.gis.util.GeoJsonStreamReader;
 import com.ogt.gis.util.ImportErrorLog;
+import com.ogt.gis.util.ImportPipeline;
+import com.ogt.gis.util.KmlStreamReader;
+import com.ogt.gis.util.StageMetricsJson;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.geotools.api.data.DataStore;
 import org.geotools.api.data.DataStoreFinder;
 import org.geotools.api.data.FeatureSource;
 import org.geotools.api.feature.simple.SimpleFeature;
 import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.referencing.operation.MathTransform;
 import org.geotools.feature.FeatureIterator;
+import org.geotools.geometry.jts.JTS;
 import org.locationtech.jts.geom.*;
+import org.locationtech.jts.io.WKBWriter;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.regex.Matcher;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 
 @Component
@@ -41,18 +51,38 @@ public class GisImportWorker {
 
     private final ImportJobRepository jobRepository;
     private final MapLayerRepository layerRepository;
-    private final SpatialFeatureRepository featureRepository;
-    private final DistrictBoundaryRepository districtRepository;
-    private final RabbitTemplate rabbitTemplate;
+    private final SpatialBulkWriter bulkWriter;
+    private final LightPointBatchPublisher batchPublisher;
+    private final ImportOutboxRepository outboxRepository;
     private final ObjectMapper objectMapper;
     private final CoordinateService coordinateService;
+    private final DistrictIndex districtIndex;
+    private final LayerIndexCache layerIndexCache;
+    private final VectorTileService vectorTileService;
+    private final TransactionTemplate transactionTemplate;
+    private final ImportProgressReporter progressReporter;
 
-    private static final String LIGHTPOINT_EXCHANGE = "ogt.lightpoint.events";
-    private static final String LIGHTPOINT_IMPORT_KEY = "lightpoint.import.batch";
     private static final GeometryFactory geometryFactory = new GeometryFactory();
 
+    /** Texto alrededor de una coordenada mal cargada ("-20,36 S", "lat: -20.36"). */
+    private static final Pattern COORDINATE_JUNK = Pattern.compile("[^0-9.,-]");
+
+    private static final int PIPELINE_BLOCK_SIZE = 500;
+    private static final int PIPELINE_QUEUE_BLOCKS = 16;
+
+    /** Hilos de preparación del pipeline de shapefiles (0 = un hilo por núcleo). */
+    @Value("${gis.import.pipeline.threads:0}")
+    private int pipelineThreads;
+
+    /** Tiempo sin checkpoints tras el cual el lock de un import sobre su capa se da por abandonado. */
+    @Value("${gis.import.layer-lock-timeout-ms:1800000}")
+    private long layerLockTimeoutMs;
+
+    /**
+     * Sin transacción envolvente: cada chunk se confirma por separado junto con el checkpoint
+     * del job (ver {@link ImportCursor}), así un import largo que se cae no se pierde entero.
+     */
     @RabbitListener(queues = "gis.import.queue")
-    @Transactional
     public void processImport(String message) {
         log.info("▶️ [GIS Import Worker] Recibido: {}", message);
 
@@ -67,131 +97,78 @@ public class GisImportWorker {
 
         ImportJob job = jobRepository.findById(jobId).orElse(null);
         if (job == null) return;
+        if ("COMPLETED".equals(job.getStatus())) {
+            log.info("⏭️ Job {} ya completado, se ignora el mensaje reentregado", jobId);
+            return;
+        }
+
+        // Un solo import por capa: varios pods consumen la cola y dos REPLACE a la vez
+        // pisarían la misma versión destino
+        MapLayer claimed = layerRepository.findByCode(layerCode).orElse(null);
+        if (claimed != null && !bulkWriter.claimLayerImport(claimed.getId(), jobId, layerLockTimeoutMs)) {
+            rejectConcurrentImport(job, layerCode);
+            return;
+        }
+        try {
+            importFile(job, layerCode);
+        } finally {
+            if (claimed != null) bulkWriter.releaseLayerImport(claimed.getId(), jobId);
+        }
+    }
 
+    private void importFile(ImportJob job, String layerCode) {
+        UUID jobId = job.getId();
         try {
+            ImportCursor cursor = new ImportCursor(job);
+            if (cursor.isResuming()) {
+                log.info("🔁 Reanudando job {} desde el registro {}", jobId, cursor.getResumeFrom());
+            } else {
+                job.setStartedAt(LocalDateTime.now());
+            }
             job.setStatus("PROCESSING");
-            job.setStartedAt(LocalDateTime.now());
             jobRepository.save(job);
 
             MapLayer layer = layerRepository.findByCode(layerCode)
                     .orElseThrow(() -> new RuntimeException("La capa no está registrada: " + layerCode));
 
-            int expectedSRID = layer.getSrid() != null
-                    ? layer.getSrid()
-                    : coordinateService.detectUTMZone(-40.3);
+            int expectedSRID = coordinateService.layerStorageSrid(layer);
 
             String geometryTypeAllowed = layer.getGeometryType() != null ? layer.getGeometryType().toUpperCase() : null;
             String businessTarget = layer.getBusinessTarget() != null ? layer.getBusinessTarget().toUpperCase() : "NONE";
+            boolean featureLayer = !businessTarget.equals("LIGHT_POINT_SERVICE") && !businessTarget.equals("DISTRICTS");
+            if ((isIncremental(job) || isReplace(job)) && !featureLayer) {
+                throw new RuntimeException("El modo " + job.getImportMode() + " solo aplica a capas de features, no a " + businessTarget);
+            }
+            String[] keyAttributes = parseKeyAttributes(layer);
+
+            if (isReplace(job) && (!cursor.isResuming() || job.getTargetLayerVersion() == null)) {
+                // Versiones ya reemplazadas y restos de un intento anterior de este mismo REPLACE;
+                // nada por encima del destino, que solo podría ser de otro job
+                int discarded = bulkWriter.deleteStaleVersions(layer.getId(), layer.getActiveVersion())
+                        + bulkWriter.deleteVersion(layer.getId(), layer.getActiveVersion() + 1);
+                if (discarded > 0) log.info("🧹 {} features de un reemplazo sin publicar descartados", discarded);
+                job.setTargetLayerVersion(layer.getActiveVersion() + 1);
+                jobRepository.save(job);
+                log.info("🔀 Reemplazo de {}: cargando la versión {} (activa: {})",
+                        layer.getCode(), job.getTargetLayerVersion(), layer.getActiveVersion());
+            }
 
             File file = new File(job.getFileUrl());
-            int processed = 0;
-            List<Map<String, Object>> batchForRabbit = new ArrayList<>();
+            int processed;
 
             // =================================================================================
-            // 📊 RUTA 1: ARCHIVOS XLSX
+            // 📊 RUTA 1: ARCHIVOS XLSX / XLS (lectura en streaming, fila por fila)
             // =================================================================================
             if (file.getName().toLowerCase().endsWith(".xlsx") || file.getName().toLowerCase().endsWith(".xls")) {
-                log.info("📊 Detectado archivo Excel, procesando con Apache POI");
-
-                try (FileInputStream fis = new FileInputStream(file);
-                     Workbook workbook = new XSSFWorkbook(fis)) {
+                log.info("📊 Detectado archivo Excel, procesando en streaming");
 
-                    Sheet sheet = workbook.getSheetAt(0);
-
-                    // 🔍 BÚSQUEDA INTELIGENTE DE ENCABEZADOS
-                    int headerRowIndex = -1;
-                    for (int i = 0; i <= sheet.getLastRowNum() && i < 50; i++) {
-                        Row row = sheet.getRow(i);
-                        if (row != null && row.getPhysicalNumberOfCells() > 0) {
-                            headerRowIndex = i;
-                            break;
-                        }
-                    }
-
-                    if (headerRowIndex == -1) {
-                        throw new RuntimeException("El archivo Excel parece estar vacío o no tiene encabezados detectables");
-                    }
-
-                    Row headerRow = sheet.getRow(headerRowIndex);
-
-                    // 1. Construir mapa de columnas normalizado
-                    Map<String, Integer> columnMap = buildColumnMap(headerRow);
-                    log.info("📊 Columnas detectadas: {}", columnMap.keySet());
-
-                    // En el método processImport()
-                    int totalRows = sheet.getLastRowNum() - headerRowIndex;
-                    job.setTotalRows(totalRows);
-                    jobRepository.save(job);
-
-                    ImportErrorLog errorLog = new ImportErrorLog();
-                    int processedCount = 0;
-
-                    // 2. Iterar filas de datos
-                    for (int i = headerRowIndex + 1; i <= sheet.getLastRowNum(); i++) {
-                        Row row = sheet.getRow(i);
-                        if (row == null) continue;
-
-                        try {
-                            // 🟢 FIX: Usar nombres completos exactos (Y=Lat, X=Lon)
-                            // LATITUD (Y) -> Ejemplo: -20.363...
-                            Double lat = getCoordinateValue(row, columnMap,
-                                    "COORDENADA_Y_LATLONG", // <--- PRIORIDAD 1
-                                    "coordenada_y_latlo", "latitude", "lat", "latitud", "y", "coordenada_y");
-
-                            // LONGITUD (X) -> Ejemplo: -40.426...
-                            Double lon = getCoordinateValue(row, columnMap,
-                                    "COORDENADA_X_LATLONG", // <--- PRIORIDAD 1
-                                    "coordenada_x_latlo", "longitude", "lon", "longitud", "lng", "x", "coordenada_x");
-
-                            if (lat == null || lon == null) {
-                                log.debug("⚠️ Fila {} sin coordenadas válidas (Lat/Lon nulos)", i);
-                                continue;
-                            }
-
-                            // 🚨 CHECK DE SEGURIDAD PARA BRASIL 🚨
-                            // Latitud debe ser aprox -20 y Longitud aprox -40.
-                            // Si Latitud es "más negativa" que Longitud (ej: Lat -40, Lon -20), están invertidas.
-                            // (En valor absoluto: |Lat| < |Lon| en esa zona de Brasil)
-                            if (Math.abs(lat) > Math.abs(lon)) {
-                                log.debug("🔄 Invirtiendo Lat/Lon detectado (Lat: {}, Lon: {})", lat, lon);
-                                double temp = lat;
-                                lat = lon;
-                                lon = temp;
-                            }
-
-                            Map<String, Object> dto = buildLightPointDTOFromExcel(row, columnMap, lat, lon);
-                            batchForRabbit.add(dto);
-
-                            if (batchForRabbit.size() >= 50) {
-                                sendBatchToRabbitMQ(batchForRabbit);
-                                processed += batchForRabbit.size();
-                                batchForRabbit.clear();
-                            }
-
-                            processedCount++;
-
-                            // Actualizar progreso cada 10 filas o al final
-                            if (processedCount % 10 == 0 || i == sheet.getLastRowNum()) {
-                                job.updateProgress(processedCount, totalRows, errorLog.getErrorCount());
-                                job.calculateSpeed();
-                                jobRepository.save(job);
-                            }
-
-                        } catch (Exception e) {
-                            errorLog.addError(i, "PARSE_ERROR", e.getMessage());
-                            log.warn("⚠️ Error procesando fila {}: {}", i, e.getMessage());
-                        }
-                    }
-
-                    if (!batchForRabbit.isEmpty()) {
-                        sendBatchToRabbitMQ(batchForRabbit);
-                        processed += batchForRabbit.size();
+                try {
+                    if (isIncremental(job) || isReplace(job)) {
+                        throw new RuntimeException("Los Excel de puntos solo admiten el modo APPEND");
                     }
-
-                    // Al finalizar
-                    job.setErrorSummary(errorLog.getSummary());
-                    job.setRowsWithErrors(errorLog.getErrorCount());
-                    jobRepository.save(job);
+                    ExcelImportHandler handler = new ExcelImportHandler(job, cursor);
+                    ExcelStreamReader.read(file, handler);
+                    processed = handler.finish();
 
                     completeJob(job, processed);
                     log.info("✅ Importación XLSX completada. Registros procesados: {}", processed);
@@ -199,40 +176,72 @@ public class GisImportWorker {
 
                 } catch (Exception e) {
                     log.error("❌ Error procesando Excel", e);
-                    handleImportError(job, e);
+                    handleImportError(job, layerCode, e);
+                    return;
+                }
+            }
+
+            // =================================================================================
+            // 📍 RUTA 2: ARCHIVOS KML / KMZ (StAX, se procesa a medida que se parsea)
+            // =================================================================================
+            String lowerName = file.getName().toLowerCase();
+            if (lowerName.endsWith(".kml") || lowerName.endsWith(".kmz")) {
+                try {
+                    // El KMZ se descomprime en streaming directo al parser, sin tocar disco
+                    KmlStreamReader.StreamOpener opener = lowerName.endsWith(".kmz")
+                            ? () -> KmlStreamReader.openKmz(file)
+                            : () -> new BufferedInputStream(new FileInputStream(file));
+
+                    KmlImportHandler handler = new KmlImportHandler(layer, businessTarget, expectedSRID, cursor);
+                    KmlStreamReader.read(opener, handler);
+                    handler.finish();
+                    processed = cursor.finish();
+
+                    completeLayerImport(job, layer, cursor, processed);
+                    log.info("✅ Importación KML completada. Registros procesados: {}", processed);
+                    return;
+                } catch (Exception e) {
+                    log.error("❌ Error procesando KML", e);
+                    handleImportError(job, layerCode, e);
                     return;
                 }
             }
 
             // =================================================================================
-            // 📍 RUTA 2: ARCHIVOS KML (Sin cambios)
+            // 🌐 RUTA 3: ARCHIVOS GEOJSON (Jackson en streaming, un Feature por vez)
             // =================================================================================
-            if (file.getName().toLowerCase().endsWith(".kml")) {
+            if (lowerName.endsWith(".geojson") || lowerName.endsWith(".json")) {
                 try {
-                    List<KmlPlacemark> placemarks = parseKmlWithTable(file);
-                    for (KmlPlacemark pm : placemarks) {
-                        Map<String, Object> dto = buildLightPointDTO(pm);
-                        batchForRabbit.add(dto);
-                        if (batchForRabbit.size() >= 50) {
-                            sendBatchToRabbitMQ(batchForRabbit);
-                            processed += batchForRabbit.size();
-                            batchForRabbit.clear();
-                        }
+                    if (businessTarget.equals("LIGHT_POINT_SERVICE")) {
+                        throw new RuntimeException("GeoJSON no soportado para capas LIGHT_POINT_SERVICE. Use KML, Excel o Shapefile.");
                     }
-                    if (!batchForRabbit.isEmpty()) {
-                        sendBatchToRabbitMQ(batchForRabbit);
-                        processed += batchForRabbit.size();
+
+                    GeometrySink sink = new GeometrySink(layer, businessTarget, expectedSRID, cursor);
+                    try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                        int sourceSrid = GeoJsonStreamReader.read(in, f -> {
+                            if (!cursor.next()) return;
+                            String name = propertyAsString(f.getProperties(), "NAME");
+                            String key = featureKey(keyAttributes, k -> propertyAsString(f.getProperties(), k),
+                                    f.getId() != null ? f.getId() : name);
+                            sink.add(key, name, f.getGeometry(), propertiesJson(f.getProperties()));
+                        });
+                        log.info("🌐 GeoJSON leído en EPSG:{}", sourceSrid);
                     }
-                    completeJob(job, processed);
+                    sink.finish();
+                    processed = cursor.finish();
+
+                    completeLayerImport(job, layer, cursor, processed);
+                    log.info("✅ Importación GeoJSON completada. Registros procesados: {}", processed);
                     return;
                 } catch (Exception e) {
-                    handleImportError(job, e);
+                    log.error("❌ Error procesando GeoJSON", e);
+                    handleImportError(job, layerCode, e);
                     return;
                 }
             }
 
             // =================================================================================
-            // 📍 RUTA 3: SHAPEFILES (Sin cambios)
+            // 📍 RUTA 4: SHAPEFILES (escritura en lotes JDBC)
             // =================================================================================
             Map<String, Object> params = new HashMap<>();
             params.put("url", file.toURI().toURL());
@@ -240,45 +249,45 @@ public class GisImportWorker {
             if (dataStore != null) {
                 String typeName = dataStore.getTypeNames()[0];
                 FeatureSource<SimpleFeatureType, SimpleFeature> source = dataStore.getFeatureSource(typeName);
+                GeometrySink sink = new GeometrySink(layer, businessTarget, expectedSRID, cursor);
+                OutboxBatch outbox = new OutboxBatch(cursor);
+                boolean lightPoints = businessTarget.equals("LIGHT_POINT_SERVICE");
+                boolean districts = businessTarget.equals("DISTRICTS");
+                AttributeMappingPlan mappingPlan = lightPoints
+                        ? AttributeMappingPlan.compile(layer.getAttributeMapping(), source.getSchema(), objectMapper)
+                        : null;
+
+                // Lector -> pool (SRID, atributos, JSON) -> escritor en este hilo, en orden de lectura
+                ImportPipeline<SimpleFeature, PreparedFeature> pipeline = new ImportPipeline<>(
+                        pipelineThreads(), PIPELINE_BLOCK_SIZE, PIPELINE_QUEUE_BLOCKS);
+                long skip = cursor.skipConfirmed();
+
                 try (FeatureIterator<SimpleFeature> features = source.getFeatures().features()) {
-                    while (features.hasNext()) {
-                        SimpleFeature f = features.next();
-                        Geometry geom = (Geometry) f.getDefaultGeometry();
-                        if (geom == null) continue;
-                        if (geom.getSRID() == 0) geom.setSRID(expectedSRID);
-                        geom = ensureSRID(geom, expectedSRID);
-
-                        if (businessTarget.equals("LIGHT_POINT_SERVICE") && geom instanceof Point) {
-                            Map<String, Object> dto = mapAttributes(f, layer.getAttributeMapping());
-                            dto.put("sirgasX", ((Point) geom).getX());
-                            dto.put("sirgasY", ((Point) geom).getY());
-                            dto.put("srid", expectedSRID);
-                            batchForRabbit.add(dto);
-                        } else if (businessTarget.equals("DISTRICTS")) {
-                            saveDistrict(f, geom);
-                            processed++;
-                        } else {
-                            saveSpatialFeature(f, geom, layer);
-                            processed++;
-                        }
-                        if (batchForRabbit.size() >= 50) {
-                            sendBatchToRabbitMQ(batchForRabbit);
-                            processed += batchForRabbit.size();
-                            batchForRabbit.clear();
-                        }
-                    }
-                }
-                if (!batchForRabbit.isEmpty()) {
-                    sendBatchToRabbitMQ(batchForRabbit);
-                    processed += batchForRabbit.size();
+                    pipeline.run(iterate(features), skip,
+                            f -> prepareShapefileFeature(f, mappingPlan, keyAttributes, districts, expectedSRID),
+                            prepared -> {
+                                cursor.next();
+                                if (prepared == null) return;
+                                if (prepared.lightPointJson() != null) {
+                                    outbox.addJson(prepared.lightPointJson());
+                                } else {
+                                    sink.add(prepared.externalId(), prepared.name(),
+                                            prepared.geom(), prepared.propertiesJson());
+                                }
+                            });
+                    sink.finish();
+                    processed = cursor.finish();
+                } finally {
+                    job.setStageMetrics(StageMetricsJson.merge(job.getStageMetrics(), pipeline.metrics()));
+                    dataStore.dispose();
                 }
-                dataStore.dispose();
-                completeJob(job, processed);
+                log.info("⚙️ Throughput por etapa: {}", job.getStageMetrics());
+                completeLayerImport(job, layer, cursor, processed);
             }
 
         } catch (Exception e) {
             log.error("❌ Error crítico en importación", e);
-            handleImportError(job, e);
+            handleImportError(job, layerCode, e);
         }
     }
 
@@ -286,30 +295,216 @@ public class GisImportWorker {
     // 🛠️ MÉTODOS AUXILIARES: PARSER EXCEL
     // =================================================================================
 
-    private Map<String, Integer> buildColumnMap(Row headerRow) {
-        Map<String, Integer> map = new HashMap<>();
-        for (Cell cell : headerRow) {
-            String rawValue = getCellValueAsString(cell);
-            if (rawValue == null || rawValue.isBlank()) continue;
-            // Normaliza quitando todo lo que no sea alfanumérico
-            String header = rawValue.replaceAll("[\n\r]+", " ").replaceAll("[^a-zA-Z0-9]", "").toLowerCase();
-            map.put(header, cell.getColumnIndex());
+    /**
+     * Procesa las filas que entrega {@link ExcelStreamReader}: la primera fila con datos
+     * (dentro de las primeras 50) es el encabezado, el resto se publica en lotes.
+     */
+    private class ExcelImportHandler implements ExcelStreamReader.RowHandler {
+
+        private static final int MAX_HEADER_SCAN_ROWS = 50;
+
+        private final ImportJob job;
+        private final ImportCursor cursor;
+        private final OutboxBatch outbox;
+        private final ImportErrorLog errorLog = new ImportErrorLog();
+        private final ImportProgressReporter.Tracker progress;
+
+        private ExcelColumnPlan columns;
+        private int lastRowIndex = -1;
+        private int totalRows;
+        private int processedCount;
+
+        ExcelImportHandler(ImportJob job, ImportCursor cursor) {
+            this.job = job;
+            this.cursor = cursor;
+            this.outbox = new OutboxBatch(cursor);
+            // Al reanudar, el progreso arranca desde lo ya publicado en el intento anterior
+            this.processedCount = cursor.getWritten();
+            this.progress = progressReporter.track(job, processedCount);
+        }
+
+        @Override
+        public void onSheetDimension(int lastRowIndex) {
+            this.lastRowIndex = lastRowIndex;
+        }
+
+        @Override
+        public void onRow(int i, String[] row) {
+            if (columns == null) {
+                readHeader(i, row);
+                return;
+            }
+            if (!cursor.next()) return;
+
+            try {
+                // 🟢 FIX: Usar nombres completos exactos (Y=Lat, X=Lon)
+                // LATITUD (Y) -> Ejemplo: -20.363...
+                Double lat = columns.coordinate(row, columns.latitude);
+
+                // LONGITUD (X) -> Ejemplo: -40.426...
+                Double lon = columns.coordinate(row, columns.longitude);
+
+                if (lat == null || lon == null) {
+                    log.debug("⚠️ Fila {} sin coordenadas válidas (Lat/Lon nulos)", i);
+                    return;
+                }
+
+                // 🚨 CHECK DE SEGURIDAD PARA BRASIL 🚨
+                // Latitud debe ser aprox -20 y Longitud aprox -40.
+                // Si Latitud es "más negativa" que Longitud (ej: Lat -40, Lon -20), están invertidas.
+                // (En valor absoluto: |Lat| < |Lon| en esa zona de Brasil)
+                if (Math.abs(lat) > Math.abs(lon)) {
+                    log.debug("🔄 Invirtiendo Lat/Lon detectado (Lat: {}, Lon: {})", lat, lon);
+                    double temp = lat;
+                    lat = lon;
+                    lon = temp;
+                }
+
+                Map<String, Object> dto = buildLightPointDTOFromExcel(row, columns, lat, lon);
+                outbox.add(dto);
+
+                processedCount++;
+
+                // El reporter agrupa por tiempo: a la BD llega como mucho una escritura por intervalo
+                progress.update(processedCount, totalRows, errorLog.getErrorCount());
+
+            } catch (Exception e) {
+                errorLog.addError(i, "PARSE_ERROR", e.getMessage());
+                log.warn("⚠️ Error procesando fila {}: {}", i, e.getMessage());
+            }
+        }
+
+        private void readHeader(int i, String[] row) {
+            // 🔍 BÚSQUEDA INTELIGENTE DE ENCABEZADOS
+            if (i >= MAX_HEADER_SCAN_ROWS) {
+                throw new RuntimeException("El archivo Excel parece estar vacío o no tiene encabezados detectables");
+            }
+
+            columns = new ExcelColumnPlan(row);
+            log.info("📊 Columnas detectadas: {}", columns.headers);
+
+            // Total informado por la dimensión de la hoja (antes de recorrer los datos)
+            totalRows = lastRowIndex > i ? lastRowIndex - i : 0;
+            job.setTotalRows(totalRows);
+            jobRepository.save(job);
+        }
+
+        /** Publica el último lote y cierra las métricas del job. Devuelve los registros publicados. */
+        int finish() {
+            if (columns == null) {
+                throw new RuntimeException("El archivo Excel parece estar vacío o no tiene encabezados detectables");
+            }
+
+            int published = cursor.finish();
+
+            // La dimensión puede faltar o venir desactualizada: el total real es lo recorrido
+            progress.update(processedCount, Math.max(totalRows, processedCount), errorLog.getErrorCount());
+            progress.flush();
+            job.setErrorSummary(errorLog.getSummary());
+            job.setRowsWithErrors(errorLog.getErrorCount());
+            jobRepository.save(job);
+
+            return published;
         }
-        return map;
     }
 
-    private Map<String, Object> buildLightPointDTOFromExcel(Row row, Map<String, Integer> columnMap, Double lat, Double lon) {
+    /**
+     * Columnas del Excel resueltas una sola vez, al leer el encabezado: cada campo queda como
+     * índice fijo (-1 si no está) y por fila solo se leen celdas, sin normalizar claves ni regex.
+     * Los alias van en orden de prioridad; para las coordenadas se guardan todos los presentes
+     * porque si una celda no parsea se prueba con la siguiente columna.
+     */
+    private static final class ExcelColumnPlan {
+
+        private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^a-zA-Z0-9]");
+
+        final Set<String> headers;
+        final int code;
+        final int address;
+        final int district;
+        final int city;
+        final int lampType;
+        final int installedType;
+        final int power;
+        final int luminaire;
+        final int[] latitude;
+        final int[] longitude;
+
+        ExcelColumnPlan(String[] headerRow) {
+            Map<String, Integer> map = new HashMap<>();
+            for (int col = 0; col < headerRow.length; col++) {
+                String rawValue = headerRow[col];
+                if (rawValue == null || rawValue.isBlank()) continue;
+                // Normaliza quitando todo lo que no sea alfanumérico
+                map.put(normalize(rawValue), col);
+            }
+            headers = map.keySet();
+
+            code = first(map, "id", "id da lampada", "code", "codigo", "id_da_lampada");
+            address = first(map, "nome logradouro", "logradouro", "direccion", "endereco", "nome_logradouro");
+            district = first(map, "nome bairro", "bairro", "barrio", "district", "nome_bairro");
+            city = first(map, "nome municipio", "municipio", "ciudad", "city", "nome_municipio");
+            lampType = first(map, "tipo lampada", "tipo_lampada_da", "tipo", "tipo_lampada");
+            installedType = first(map, "tipo de lampada instalada", "tipo_lampada_instalada");
+            power = first(map, "potencia", "potencia da lampada substituida", "potencia_lampada");
+            luminaire = first(map, "luminaria", "modelo_luminaria", "armadura");
+
+            // COORDENADA_*_LATLONG tiene prioridad 1
+            latitude = all(map, "COORDENADA_Y_LATLONG",
+                    "coordenada_y_latlo", "latitude", "lat", "latitud", "y", "coordenada_y");
+            longitude = all(map, "COORDENADA_X_LATLONG",
+                    "coordenada_x_latlo", "longitude", "lon", "longitud", "lng", "x", "coordenada_x");
+        }
+
+        String get(String[] row, int col) {
+            return col >= 0 && col < row.length ? row[col] : null;
+        }
+
+        Double coordinate(String[] row, int[] cols) {
+            for (int col : cols) {
+                String val = get(row, col);
+                if (val != null) {
+                    Double parsed = parseCoordinate(val);
+                    if (parsed != null) return parsed;
+                }
+            }
+            return null;
+        }
+
+        private static String normalize(String header) {
+            return NON_ALPHANUMERIC.matcher(header).replaceAll("").toLowerCase();
+        }
+
+        private static int first(Map<String, Integer> map, String... aliases) {
+            for (String alias : aliases) {
+                Integer col = map.get(normalize(alias));
+                if (col != null) return col;
+            }
+            return -1;
+        }
+
+        private static int[] all(Map<String, Integer> map, String... aliases) {
+            return Arrays.stream(aliases)
+                    .map(alias -> map.get(normalize(alias)))
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+    }
+
+    private Map<String, Object> buildLightPointDTOFromExcel(String[] row, ExcelColumnPlan columns, Double lat, Double lon) {
         Map<String, Object> dto = new HashMap<>();
 
         // Identificadores
-        String code = getFromRow(row, columnMap, "id", "id da lampada", "code", "codigo", "id_da_lampada");
+        String code = columns.get(row, columns.code);
         if (code == null || code.isBlank()) code = "EXCEL-" + UUID.randomUUID().toString().substring(0, 8);
         dto.put("code", code);
 
         // Ubicación
-        String logradouro = getFromRow(row, columnMap, "nome logradouro", "logradouro", "direccion", "endereco", "nome_logradouro");
-        String bairro = getFromRow(row, columnMap, "nome bairro", "bairro", "barrio", "district", "nome_bairro");
-        String municipio = getFromRow(row, columnMap, "nome municipio", "municipio", "ciudad", "city", "nome_municipio");
+        String logradouro = columns.get(row, columns.address);
+        String bairro = columns.get(row, columns.district);
+        String municipio = columns.get(row, columns.city);
 
         dto.put("address", logradouro != null ? logradouro : "Dirección no especificada");
         dto.put("district", bairro);
@@ -322,10 +517,10 @@ public class GisImportWorker {
         dto.put("srid", 4326);
 
         // Componente: LÁMPARA
-        String tipo = getFromRow(row, columnMap, "tipo lampada", "tipo_lampada_da", "tipo", "tipo_lampada");
-        String tipoInstalada = getFromRow(row, columnMap, "tipo de lampada instalada", "tipo_lampada_instalada");
-        String potencia = getFromRow(row, columnMap, "potencia", "potencia da lampada substituida", "potencia_lampada");
-        String luminaria = getFromRow(row, columnMap, "luminaria", "modelo_luminaria", "armadura");
+        String tipo = columns.get(row, columns.lampType);
+        String tipoInstalada = columns.get(row, columns.installedType);
+        String potencia = columns.get(row, columns.power);
+        String luminaria = columns.get(row, columns.luminaire);
 
         if (tipo != null || tipoInstalada != null || potencia != null || luminaria != null) {
             Map<String, Object> component = new HashMap<>();
@@ -351,54 +546,15 @@ public class GisImportWorker {
         return dto;
     }
 
-    private Double getCoordinateValue(Row row, Map<String, Integer> columnMap, String... possibleNames) {
-        for (String name : possibleNames) {
-            // Normalizamos la key de búsqueda igual que las del mapa (sin guiones bajos, lowercase)
-            String searchKey = name.replaceAll("[^a-zA-Z0-9]", "").toLowerCase();
-            Integer colIndex = columnMap.get(searchKey);
-            if (colIndex != null) {
-                Cell cell = row.getCell(colIndex);
-                if (cell != null) {
-                    try {
-                        if (cell.getCellType() == CellType.NUMERIC) {
-                            return cell.getNumericCellValue();
-                        } else if (cell.getCellType() == CellType.STRING) {
-                            String val = cell.getStringCellValue().trim();
-                            val = val.replaceAll("[^0-9.,-]", "");
-                            return Double.parseDouble(val.replace(",", "."));
-                        }
-                    } catch (Exception e) { /* ignore */ }
-                }
-            }
-        }
-        return null;
-    }
-
-    private String getFromRow(Row row, Map<String, Integer> columnMap, String... possibleKeys) {
-        for (String key : possibleKeys) {
-            String searchKey = key.replaceAll("[^a-zA-Z0-9]", "").toLowerCase();
-            Integer colIndex = columnMap.get(searchKey);
-            if (colIndex != null) {
-                Cell cell = row.getCell(colIndex);
-                return getCellValueAsString(cell);
-            }
-        }
-        return null;
-    }
-
-    private String getCellValueAsString(Cell cell) {
-        if (cell == null) return null;
-        switch (cell.getCellType()) {
-            case STRING: return cell.getStringCellValue();
-            case NUMERIC:
-                if (DateUtil.isCellDateFormatted(cell)) return cell.getDateCellValue().toString();
-                double num = cell.getNumericCellValue();
-                return (num == (long) num) ? String.valueOf((long) num) : String.valueOf(num);
-            case BOOLEAN: return String.valueOf(cell.getBooleanCellValue());
-            case FORMULA:
-                try { return String.valueOf(cell.getNumericCellValue()); }
-                catch (Exception e) { return cell.getStringCellValue(); }
-            default: return null;
+    private static Double parseCoordinate(String raw) {
+        String val = raw.trim();
+        try {
+            return Double.parseDouble(val); // celdas numéricas llegan sin formato
+        } catch (NumberFormatException e) {
+            try {
+                val = COORDINATE_JUNK.matcher(val).replaceAll("");
+                return Double.parseDouble(val.replace(",", "."));
+            } catch (Exception ignored) { return null; }
         }
     }
 
@@ -433,114 +589,482 @@ public class GisImportWorker {
 
     private Integer parsePower(String powerStr) {
         if (powerStr == null) return null;
+        StringBuilder nums = new StringBuilder(powerStr.length());
+        for (int i = 0; i < powerStr.length(); i++) {
+            char c = powerStr.charAt(i);
+            if (c >= '0' && c <= '9') nums.append(c);
+        }
         try {
-            String nums = powerStr.replaceAll("[^0-9]", "");
-            return nums.isEmpty() ? null : Integer.parseInt(nums);
+            return nums.isEmpty() ? null : Integer.parseInt(nums.toString());
         } catch (NumberFormatException e) { return null; }
     }
 
-    // ... (Métodos de KML, GeoTools y RabbitMQ se mantienen igual que en la versión anterior) ...
-    // Solo pego los necesarios para que compile completo si usas solo este bloque
-
-    private List<KmlPlacemark> parseKmlWithTable(File kmlFile) throws Exception {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        org.w3c.dom.Document doc;
-        try { doc = builder.parse(kmlFile); }
-        catch (org.xml.sax.SAXParseException e) {
-            try (FileInputStream fis = new FileInputStream(kmlFile);
-                 java.io.InputStreamReader isr = new java.io.InputStreamReader(fis, "ISO-8859-1")) {
-                org.xml.sax.InputSource is = new org.xml.sax.InputSource(isr);
-                doc = builder.parse(is);
+    // =================================================================================
+    // 🛠️ MÉTODOS AUXILIARES: KML
+    // =================================================================================
+
+    /**
+     * Destino de cada Placemark según la capa: puntos -> light-point-service (outbox),
+     * el resto -> {@link GeometrySink} (spatial_features o district_boundaries).
+     */
+    private class KmlImportHandler implements Consumer<KmlStreamReader.Placemark> {
+
+        private final MapLayer layer;
+        private final String businessTarget;
+        private final ImportCursor cursor;
+        private final GeometrySink sink;
+        private final OutboxBatch outbox;
+        private final String[] keyAttributes;
+        private int skipped;
+
+        KmlImportHandler(MapLayer layer, String businessTarget, int targetSrid, ImportCursor cursor) {
+            this.layer = layer;
+            this.businessTarget = businessTarget;
+            this.cursor = cursor;
+            boolean lightPoints = businessTarget.equals("LIGHT_POINT_SERVICE");
+            this.sink = lightPoints ? null : new GeometrySink(layer, businessTarget, targetSrid, cursor);
+            this.outbox = lightPoints ? new OutboxBatch(cursor) : null;
+            this.keyAttributes = parseKeyAttributes(layer);
+        }
+
+        @Override
+        public void accept(KmlStreamReader.Placemark pm) {
+            if (!cursor.next()) return;
+            if (sink != null) {
+                sink.add(featureKey(keyAttributes, pm::field, pm.getName()),
+                        pm.getName(), pm.getGeometry(), placemarkPropertiesJson(pm));
+                return;
+            }
+
+            if (!(pm.getGeometry() instanceof Point)) {
+                skipped++;
+                return;
+            }
+            outbox.add(buildLightPointDTO(pm));
+        }
+
+        /** Solo reporta omitidos: el último chunk lo confirma {@link ImportCursor#finish()}. */
+        void finish() {
+            if (sink != null) {
+                sink.finish();
+            } else if (skipped > 0) {
+                log.warn("⚠️ {} placemarks omitidos: geometría incompatible con la capa {} ({})",
+                        skipped, layer.getCode(), businessTarget);
             }
         }
-        NodeList placemarks = doc.getElementsByTagName("Placemark");
-        List<KmlPlacemark> result = new ArrayList<>();
-        for (int i = 0; i < placemarks.getLength(); i++) {
-            Element placemark = (Element) placemarks.item(i);
+    }
+
+    /**
+     * Acumula geometrías de archivos vectoriales (Shapefile, KML, GeoJSON) y las escribe en lotes
+     * con {@link SpatialBulkWriter}: polígonos de capas DISTRICTS -> district_boundaries,
+     * resto -> spatial_features.
+     * Reproyecta al SRID de la capa cuando la geometría viene en otro sistema
+     * (la transformación se resuelve una sola vez, con el primer SRID recibido).
+     *
+     * En modo INCREMENTAL carga el índice external_id -> (id, hash) de la capa y compara cada
+     * feature con su hash de contenido (SHA-256 de WKB + propiedades): solo escribe los nuevos y
+     * los que cambiaron; al terminar borra los que no vinieron en el archivo.
+     */
+    private class GeometrySink implements PendingChunk {
+
+        private final MapLayer layer;
+        private final ImportCursor cursor;
+        private final boolean districts;
+        private final int targetSrid;
+        /** Versión de la capa en la que se escribe: la activa, o la nueva en modo REPLACE. */
+        private final int layerVersion;
+        private MathTransform toLayerSrid;
+        private int sourceSrid = -1;
+
+        private final List<SpatialFeature> featureBuffer = new ArrayList<>();
+        private final List<DistrictBoundary> districtBuffer = new ArrayList<>();
+        private int skipped;
+
+        // Modo incremental (existing == null en APPEND)
+        private final Map<String, SpatialBulkWriter.ExistingFeature> existing;
+        private final List<SpatialBulkWriter.ExistingFeature> unmatched;
+        private final List<SpatialFeature> updateBuffer = new ArrayList<>();
+        private final List<UUID> deleteBuffer = new ArrayList<>();
+        private final WKBWriter wkb = new WKBWriter();
+        private final MessageDigest sha256;
+        private int inserted;
+        private int updated;
+        private int unchanged;
+
+        GeometrySink(MapLayer layer, String businessTarget, int targetSrid, ImportCursor cursor) {
+            this.layer = layer;
+            this.districts = businessTarget.equals("DISTRICTS");
+            this.targetSrid = targetSrid;
+            this.cursor = cursor;
+            this.layerVersion = isReplace(cursor.getJob())
+                    ? cursor.getJob().getTargetLayerVersion()
+                    : layer.getActiveVersion();
             try {
-                String name = getXmlTagValue("name", placemark);
-                String coordsStr = getXmlTagValue("coordinates", placemark);
-                if (coordsStr == null || coordsStr.isEmpty()) continue;
-                String[] coords = coordsStr.trim().split(",");
-                if (coords.length < 2) continue;
-                double lon = Double.parseDouble(coords[0].trim());
-                double lat = Double.parseDouble(coords[1].trim());
-                if (Math.abs(lat) > Math.abs(lon)) { double temp = lat; lat = lon; lon = temp; }
-                KmlPlacemark pm = new KmlPlacemark(name, lon, lat);
-                String desc = getXmlTagValue("description", placemark);
-                if (desc != null) parseTableData(desc, pm);
-                result.add(pm);
-            } catch (Exception e) {}
-        }
-        return result;
-    }
-
-    private void parseTableData(String html, KmlPlacemark pm) {
-        try {
-            pm.idLampada = extractTableValue(html, "ID DA LÂMPADA");
-            pm.tipoLampada = extractTableValue(html, "TIPO_LÂMPADA_DA");
-            pm.municipio = extractTableValue(html, "MUNICIPIO");
-            pm.nomeLogradouro = extractTableValue(html, "NOME_LOGRADOURO");
-            pm.nomeBairro = extractTableValue(html, "NOME_BAIRRO");
-            pm.nomeMunicipio = extractTableValue(html, "NOME_MUNICIPIO");
-            pm.potenciaLampada = extractTableValue(html, "POTÊNCIA DA LÂMPADA SUBSTITUÍDA");
-            pm.tipoLampadaInstalada = extractTableValue(html, "TIPO DE LÂMPADA INSTALADA");
-        } catch (Exception e) {}
-    }
-
-    private String extractTableValue(String html, String fieldName) {
-        try {
-            String pattern = "<td[^>]*>" + fieldName + "</td>\\s*<td[^>]*>([^<]*)</td>";
-            Pattern p = Pattern.compile(pattern, Pattern.CASE_INSENSITIVE);
-            Matcher m = p.matcher(html);
-            if (m.find()) {
-                String val = m.group(1).trim();
-                return (val.isEmpty() || "null".equalsIgnoreCase(val)) ? null : val;
+                this.sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            if (!districts && isIncremental(cursor.getJob())) {
+                SpatialBulkWriter.FeatureIndex index = bulkWriter.loadFeatureIndex(layer.getId(), layerVersion);
+                this.existing = index.byKey();
+                this.unmatched = index.unmatched();
+                log.info("🔄 Import incremental sobre {}: {} features existentes", layer.getCode(),
+                        existing.size() + unmatched.size());
+            } else {
+                this.existing = null;
+                this.unmatched = null;
+            }
+            cursor.track(this);
+        }
+
+        void add(String externalId, String name, Geometry source, String propertiesJson) {
+            Geometry geom = reproject(source);
+
+            if (districts) {
+                if (!(geom instanceof Polygon) && !(geom instanceof MultiPolygon)) {
+                    skipped++;
+                    return;
+                }
+                districtBuffer.add(DistrictBoundary.builder()
+                        .code(externalId)
+                        .name(name != null ? name : "Unnamed")
+                        .geom(geom)
+                        .area(geom.getArea())
+                        .build());
+                cursor.touched(geom.getEnvelopeInternal(), targetSrid);
+                if (districtBuffer.size() >= bulkWriter.getChunkSize()) cursor.commit();
+            } else {
+                SpatialFeature feature = SpatialFeature.builder()
+                        .layer(layer)
+                        .layerVersion(layerVersion)
+                        .externalId(externalId)
+                        .geom(geom)
+                        .properties(propertiesJson)
+                        .contentHash(contentHash(geom, propertiesJson))
+                        .build();
+                if (existing == null) {
+                    featureBuffer.add(feature);
+                    cursor.touched(geom.getEnvelopeInternal(), targetSrid);
+                } else {
+                    sync(feature);
+                }
+                if (featureBuffer.size() + updateBuffer.size() >= bulkWriter.getChunkSize()) cursor.commit();
+            }
+        }
+
+        private void sync(SpatialFeature feature) {
+            SpatialBulkWriter.ExistingFeature current =
+                    feature.getExternalId() != null ? existing.remove(feature.getExternalId()) : null;
+            if (current == null) {
+                featureBuffer.add(feature);
+                cursor.touched(feature.getGeom().getEnvelopeInternal(), targetSrid);
+                inserted++;
+            } else if (!Arrays.equals(current.contentHash(), feature.getContentHash())) {
+                feature.setId(current.id());
+                updateBuffer.add(feature);
+                cursor.touched(feature.getGeom().getEnvelopeInternal(), targetSrid);
+                cursor.touched(current.envelope(), targetSrid);
+                updated++;
+            } else {
+                unchanged++;
+            }
+        }
+
+        @Override
+        public int drain() {
+            int written = bulkWriter.insertFeatures(featureBuffer)
+                    + bulkWriter.updateFeatures(updateBuffer)
+                    + bulkWriter.deleteFeatures(deleteBuffer)
+                    + bulkWriter.insertDistricts(districtBuffer);
+            featureBuffer.clear();
+            updateBuffer.clear();
+            deleteBuffer.clear();
+            districtBuffer.clear();
+            return written;
+        }
+
+        /** En modo incremental encola el borrado de lo que no vino: lo confirma {@link ImportCursor#finish()}. */
+        void finish() {
+            if (skipped > 0) {
+                log.warn("⚠️ {} geometrías omitidas: la capa {} solo admite polígonos", skipped, layer.getCode());
+            }
+            if (existing == null) return;
+
+            for (SpatialBulkWriter.ExistingFeature f : existing.values()) {
+                deleteBuffer.add(f.id());
+                cursor.touched(f.envelope(), targetSrid);
+            }
+            for (SpatialBulkWriter.ExistingFeature f : unmatched) {
+                deleteBuffer.add(f.id());
+                cursor.touched(f.envelope(), targetSrid);
+            }
+            int deleted = deleteBuffer.size();
+            existing.clear();
+            unmatched.clear();
+
+            ImportJob job = cursor.getJob();
+            job.setRowsInserted(inserted);
+            job.setRowsUpdated(updated);
+            job.setRowsDeleted(deleted);
+            log.info("🔄 Import incremental {}: {} nuevos, {} modificados, {} borrados, {} sin cambios",
+                    layer.getCode(), inserted, updated, deleted, unchanged);
+        }
+
+        private byte[] contentHash(Geometry geom, String propertiesJson) {
+            sha256.update(wkb.write(geom));
+            sha256.update((byte) 0);
+            if (propertiesJson != null) sha256.update(propertiesJson.getBytes(StandardCharsets.UTF_8));
+            return sha256.digest();
+        }
+
+        private Geometry reproject(Geometry geom) {
+            if (sourceSrid < 0) {
+                sourceSrid = geom.getSRID();
+                if (sourceSrid != 0 && sourceSrid != targetSrid) {
+                    toLayerSrid = coordinateService.findTransform(sourceSrid, targetSrid);
+                }
+            }
+            if (toLayerSrid == null) {
+                geom.setSRID(targetSrid);
+                return geom;
+            }
+            try {
+                Geometry projected = JTS.transform(geom, toLayerSrid);
+                projected.setSRID(targetSrid);
+                return projected;
+            } catch (Exception e) {
+                throw new RuntimeException("Error reproyectando geometría: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    // =================================================================================
+    // 🛠️ MÉTODOS AUXILIARES: CHECKPOINTS
+    // =================================================================================
+
+    /** Registros acumulados en memoria que todavía no se confirmaron. */
+    private interface PendingChunk {
+        /** Escribe o publica lo acumulado y vacía el buffer. Devuelve la cantidad de registros. */
+        int drain();
+    }
+
+    /**
+     * Posición del import dentro del archivo de origen.
+     *
+     * Cada registro leído (fila, placemark o feature) avanza el cursor con {@link #next()};
+     * los que ya quedaron confirmados en un intento anterior se saltean sin escribirse.
+     * {@link #commit()} vacía todos los buffers registrados y guarda el checkpoint en el job
+     * dentro de una misma transacción: si el proceso se cae, el broker reentrega el mensaje
+     * y solo se repite el chunk que no llegó a confirmarse.
+     */
+    private class ImportCursor {
+
+        private final ImportJob job;
+        private final int resumeFrom;
+        private final List<PendingChunk> chunks = new ArrayList<>();
+        private int position;
+        /** Zona de la capa que tocó este intento (altas, modificaciones y bajas), en {@link #changedSrid}. */
+        private final Envelope changed = new Envelope();
+        private int changedSrid;
+
+        ImportCursor(ImportJob job) {
+            this.job = job;
+            // Un import incremental se recorre siempre completo (los borrados dependen de ver todo
+            // el archivo); lo ya confirmado en un intento anterior queda "sin cambios" y no se reescribe
+            boolean resuming = !isIncremental(job) && "PROCESSING".equals(job.getStatus())
+                    && job.getCheckpointOffset() != null && job.getCheckpointOffset() > 0;
+            if (!resuming) {
+                job.setCheckpointOffset(0);
+                job.setCheckpointWritten(0);
+            } else if (job.getCheckpointWritten() == null) {
+                job.setCheckpointWritten(0);
+            }
+            this.resumeFrom = job.getCheckpointOffset();
+        }
+
+        boolean isResuming() {
+            return resumeFrom > 0;
+        }
+
+        int getResumeFrom() {
+            return resumeFrom;
+        }
+
+        /** Registros escritos o publicados hasta el último checkpoint (incluye intentos anteriores). */
+        int getWritten() {
+            return job.getCheckpointWritten();
+        }
+
+        void track(PendingChunk chunk) {
+            chunks.add(chunk);
+        }
+
+        void touched(Envelope envelope, int srid) {
+            if (envelope == null || envelope.isNull()) return;
+            changed.expandToInclude(envelope);
+            changedSrid = srid;
+        }
+
+        Envelope getChanged() {
+            return changed;
+        }
+
+        int getChangedSrid() {
+            return changedSrid;
+        }
+
+        /**
+         * Para lectores que descartan por su cuenta los registros ya confirmados:
+         * deja el cursor al final de ellos y devuelve cuántos hay que descartar.
+         */
+        int skipConfirmed() {
+            position = resumeFrom;
+            return resumeFrom;
+        }
+
+        /** Avanza al siguiente registro del archivo. Devuelve false si ya estaba confirmado. */
+        boolean next() {
+            return ++position > resumeFrom;
+        }
+
+        void commit() {
+            int previousOffset = job.getCheckpointOffset();
+            int previousWritten = job.getCheckpointWritten();
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    int written = 0;
+                    for (PendingChunk chunk : chunks) written += chunk.drain();
+                    job.setCheckpointOffset(position);
+                    job.setCheckpointWritten(previousWritten + written);
+                    jobRepository.save(job);
+                    bulkWriter.touchLayerImport(job.getId());
+                });
+            } catch (RuntimeException e) {
+                // El job en memoria no debe quedar con un checkpoint que no se confirmó
+                job.setCheckpointOffset(previousOffset);
+                job.setCheckpointWritten(previousWritten);
+                throw e;
             }
-        } catch (Exception e) {}
+        }
+
+        ImportJob getJob() {
+            return job;
+        }
+
+        /** Confirma el último chunk y devuelve el total de registros escritos o publicados. */
+        int finish() {
+            commit();
+            return getWritten();
+        }
+    }
+
+    /**
+     * Puntos para light-point-service. No se publican desde el import: cada chunk los inserta en
+     * import_outbox junto con el checkpoint (misma transacción) y {@link OutboxRelay} los publica
+     * aparte. Un rollback no deja puntos publicados y el import nunca espera al broker.
+     */
+    private class OutboxBatch implements PendingChunk {
+
+        private final ImportCursor cursor;
+        private final List<String> payloads = new ArrayList<>();
+
+        OutboxBatch(ImportCursor cursor) {
+            this.cursor = cursor;
+            cursor.track(this);
+        }
+
+        void add(Map<String, Object> dto) {
+            addJson(batchPublisher.serialize(dto));
+        }
+
+        void addJson(String pointJson) {
+            payloads.add(pointJson);
+            if (payloads.size() >= bulkWriter.getChunkSize()) cursor.commit();
+        }
+
+        @Override
+        public int drain() {
+            int written = outboxRepository.append(cursor.getJob().getId(), payloads);
+            payloads.clear();
+            return written;
+        }
+    }
+
+    private String propertiesJson(Map<String, Object> properties) {
+        if (properties == null) return "{}";
+        try { return objectMapper.writeValueAsString(properties); } catch (Exception e) { return "{}"; }
+    }
+
+    /** Propiedad sin distinguir mayúsculas ("name", "Name", "NAME"). */
+    private String propertyAsString(Map<String, Object> properties, String key) {
+        if (properties == null) return null;
+        for (var entry : properties.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(key) && entry.getValue() != null) return entry.getValue().toString();
+        }
         return null;
     }
 
-    private Map<String, Object> buildLightPointDTO(KmlPlacemark pm) {
+    private String placemarkPropertiesJson(KmlStreamReader.Placemark pm) {
+        Map<String, Object> props = new LinkedHashMap<>();
+        if (pm.getName() != null) props.put("name", pm.getName());
+        props.putAll(pm.getFields());
+        try { return objectMapper.writeValueAsString(props); } catch (Exception e) { return "{}"; }
+    }
+
+    // Campos de la tabla de descripción de los KML municipales
+    private static final String KML_ID_LAMPADA = "ID DA LÂMPADA";
+    private static final String KML_TIPO_LAMPADA = "TIPO_LÂMPADA_DA";
+    private static final String KML_MUNICIPIO = "MUNICIPIO";
+    private static final String KML_NOME_LOGRADOURO = "NOME_LOGRADOURO";
+    private static final String KML_NOME_BAIRRO = "NOME_BAIRRO";
+    private static final String KML_NOME_MUNICIPIO = "NOME_MUNICIPIO";
+    private static final String KML_POTENCIA = "POTÊNCIA DA LÂMPADA SUBSTITUÍDA";
+    private static final String KML_TIPO_INSTALADA = "TIPO DE LÂMPADA INSTALADA";
+
+    private Map<String, Object> buildLightPointDTO(KmlStreamReader.Placemark pm) {
+        double lon = pm.getLon();
+        double lat = pm.getLat();
+        if (Math.abs(lat) > Math.abs(lon)) { double temp = lat; lat = lon; lon = temp; }
+
+        String logradouro = pm.field(KML_NOME_LOGRADOURO);
+        String bairro = pm.field(KML_NOME_BAIRRO);
+        String municipio = pm.field(KML_MUNICIPIO);
+        String nomeMunicipio = pm.field(KML_NOME_MUNICIPIO);
+        String idLampada = pm.field(KML_ID_LAMPADA);
+
         Map<String, Object> dto = new HashMap<>();
-        dto.put("code", pm.idLampada != null ? pm.idLampada : pm.name);
-        dto.put("address", buildAddress(pm));
-        dto.put("reference", pm.nomeLogradouro);
-        dto.put("district", pm.nomeBairro != null ? pm.nomeBairro : pm.municipio);
-        dto.put("city", pm.nomeMunicipio != null ? pm.nomeMunicipio : pm.municipio);
-        dto.put("wgsLat", pm.lat);
-        dto.put("wgsLon", pm.lon);
+        dto.put("code", idLampada != null ? idLampada : pm.getName());
+        dto.put("address", buildAddress(logradouro, bairro));
+        dto.put("reference", logradouro);
+        dto.put("district", bairro != null ? bairro : municipio);
+        dto.put("city", nomeMunicipio != null ? nomeMunicipio : municipio);
+        dto.put("wgsLat", lat);
+        dto.put("wgsLon", lon);
         dto.put("srid", 4326);
         Map<String, Object> component = new HashMap<>();
         component.put("type", "LAMPADA");
-        String tipo = pm.tipoLampadaInstalada != null ? pm.tipoLampadaInstalada : pm.tipoLampada;
+        String tipoInstalada = pm.field(KML_TIPO_INSTALADA);
+        String tipo = tipoInstalada != null ? tipoInstalada : pm.field(KML_TIPO_LAMPADA);
         component.put("model", tipo);
         component.put("lampManufacturer", extractManufacturer(tipo));
         component.put("lampType", extractManufacturer(tipo));
-        Integer power = parsePower(pm.potenciaLampada);
+        Integer power = parsePower(pm.field(KML_POTENCIA));
         if (power != null) component.put("lampPower", power);
         component.put("status", "FUNCIONAL");
         dto.put("components", List.of(component));
         return dto;
     }
 
-    private String buildAddress(KmlPlacemark pm) {
+    private String buildAddress(String logradouro, String bairro) {
         StringBuilder sb = new StringBuilder();
-        if (pm.nomeLogradouro != null) sb.append(pm.nomeLogradouro);
-        if (pm.nomeBairro != null) {
+        if (logradouro != null) sb.append(logradouro);
+        if (bairro != null) {
             if (sb.length() > 0) sb.append(", ");
-            sb.append(pm.nomeBairro);
+            sb.append(bairro);
         }
         return sb.length() > 0 ? sb.toString() : "Dirección no especificada";
     }
 
-    private void sendBatchToRabbitMQ(List<Map<String, Object>> batch) {
-        try { rabbitTemplate.convertAndSend(LIGHTPOINT_EXCHANGE, LIGHTPOINT_IMPORT_KEY, batch); }
-        catch (Exception e) { throw new RuntimeException("Error enviando batch", e); }
-    }
-
     private void completeJob(ImportJob job, int processed) {
         job.setStatus("COMPLETED");
         job.setRowsProcessed(processed);
@@ -548,44 +1072,185 @@ public class GisImportWorker {
         jobRepository.save(job);
     }
 
-    private void handleImportError(ImportJob job, Exception e) {
+    /**
+     * Cierre de los imports de capas. En modo REPLACE publica la versión cargada (un UPDATE de
+     * map_layers) y recién con el job completado borra la versión anterior, en tandas: las
+     * consultas pasan de la capa vieja entera a la nueva entera, sin ver nunca un estado intermedio.
+     */
+    private void completeLayerImport(ImportJob job, MapLayer layer, ImportCursor cursor, int processed) {
+        layerIndexCache.invalidate(layer.getCode());
+        if ("DISTRICTS".equalsIgnoreCase(layer.getBusinessTarget())) {
+            completeJob(job, processed);
+            reloadDistrictIndex();
+            invalidateTiles(layer, cursor, true);
+            return;
+        }
+        if (!isReplace(job)) {
+            completeJob(job, processed);
+            invalidateTiles(layer, cursor, false);
+            return;
+        }
+
+        int version = job.getTargetLayerVersion();
+        bulkWriter.activateLayerVersion(layer.getId(), version);
+        layerIndexCache.invalidate(layer.getCode());
+        completeJob(job, processed);
+        log.info("🔀 Capa {} publicada en la versión {}", layer.getCode(), version);
+        invalidateTiles(layer, cursor, false);
+
+        try {
+            int purged = bulkWriter.deleteStaleVersions(layer.getId(), version);
+            log.info("🧹 {} features de la versión reemplazada borrados", purged);
+        } catch (Exception e) {
+            // No afecta a las consultas (ya no ven esas filas); las borra el próximo REPLACE
+            log.warn("⚠️ No se pudo borrar la versión reemplazada de {}: {}", layer.getCode(), e.getMessage());
+        }
+    }
+
+    /**
+     * Descarta los vector tiles afectados por el import: los de la zona tocada, o todos si el
+     * import se retomó (no se conoce lo escrito en el intento anterior) o reemplazó la capa.
+     */
+    private void invalidateTiles(MapLayer layer, ImportCursor cursor, boolean districts) {
+        try {
+            boolean whole = cursor.isResuming() || isReplace(cursor.getJob());
+            if (districts) {
+                if (whole) vectorTileService.invalidateDistricts();
+                else vectorTileService.invalidateDistrictArea(cursor.getChanged(), cursor.getChangedSrid());
+            } else if (whole) {
+                vectorTileService.invalidateLayer(layer.getCode());
+            } else {
+                vectorTileService.invalidateLayerArea(layer.getCode(), cursor.getChanged(), cursor.getChangedSrid());
+            }
+        } catch (Exception e) {
+            // Los tiles viejos vencen solos (gis.tiles.cache.ttl-ms)
+            log.warn("⚠️ No se pudieron descartar los tiles de {}: {}", layer.getCode(), e.getMessage());
+        }
+    }
+
+    private void reloadDistrictIndex() {
+        try {
+            districtIndex.reload();
+        } catch (Exception e) {
+            // Lo toma el refresco periódico del índice
+            log.warn("⚠️ No se pudo recargar el índice de distritos: {}", e.getMessage());
+        }
+    }
+
+    private void handleImportError(ImportJob job, String layerCode, Exception e) {
         job.setStatus("FAILED");
         job.setErrorMessage(e.getMessage());
         job.setCompletedAt(LocalDateTime.now());
         jobRepository.save(job);
+        discardCachedLayer(job, layerCode);
+    }
+
+    /**
+     * Otro job tiene la capa tomada. Se rechaza sin tocar la capa ni sus caches: lo que haya
+     * escrito el otro import sigue siendo válido.
+     */
+    private void rejectConcurrentImport(ImportJob job, String layerCode) {
+        log.warn("⛔ Job {} rechazado: la capa {} ya tiene un import en curso", job.getId(), layerCode);
+        job.setStatus("FAILED");
+        job.setErrorMessage("La capa " + layerCode + " ya tiene un import en curso");
+        job.setCompletedAt(LocalDateTime.now());
+        jobRepository.save(job);
     }
 
-    private String getXmlTagValue(String tag, Element element) {
-        NodeList nodeList = element.getElementsByTagName(tag);
-        if (nodeList.getLength() > 0) {
-            Node node = nodeList.item(0);
-            if (node != null && node.getFirstChild() != null) return node.getFirstChild().getNodeValue();
+    /**
+     * Un APPEND o INCREMENTAL que falla deja confirmados los lotes ya escritos (el reintento sigue
+     * desde el checkpoint): el índice en memoria y los tiles de la capa ya no coinciden con la base.
+     * Un REPLACE fallido no publicó su versión, así que no hay nada que descartar.
+     */
+    private void discardCachedLayer(ImportJob job, String layerCode) {
+        if (isReplace(job)) return;
+        try {
+            layerIndexCache.invalidate(layerCode);
+            MapLayer layer = layerRepository.findByCode(layerCode).orElse(null);
+            if (layer != null && "DISTRICTS".equalsIgnoreCase(layer.getBusinessTarget())) {
+                reloadDistrictIndex();
+                vectorTileService.invalidateDistricts();
+            } else {
+                vectorTileService.invalidateLayer(layerCode);
+            }
+        } catch (Exception e) {
+            // Los tiles viejos vencen solos (gis.tiles.cache.ttl-ms)
+            log.warn("⚠️ No se pudieron descartar las cachés de {} tras el error: {}", layerCode, e.getMessage());
         }
-        return null;
     }
 
-    private Geometry ensureSRID(Geometry geom, int expectedSRID) {
-        try { geom.setSRID(expectedSRID); return geom; } catch (Exception e) { return geom; }
+    // =================================================================================
+    // 🛠️ MÉTODOS AUXILIARES: SHAPEFILE
+    // =================================================================================
+
+    /** Feature listo para escribir: {@code lightPointJson} va al outbox, el resto al {@link GeometrySink}. */
+    private record PreparedFeature(String externalId, String name, Geometry geom,
+                                   String propertiesJson, String lightPointJson) {}
+
+    /**
+     * Etapa de preparación del pipeline: corre en paralelo, no toca estado compartido.
+     * {@code mappingPlan} solo viene en capas LIGHT_POINT_SERVICE.
+     */
+    private PreparedFeature prepareShapefileFeature(SimpleFeature f, AttributeMappingPlan mappingPlan,
+                                                    String[] keyAttributes, boolean districts, int expectedSRID) {
+        Geometry geom = (Geometry) f.getDefaultGeometry();
+        if (geom == null) return null;
+        geom = ensureSRID(geom, expectedSRID);
+
+        if (mappingPlan != null && geom instanceof Point point) {
+            Map<String, Object> dto = mappingPlan.apply(f);
+            dto.put("sirgasX", point.getX());
+            dto.put("sirgasY", point.getY());
+            dto.put("srid", expectedSRID);
+            return new PreparedFeature(null, null, null, null, batchPublisher.serialize(dto));
+        }
+        String key = featureKey(keyAttributes, f::getAttribute, f.getID());
+        return new PreparedFeature(key, extractName(f), geom,
+                districts ? null : extractPropertiesJson(f), null);
     }
 
-    private void saveDistrict(SimpleFeature f, Geometry geom) {
-        DistrictBoundary d = DistrictBoundary.builder()
-                .code(f.getID())
-                .name(extractName(f))
-                .geom(geom)
-                .area(geom.getArea())
-                .build();
-        districtRepository.save(d);
+    private int pipelineThreads() {
+        return pipelineThreads > 0 ? pipelineThreads : Runtime.getRuntime().availableProcessors();
     }
 
-    private void saveSpatialFeature(SimpleFeature f, Geometry geom, MapLayer layer) {
-        SpatialFeature sf = SpatialFeature.builder()
-                .layer(layer)
-                .externalId(f.getID())
-                .geom(geom)
-                .properties(extractPropertiesJson(f))
-                .build();
-        featureRepository.save(sf);
+    private static Iterator<SimpleFeature> iterate(FeatureIterator<SimpleFeature> features) {
+        return new Iterator<>() {
+            @Override public boolean hasNext() { return features.hasNext(); }
+            @Override public SimpleFeature next() { return features.next(); }
+        };
+    }
+
+    private boolean isIncremental(ImportJob job) {
+        return "INCREMENTAL".equals(job.getImportMode());
+    }
+
+    private boolean isReplace(ImportJob job) {
+        return "REPLACE".equals(job.getImportMode());
+    }
+
+    /** {@code MapLayer.keyAttributes} ("ID_POSTE, CIRCUITO") -> arreglo, o null si no hay. */
+    private String[] parseKeyAttributes(MapLayer layer) {
+        if (layer.getKeyAttributes() == null || layer.getKeyAttributes().isBlank()) return null;
+        return Arrays.stream(layer.getKeyAttributes().split(","))
+                .map(String::trim)
+                .filter(a -> !a.isEmpty())
+                .toArray(String[]::new);
+    }
+
+    /** Clave de negocio del feature: los atributos configurados en la capa, o el id propio del archivo. */
+    private String featureKey(String[] keyAttributes, Function<String, Object> attribute, String fallback) {
+        if (keyAttributes == null) return fallback;
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < keyAttributes.length; i++) {
+            if (i > 0) key.append('|');
+            Object value = attribute.apply(keyAttributes[i]);
+            if (value != null) key.append(value);
+        }
+        return key.toString();
+    }
+
+    private Geometry ensureSRID(Geometry geom, int expectedSRID) {
+        try { geom.setSRID(expectedSRID); return geom; } catch (Exception e) { return geom; }
     }
 
     private String extractName(SimpleFeature f) {
@@ -603,31 +1268,4 @@ public class GisImportWorker {
         }
         try { return objectMapper.writeValueAsString(props); } catch (Exception e) { return "{}"; }
     }
-
-    private Map<String, Object> mapAttributes(SimpleFeature f, String mappingJson) {
-        Map<String, Object> dto = new HashMap<>();
-        try {
-            if (mappingJson != null && !mappingJson.isBlank()) {
-                Map<String, String> mapping = objectMapper.readValue(mappingJson, Map.class);
-                for (var entry : mapping.entrySet()) {
-                    Object value = f.getAttribute(entry.getKey());
-                    if (value != null) dto.put(entry.getValue(), value);
-                }
-            } else {
-                dto.put("code", f.getID());
-            }
-        } catch (Exception e) { /* ignore */ }
-        return dto;
-    }
-
-    private static class KmlPlacemark {
-        String name;
-        double lon; double lat;
-        String idLampada; String tipoLampada; String municipio;
-        Integer qtdLampadas; String nomeLogradouro; String nomeBairro; String nomeMunicipio;
-        String potenciaLampada; String tipoLampadaInstalada;
-        KmlPlacemark(String name, double lon, double lat) {
-            this.name = name; this.lon = lon; this.lat = lat; this.qtdLampadas = 1;
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,101 @@
+package com.ogt.gis.worker;
+
+import com.ogt.gis.entity.ImportJob;
+import com.ogt.gis.repository.ImportJobRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Progreso de los imports hacia import_jobs, agrupado por tiempo.
+ *
+ * El worker informa el avance en cada fila; a la BD llega como mucho una actualización por
+ * intervalo ({@code gis.import.progress-interval-ms}), en su propia transacción corta
+ * (REQUIRES_NEW) para que la UI lo vea al instante aunque haya un chunk en curso.
+ * La velocidad es una media móvil exponencial de filas/seg entre escrituras, no el promedio
+ * acumulado desde el inicio: refleja el ritmo actual y no queda arrastrada por el arranque.
+ */
+@Component
+@Slf4j
+public class ImportProgressReporter {
+
+    /** Peso de la última muestra en la media móvil. */
+    private static final double SMOOTHING = 0.3;
+
+    private final ImportJobRepository jobRepository;
+    private final TransactionTemplate ownTransaction;
+    private final long intervalNanos;
+
+    public ImportProgressReporter(ImportJobRepository jobRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${gis.import.progress-interval-ms:1000}") long intervalMs) {
+        this.jobRepository = jobRepository;
+        this.ownTransaction = new TransactionTemplate(transactionManager);
+        this.ownTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.intervalNanos = intervalMs * 1_000_000L;
+    }
+
+    /** @param alreadyProcessed filas ya contadas (al reanudar un job) */
+    public Tracker track(ImportJob job, int alreadyProcessed) {
+        return new Tracker(job, alreadyProcessed);
+    }
+
+    /** Progreso de un import. No es thread-safe: lo usa solo el hilo del import. */
+    public class Tracker {
+
+        private final ImportJob job;
+        private long lastWriteNanos = System.nanoTime();
+        private int lastProcessed;
+        private Double rowsPerSecond;
+
+        private int processed;
+        private int total;
+        private int errors;
+        private boolean dirty;
+
+        private Tracker(ImportJob job, int alreadyProcessed) {
+            this.job = job;
+            this.lastProcessed = alreadyProcessed;
+            this.processed = alreadyProcessed;
+        }
+
+        /** Registra el avance; solo escribe si pasó el intervalo desde la última escritura. */
+        public void update(int processed, int total, int errors) {
+            this.processed = processed;
+            this.total = total;
+            this.errors = errors;
+            this.dirty = true;
+            if (System.nanoTime() - lastWriteNanos >= intervalNanos) flush();
+        }
+
+        /** Escribe el último avance registrado, haya pasado o no el intervalo. */
+        public void flush() {
+            if (!dirty) return;
+
+            long now = System.nanoTime();
+            double seconds = (now - lastWriteNanos) / 1e9;
+            if (seconds > 0) {
+                double sample = (processed - lastProcessed) / seconds;
+                rowsPerSecond = rowsPerSecond == null ? sample : SMOOTHING * sample + (1 - SMOOTHING) * rowsPerSecond;
+            }
+
+            job.updateProgress(processed, total, errors);
+            job.setProcessingSpeed(rowsPerSecond);
+            try {
+                ownTransaction.executeWithoutResult(status -> jobRepository.updateProgress(job.getId(),
+                        job.getRowsProcessed(), job.getTotalRows(), job.getRowsWithErrors(),
+                        job.getProgressPercentage(), job.getProcessingSpeed()));
+            } catch (Exception e) {
+                // El progreso es informativo: no debe cortar el import
+                log.warn("⚠️ No se pudo actualizar el progreso del job {}: {}", job.getId(), e.getMessage());
+            }
+
+            lastWriteNanos = now;
+            lastProcessed = processed;
+            dirty = false;
+        }
+    }
+}
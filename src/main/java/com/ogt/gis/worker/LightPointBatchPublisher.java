@@ -0,0 +1,270 @@
+package com.ogt.gis.worker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Publicación asíncrona de lotes de puntos hacia light-point-service
+ * ({@code ogt.lightpoint.events} / {@code lightpoint.import.batch}). La usa {@link OutboxRelay}.
+ *
+ * - Los lotes se cortan por tamaño en bytes del JSON ({@code gis.import.publish.max-batch-bytes}),
+ *   con un tope de registros, en lugar de un número fijo de puntos.
+ * - Cada lote se envía con publisher confirms correlacionados: el envío no espera la confirmación
+ *   y se sigue armando el próximo lote mientras el broker confirma, con una ventana acotada de
+ *   lotes sin confirmar ({@code gis.import.publish.max-in-flight}).
+ * - Opcionalmente el cuerpo va en gzip ({@code contentEncoding=gzip:UTF-8}, el formato que descomprime
+ *   {@code DelegatingDecompressingPostProcessor} del lado del consumidor).
+ *
+ * Requiere {@code spring.rabbitmq.publisher-confirm-type=correlated}; sin confirms cada envío se da
+ * por confirmado apenas sale.
+ */
+@Component
+@Slf4j
+public class LightPointBatchPublisher {
+
+    private static final String LIGHTPOINT_EXCHANGE = "ogt.lightpoint.events";
+    private static final String LIGHTPOINT_IMPORT_KEY = "lightpoint.import.batch";
+
+    /** Mismo header de tipo que pone Jackson2JsonMessageConverter al enviar una List. */
+    private static final String TYPE_ID_HEADER = "__TypeId__";
+
+    /** Mismo criterio que el converter de Rabbit (fechas como timestamp), no el ObjectMapper web. */
+    private static final ObjectMapper PAYLOAD_MAPPER = new ObjectMapper();
+
+    private final RabbitTemplate rabbitTemplate;
+    private final int maxBatchBytes;
+    private final int maxBatchItems;
+    private final int maxInFlight;
+    private final boolean gzip;
+    private final long confirmTimeoutMs;
+    private final boolean confirms;
+
+    public LightPointBatchPublisher(RabbitTemplate rabbitTemplate,
+                                    @Value("${gis.import.publish.max-batch-bytes:262144}") int maxBatchBytes,
+                                    @Value("${gis.import.publish.max-batch-items:1000}") int maxBatchItems,
+                                    @Value("${gis.import.publish.max-in-flight:8}") int maxInFlight,
+                                    @Value("${gis.import.publish.gzip:false}") boolean gzip,
+                                    @Value("${gis.import.publish.confirm-timeout-ms:30000}") long confirmTimeoutMs) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxBatchItems = maxBatchItems;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.gzip = gzip;
+        this.confirmTimeoutMs = confirmTimeoutMs;
+        this.confirms = rabbitTemplate.getConnectionFactory().isPublisherConfirms();
+        if (!confirms) {
+            log.warn("⚠️ Publisher confirms deshabilitados: los lotes de light-point se dan por confirmados al enviarse");
+        }
+    }
+
+    /** JSON de un punto, tal como viaja dentro del arreglo del lote. */
+    public String serialize(Map<String, Object> dto) {
+        try {
+            return PAYLOAD_MAPPER.writeValueAsString(dto);
+        } catch (IOException e) {
+            throw new RuntimeException("Error serializando punto para light-point-service", e);
+        }
+    }
+
+    public Session open(UUID jobId) {
+        return new Session(jobId);
+    }
+
+    /**
+     * Publicación de un job. {@link #add} y {@link #awaitConfirms} se llaman desde un solo hilo
+     * (el del relay); las confirmaciones llegan en hilos del cliente de Rabbit. Las métricas se
+     * acumulan durante toda la vida de la sesión.
+     */
+    public class Session {
+
+        private final UUID jobId;
+        private final Semaphore window = new Semaphore(maxInFlight);
+        private final List<CompletableFuture<?>> unconfirmed = new ArrayList<>();
+        private final AtomicReference<String> failure = new AtomicReference<>();
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private int bufferedItems;
+        private int recordsSinceSync;
+
+        // Métricas (las de confirmación se actualizan desde los hilos de Rabbit)
+        private long batches;
+        private long records;
+        private long payloadBytes;
+        private long wireBytes;
+        private long publishNanos;
+        private long maxPublishNanos;
+        private final AtomicLong confirmNanos = new AtomicLong();
+        private final AtomicLong maxConfirmNanos = new AtomicLong();
+        private final AtomicLong confirmed = new AtomicLong();
+
+        private Session(UUID jobId) {
+            this.jobId = jobId;
+        }
+
+        /** @param pointJson un punto ya serializado con {@link #serialize} */
+        public void add(String pointJson) {
+            byte[] json = pointJson.getBytes(StandardCharsets.UTF_8);
+
+            // "[" + items separados por "," + "]": mismo JSON que serializar la lista completa
+            if (bufferedItems > 0 && buffer.size() + json.length + 2 > maxBatchBytes) flush();
+            buffer.write(bufferedItems == 0 ? '[' : ',');
+            buffer.writeBytes(json);
+            bufferedItems++;
+            if (bufferedItems >= maxBatchItems) flush();
+        }
+
+        /** Lotes enviados desde la última {@link #awaitConfirms()}. */
+        public int unsyncedBatches() {
+            return unconfirmed.size();
+        }
+
+        /** Envía el lote parcial, si hay. */
+        public void flush() {
+            if (bufferedItems == 0) return;
+            buffer.write(']');
+            byte[] payload = buffer.toByteArray();
+            int items = bufferedItems;
+            buffer.reset();
+            bufferedItems = 0;
+            publish(payload, items);
+        }
+
+        /**
+         * Espera la confirmación de todo lo enviado. Devuelve los registros confirmados desde
+         * la llamada anterior; falla si el broker rechazó algún lote o no confirmó a tiempo.
+         */
+        public int awaitConfirms() {
+            try {
+                CompletableFuture.allOf(unconfirmed.toArray(new CompletableFuture[0]))
+                        .get(confirmTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                throw new RuntimeException("Rabbit no confirmó " + unconfirmed.size()
+                        + " lotes en " + confirmTimeoutMs + " ms", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrumpido esperando confirmaciones de Rabbit", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Error esperando confirmaciones de Rabbit", e.getCause());
+            }
+            unconfirmed.clear();
+            checkFailure();
+
+            int synced = recordsSinceSync;
+            recordsSinceSync = 0;
+            return synced;
+        }
+
+        /** Latencia de envío y demora de confirmación (ms) y volumen publicado. */
+        public Map<String, Object> metrics() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("batches", batches);
+            m.put("records", records);
+            m.put("payloadBytes", payloadBytes);
+            m.put("wireBytes", wireBytes);
+            m.put("gzip", gzip);
+            m.put("avgPublishMs", batches > 0 ? round(publishNanos / 1e6 / batches) : 0);
+            m.put("maxPublishMs", round(maxPublishNanos / 1e6));
+            long confirmedBatches = confirmed.get();
+            m.put("avgConfirmLagMs", confirmedBatches > 0 ? round(confirmNanos.get() / 1e6 / confirmedBatches) : 0);
+            m.put("maxConfirmLagMs", round(maxConfirmNanos.get() / 1e6));
+            return m;
+        }
+
+        private void publish(byte[] json, int items) {
+            checkFailure();
+            byte[] body = gzip ? compress(json) : json;
+
+            MessageProperties props = new MessageProperties();
+            props.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+            props.setContentEncoding(gzip ? "gzip:UTF-8" : "UTF-8");
+            props.setHeader(TYPE_ID_HEADER, ArrayList.class.getName());
+            Message message = new Message(body, props);
+
+            try {
+                // Sin confirmaciones (broker caído o canal perdido) la ventana no se libera: el lote
+                // falla y el outbox lo reintenta, en lugar de colgar el relay
+                if (!window.tryAcquire(confirmTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    throw new RuntimeException("Rabbit no confirmó ninguno de los " + maxInFlight
+                            + " lotes en vuelo en " + confirmTimeoutMs + " ms");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrumpido esperando lugar en la ventana de publicación", e);
+            }
+
+            long start = System.nanoTime();
+            CorrelationData correlation = new CorrelationData(jobId + ":" + batches);
+            try {
+                rabbitTemplate.send(LIGHTPOINT_EXCHANGE, LIGHTPOINT_IMPORT_KEY, message, correlation);
+            } catch (RuntimeException e) {
+                window.release();
+                throw new RuntimeException("Error enviando batch", e);
+            }
+            long sent = System.nanoTime();
+
+            if (confirms) {
+                unconfirmed.add(correlation.getFuture().whenComplete((confirm, ex) -> {
+                    window.release();
+                    recordConfirm(System.nanoTime() - start);
+                    if (ex != null) {
+                        failure.compareAndSet(null, ex.getMessage());
+                    } else if (!confirm.isAck()) {
+                        failure.compareAndSet(null, "lote " + correlation.getId() + " rechazado: " + confirm.getReason());
+                    }
+                }));
+            } else {
+                window.release();
+                recordConfirm(sent - start);
+                unconfirmed.add(CompletableFuture.completedFuture(null));
+            }
+
+            batches++;
+            records += items;
+            recordsSinceSync += items;
+            payloadBytes += json.length;
+            wireBytes += body.length;
+            publishNanos += sent - start;
+            maxPublishNanos = Math.max(maxPublishNanos, sent - start);
+        }
+
+        private void recordConfirm(long lagNanos) {
+            confirmed.incrementAndGet();
+            confirmNanos.addAndGet(lagNanos);
+            maxConfirmNanos.accumulateAndGet(lagNanos, Math::max);
+        }
+
+        private void checkFailure() {
+            String error = failure.get();
+            if (error != null) throw new RuntimeException("Rabbit rechazó la publicación: " + error);
+        }
+    }
+
+    private static byte[] compress(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(json);
+        } catch (IOException e) {
+            throw new RuntimeException("Error comprimiendo lote", e);
+        }
+        return out.toByteArray();
+    }
+
+    private static double round(double ms) {
+        return Math.round(ms * 100) / 100.0;
+    }
+}
@@ -0,0 +1,112 @@
+package com.ogt.gis.worker;
+
+import com.ogt.gis.entity.ImportJob;
+import com.ogt.gis.repository.ImportJobRepository;
+import com.ogt.gis.repository.ImportOutboxRepository;
+import com.ogt.gis.repository.ImportOutboxRepository.OutboxRow;
+import com.ogt.gis.util.StageMetricsJson;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/**
+ * Relay del outbox de imports: publica en Rabbit los puntos que el worker dejó en import_outbox.
+ *
+ * Cada corrida toma las filas más antiguas en lotes grandes ({@code gis.outbox.relay-batch-size}),
+ * las publica con {@link LightPointBatchPublisher}, espera los confirms y recién entonces las borra,
+ * todo en una transacción propia. Si algo falla las filas quedan y se reintentan en la próxima
+ * corrida (entrega al menos una vez). El import nunca espera al broker.
+ *
+ * Las métricas de publicación de cada job se acumulan mientras haya filas suyas y se guardan en
+ * {@code stage_metrics} ("publish") cuando el job terminó y su outbox quedó vacío.
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+
+    private final ImportOutboxRepository outbox;
+    private final ImportJobRepository jobRepository;
+    private final LightPointBatchPublisher publisher;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    /** Solo lo usa el hilo del scheduler (fixedDelay: no hay corridas superpuestas). */
+    private final Map<UUID, LightPointBatchPublisher.Session> sessions = new HashMap<>();
+
+    public OutboxRelay(ImportOutboxRepository outbox,
+                       ImportJobRepository jobRepository,
+                       LightPointBatchPublisher publisher,
+                       TransactionTemplate transactionTemplate,
+                       @Value("${gis.outbox.relay-batch-size:5000}") int batchSize) {
+        this.outbox = outbox;
+        this.jobRepository = jobRepository;
+        this.publisher = publisher;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${gis.outbox.relay-interval-ms:500}")
+    public void relay() {
+        try {
+            Integer drained;
+            do {
+                drained = transactionTemplate.execute(status -> drainOnce());
+            } while (drained != null && drained >= batchSize);
+        } catch (Exception e) {
+            log.error("❌ Error publicando el outbox de imports, se reintenta en la próxima corrida", e);
+        }
+        reportFinishedJobs();
+    }
+
+    private int drainOnce() {
+        List<OutboxRow> rows = outbox.claim(batchSize);
+        if (rows.isEmpty()) return 0;
+
+        Map<UUID, LightPointBatchPublisher.Session> touched = new LinkedHashMap<>();
+        try {
+            for (OutboxRow row : rows) {
+                LightPointBatchPublisher.Session session = touched.computeIfAbsent(row.jobId(),
+                        id -> sessions.computeIfAbsent(id, publisher::open));
+                session.add(row.payload());
+            }
+            for (LightPointBatchPublisher.Session session : touched.values()) session.flush();
+            for (LightPointBatchPublisher.Session session : touched.values()) session.awaitConfirms();
+        } catch (RuntimeException e) {
+            // Una sesión con un nack o confirms pendientes no se reutiliza
+            touched.keySet().forEach(sessions::remove);
+            throw e;
+        }
+
+        outbox.delete(rows);
+        log.debug("📤 Outbox: {} puntos publicados", rows.size());
+        return rows.size();
+    }
+
+    private void reportFinishedJobs() {
+        Iterator<Map.Entry<UUID, LightPointBatchPublisher.Session>> it = sessions.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<UUID, LightPointBatchPublisher.Session> entry = it.next();
+            try {
+                if (outbox.countByJob(entry.getKey()) > 0) continue;
+
+                ImportJob job = jobRepository.findById(entry.getKey()).orElse(null);
+                if (job != null) {
+                    if ("PENDING".equals(job.getStatus()) || "PROCESSING".equals(job.getStatus())) continue;
+
+                    Map<String, Object> metrics = entry.getValue().metrics();
+                    job.setStageMetrics(StageMetricsJson.merge(job.getStageMetrics(), Map.of("publish", metrics)));
+                    jobRepository.save(job);
+                    log.info("📤 Publicación a light-point-service del job {}: {}", job.getId(), metrics);
+                }
+                it.remove();
+            } catch (Exception e) {
+                log.warn("⚠️ No se pudieron guardar las métricas de publicación del job {}: {}",
+                        entry.getKey(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,6 @@
+-- Un solo import por capa a la vez: el worker que toma el job reclama la capa con su job_id.
+-- import_locked_at se renueva en cada checkpoint; un lock sin renovar pasado el timeout
+-- (pod caído) lo puede tomar otro job.
+
+ALTER TABLE map_layers ADD import_job_id UNIQUEIDENTIFIER NULL;
+ALTER TABLE map_layers ADD import_locked_at DATETIME2 NULL;
@@ -0,0 +1,4 @@
+-- Checkpoint de imports: permite confirmar en chunks y reanudar un job reentregado por el broker
+
+ALTER TABLE import_jobs ADD checkpoint_offset INT;
+ALTER TABLE import_jobs ADD checkpoint_written INT;
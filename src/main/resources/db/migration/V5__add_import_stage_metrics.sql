@@ -0,0 +1,3 @@
+-- Throughput por etapa (lectura / preparación / escritura) de los imports en pipeline
+
+ALTER TABLE import_jobs ADD stage_metrics NVARCHAR(MAX);
@@ -0,0 +1,15 @@
+------------------------------------------------------------
+-- OUTBOX DE IMPORTS
+-- Puntos destinados a light-point-service. El worker los inserta en la
+-- misma transacción que el checkpoint del job; un relay los publica en
+-- Rabbit en lotes y los borra cuando el broker confirma.
+------------------------------------------------------------
+
+CREATE TABLE import_outbox (
+    id BIGINT IDENTITY(1,1) NOT NULL PRIMARY KEY,
+    job_id UNIQUEIDENTIFIER NOT NULL,
+    payload NVARCHAR(MAX) NOT NULL, -- JSON del punto
+    created_at DATETIME2 DEFAULT SYSUTCDATETIME()
+);
+
+CREATE INDEX ix_import_outbox_job ON import_outbox (job_id);
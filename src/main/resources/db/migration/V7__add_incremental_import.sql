@@ -0,0 +1,11 @@
+-- Imports incrementales: upsert por external_id + hash de contenido
+
+ALTER TABLE spatial_features ADD content_hash VARBINARY(32);
+CREATE INDEX ix_spatial_features_layer_external ON spatial_features (layer_id, external_id);
+
+ALTER TABLE map_layers ADD key_attributes NVARCHAR(500);
+
+ALTER TABLE import_jobs ADD import_mode NVARCHAR(20);
+ALTER TABLE import_jobs ADD rows_inserted INT;
+ALTER TABLE import_jobs ADD rows_updated INT;
+ALTER TABLE import_jobs ADD rows_deleted INT;
@@ -0,0 +1,9 @@
+-- Reemplazo atómico de capas: un import REPLACE carga los features en una versión nueva de la capa
+-- (invisible para las consultas) y la publica cambiando map_layers.active_version
+
+ALTER TABLE map_layers ADD active_version INT NOT NULL CONSTRAINT df_map_layers_active_version DEFAULT 0;
+
+ALTER TABLE spatial_features ADD layer_version INT NOT NULL CONSTRAINT df_spatial_features_layer_version DEFAULT 0;
+CREATE INDEX ix_spatial_features_layer_version ON spatial_features (layer_id, layer_version);
+
+ALTER TABLE import_jobs ADD target_layer_version INT;
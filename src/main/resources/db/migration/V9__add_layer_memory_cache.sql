@@ -0,0 +1,3 @@
+-- Capas de referencia servidas desde un índice espacial en memoria (opt-in por capa)
+
+ALTER TABLE map_layers ADD cache_in_memory BIT NOT NULL CONSTRAINT df_map_layers_cache_in_memory DEFAULT 0;
@@ -0,0 +1,30 @@
+package com.ogt.gis.entity;
+
+import jakarta.persistence.Column;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MapLayerTest {
+
+    /**
+     * Carrera edición / REPLACE: updateLayer lee la capa (versión N), el import publica N+1 con un
+     * UPDATE por JDBC y borra la versión N; si el save() de la edición escribiera active_version
+     * volvería a N y la capa quedaría vacía. La columna no debe ser escribible por JPA.
+     */
+    @Test
+    void activeVersionIsNeverWrittenByJpa() throws NoSuchFieldException {
+        Column column = MapLayer.class.getDeclaredField("activeVersion").getAnnotation(Column.class);
+
+        assertThat(column.name()).isEqualTo("active_version");
+        assertThat(column.updatable()).isFalse();
+        assertThat(column.insertable()).isFalse();
+    }
+
+    @Test
+    void newLayersStartAtVersionZeroLikeTheColumnDefault() {
+        MapLayer layer = MapLayer.builder().code("RISK_ZONES").name("Zonas de riesgo").build();
+
+        assertThat(layer.getActiveVersion()).isZero();
+    }
+}
@@ -0,0 +1,158 @@
+package com.ogt.gis.repository;
+
+import com.ogt.gis.entity.SpatialFeature;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.WKBWriter;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SpatialBulkWriterTest {
+
+    private static final UUID LAYER = UUID.randomUUID();
+
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+    private JdbcTemplate jdbcTemplate;
+    private SpatialBulkWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        writer = new SpatialBulkWriter(jdbcTemplate, 2);
+        ReflectionTestUtils.setField(writer, "entityManager", mock(EntityManager.class));
+    }
+
+    @Test
+    void featureIndexKeepsTheFirstFeatureOfEachKey() throws Exception {
+        UUID first = UUID.randomUUID();
+        UUID repeated = UUID.randomUUID();
+        UUID withoutKey = UUID.randomUUID();
+        byte[] envelope = new WKBWriter().write(geometryFactory.toGeometry(new Envelope(1, 3, 2, 4)));
+        ResultSet[] rows = {
+                row(first, "P-1", new byte[]{1}, envelope),
+                row(repeated, "P-1", new byte[]{2}, null),
+                row(withoutKey, null, new byte[]{3}, null)};
+        doAnswer(inv -> {
+            RowCallbackHandler handler = inv.getArgument(1);
+            for (ResultSet rs : rows) handler.processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), eq(LAYER.toString()), eq(3));
+
+        SpatialBulkWriter.FeatureIndex index = writer.loadFeatureIndex(LAYER, 3);
+
+        assertThat(index.byKey()).containsOnlyKeys("P-1");
+        SpatialBulkWriter.ExistingFeature kept = index.byKey().get("P-1");
+        assertThat(kept.id()).isEqualTo(first);
+        assertThat(kept.contentHash()).containsExactly(1);
+        assertThat(kept.envelope()).isEqualTo(new Envelope(1, 3, 2, 4));
+        // Ningún registro del archivo los reemplaza: el incremental los borra al terminar
+        assertThat(index.unmatched()).extracting(SpatialBulkWriter.ExistingFeature::id)
+                .containsExactly(repeated, withoutKey);
+        assertThat(index.unmatched().get(0).envelope()).isNull();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void updateRewritesGeometryPropertiesAndHashById() throws Exception {
+        UUID id = UUID.randomUUID();
+        SpatialFeature feature = SpatialFeature.builder()
+                .id(id)
+                .geom(geometryFactory.createPoint(new Coordinate(363000, 7754000)))
+                .properties("{\"A\":1}")
+                .contentHash(new byte[]{9, 9})
+                .build();
+        feature.getGeom().setSRID(31984);
+
+        assertThat(writer.updateFeatures(List.of(feature))).isEqualTo(1);
+
+        ArgumentCaptor<ParameterizedPreparedStatementSetter> setter = ArgumentCaptor.forClass(ParameterizedPreparedStatementSetter.class);
+        verify(jdbcTemplate).batchUpdate(contains("UPDATE spatial_features"), eq(List.of(feature)), eq(2), setter.capture());
+        PreparedStatement ps = mock(PreparedStatement.class);
+        setter.getValue().setValues(ps, feature);
+        verify(ps).setBytes(eq(1), any(byte[].class));
+        verify(ps).setInt(2, 31984);
+        verify(ps).setString(3, "{\"A\":1}");
+        verify(ps).setBytes(4, new byte[]{9, 9});
+        verify(ps).setString(5, id.toString());
+    }
+
+    @Test
+    void emptyBatchesDoNotTouchTheDatabase() {
+        assertThat(writer.updateFeatures(List.of())).isZero();
+        assertThat(writer.deleteFeatures(List.of())).isZero();
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void activationOnlyMovesTheLayerForward() {
+        when(jdbcTemplate.update(anyString(), eq(4), eq(LAYER.toString()), eq(4))).thenReturn(1, 0);
+
+        assertThat(writer.activateLayerVersion(LAYER, 4)).isTrue();
+        // Reentrega del job: la versión ya está publicada
+        assertThat(writer.activateLayerVersion(LAYER, 4)).isFalse();
+
+        verify(jdbcTemplate, times(2)).update(contains("active_version < ?"), eq(4), eq(LAYER.toString()), eq(4));
+    }
+
+    @Test
+    void staleVersionsAreDeletedInChunksUntilAShortOne() {
+        // chunkSize = 2
+        when(jdbcTemplate.update(contains("DELETE TOP (?)"), eq(2), eq(LAYER.toString()), eq(5))).thenReturn(2, 2, 1);
+
+        assertThat(writer.deleteStaleVersions(LAYER, 5)).isEqualTo(5);
+
+        verify(jdbcTemplate, times(3)).update(contains("layer_version < ?"), eq(2), eq(LAYER.toString()), eq(5));
+    }
+
+    @Test
+    void deleteVersionOnlyTargetsThatVersion() {
+        when(jdbcTemplate.update(contains("DELETE TOP (?)"), eq(2), eq(LAYER.toString()), eq(6))).thenReturn(1);
+
+        assertThat(writer.deleteVersion(LAYER, 6)).isEqualTo(1);
+
+        verify(jdbcTemplate).update(contains("layer_version = ?"), eq(2), eq(LAYER.toString()), eq(6));
+    }
+
+    @Test
+    void claimFailsWhileAnotherJobHoldsTheLayer() {
+        UUID job = UUID.randomUUID();
+        when(jdbcTemplate.update(contains("import_job_id = ?"), eq(job.toString()), eq(LAYER.toString()),
+                eq(job.toString()), eq(1800L))).thenReturn(0);
+
+        assertThat(writer.claimLayerImport(LAYER, job, 1_800_000)).isFalse();
+    }
+
+    @Test
+    void claimSucceedsWhenTheLayerIsFree() {
+        UUID job = UUID.randomUUID();
+        when(jdbcTemplate.update(contains("import_job_id IS NULL"), eq(job.toString()), eq(LAYER.toString()),
+                eq(job.toString()), eq(1800L))).thenReturn(1);
+
+        assertThat(writer.claimLayerImport(LAYER, job, 1_800_000)).isTrue();
+    }
+
+    private static ResultSet row(UUID id, String externalId, byte[] hash, byte[] envelope) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString("id")).thenReturn(id.toString());
+        when(rs.getString("external_id")).thenReturn(externalId);
+        when(rs.getBytes("content_hash")).thenReturn(hash);
+        when(rs.getBytes("envelope")).thenReturn(envelope);
+        return rs;
+    }
+}
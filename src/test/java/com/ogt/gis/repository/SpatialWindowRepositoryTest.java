@@ -0,0 +1,120 @@
+package com.ogt.gis.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SpatialWindowRepositoryTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private SpatialWindowRepository repository;
+    private Geometry window;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        repository = new SpatialWindowRepository(jdbcTemplate, 250, 50_000);
+        window = new GeometryFactory().toGeometry(new Envelope(0, 100, 0, 100));
+        window.setSRID(31984);
+    }
+
+    @Test
+    void firstPageIsOrderedByIdWithoutACursor() {
+        repository.findIntersecting("RIOS", window, null, 500);
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).query(sql.capture(), any(RowMapper.class),
+                eq(500), eq("RIOS"), any(byte[].class), eq(31984));
+        assertThat(sql.getValue())
+                .contains("SELECT TOP (?)", "f.layer_version = l.active_version", "STIntersects")
+                .doesNotContain("f.id > ?")
+                .endsWith("ORDER BY f.id");
+    }
+
+    @Test
+    void nextPageContinuesAfterTheLastId() {
+        UUID after = UUID.randomUUID();
+
+        repository.findIntersecting("RIOS", window, after, 500);
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).query(sql.capture(), any(RowMapper.class),
+                eq(500), eq("RIOS"), any(byte[].class), eq(31984), eq(after.toString()));
+        assertThat(sql.getValue()).contains("AND f.id > ? ORDER BY f.id");
+    }
+
+    @Test
+    void nearestDoublesTheRadiusUntilKResults() {
+        repository = new SpatialWindowRepository(jdbcTemplate, 250, 1000);
+        stubWithin(250.0, 1);
+        stubWithin(500.0, 3);
+
+        List<SpatialWindowRepository.FeatureRow> rows = repository.findNearest("POSTES", 363_000, 7_754_000, 31984, 3);
+
+        assertThat(rows).hasSize(3);
+        InOrder order = inOrder(jdbcTemplate);
+        verifyWithin(order, 250.0);
+        verifyWithin(order, 500.0);
+        verifyNoMoreInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void nearestFallsBackToAnUnboundedSearchPastTheMaxRadius() {
+        repository = new SpatialWindowRepository(jdbcTemplate, 250, 1000);
+        stubWithin(250.0, 0);
+        stubWithin(500.0, 1);
+        stubWithin(1000.0, 2);
+        when(jdbcTemplate.query(contains("IS NOT NULL"), any(RowMapper.class),
+                eq(3), eq(363_000.0), eq(7_754_000.0), eq(31984), eq("POSTES"),
+                eq(363_000.0), eq(7_754_000.0), eq(31984)))
+                .thenReturn(rows(3));
+
+        List<SpatialWindowRepository.FeatureRow> rows = repository.findNearest("POSTES", 363_000, 7_754_000, 31984, 3);
+
+        assertThat(rows).hasSize(3);
+        InOrder order = inOrder(jdbcTemplate);
+        verifyWithin(order, 250.0);
+        verifyWithin(order, 500.0);
+        verifyWithin(order, 1000.0);
+        order.verify(jdbcTemplate).query(contains("IS NOT NULL"), any(RowMapper.class),
+                eq(3), eq(363_000.0), eq(7_754_000.0), eq(31984), eq("POSTES"),
+                eq(363_000.0), eq(7_754_000.0), eq(31984));
+        verifyNoMoreInteractions(jdbcTemplate);
+    }
+
+    private void stubWithin(double radius, int found) {
+        when(jdbcTemplate.query(contains("<= ?"), any(RowMapper.class),
+                eq(3), eq(363_000.0), eq(7_754_000.0), eq(31984), eq("POSTES"),
+                eq(363_000.0), eq(7_754_000.0), eq(31984), eq(radius)))
+                .thenReturn(rows(found));
+    }
+
+    private void verifyWithin(InOrder order, double radius) {
+        order.verify(jdbcTemplate).query(contains("<= ?"), any(RowMapper.class),
+                eq(3), eq(363_000.0), eq(7_754_000.0), eq(31984), eq("POSTES"),
+                eq(363_000.0), eq(7_754_000.0), eq(31984), eq(radius));
+    }
+
+    private static List<Object> rows(int count) {
+        List<Object> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(new SpatialWindowRepository.FeatureRow(UUID.randomUUID(), "P-" + i, null,
+                    363_000 + i, 7_754_000, 31984, (double) i));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,97 @@
+package com.ogt.gis.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ogt.common.exception.BusinessException;
+import com.ogt.gis.dto.CoordinateBatchDTO;
+import com.ogt.gis.dto.CoordinateDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CoordinateBatchServiceTest {
+
+    private final CoordinateService coordinateService = new CoordinateService();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CoordinateBatchService service = new CoordinateBatchService(coordinateService, objectMapper);
+
+    @Test
+    void packedArraysOfDifferentLengthAreRejectedBeforeResponding() {
+        CoordinateBatchDTO batch = new CoordinateBatchDTO(new double[]{-40.3, -40.4}, new double[]{-20.3}, 4326);
+
+        assertThatThrownBy(() -> service.convertPacked(batch, 31984))
+                .isInstanceOf(BusinessException.class)
+                .hasMessageContaining("2 != 1");
+    }
+
+    @Test
+    void packedBatchWithUnknownSridIsRejectedBeforeResponding() {
+        CoordinateBatchDTO batch = new CoordinateBatchDTO(new double[]{-40.3}, new double[]{-20.3}, 999999);
+
+        assertThatThrownBy(() -> service.convertPacked(batch, 31984))
+                .hasMessageContaining("EPSG:999999");
+    }
+
+    @Test
+    void ndjsonErrorsAreAnsweredInBand() throws Exception {
+        String body = """
+                {"x": -40.3, "y": -20.3, "srid": 4326}
+                {"x": -40.3, "srid": 4326}
+                {"x": -40.4, "y": -20.4, "srid": 4326}
+                """;
+
+        List<String> lines = run(service.convertNdjson(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), 31984)).lines().toList();
+
+        assertThat(lines).hasSize(2);
+        JsonNode first = objectMapper.readTree(lines.get(0));
+        CoordinateDTO expected = coordinateService.convert(new CoordinateDTO(-40.3, -20.3, 4326), 31984);
+        assertThat(first.get("x").asDouble()).isEqualTo(expected.getX());
+        assertThat(first.get("y").asDouble()).isEqualTo(expected.getY());
+        assertThat(first.get("srid").asInt()).isEqualTo(31984);
+        assertThat(lines.get(1)).startsWith("{\"error\":\"Línea 2: ");
+    }
+
+    @Test
+    void ndjsonWithUnknownTargetSridIsRejectedBeforeResponding() {
+        assertThatThrownBy(() -> service.convertNdjson(new ByteArrayInputStream(new byte[0]), 999999))
+                .hasMessageContaining("EPSG:999999");
+    }
+
+    @Test
+    void parallelBlocksMatchThePerPointConversion() throws Exception {
+        // Dos bloques completos de 16.384 puntos y uno parcial
+        int points = 2 * 16_384 + 1_000;
+        double[] xs = new double[points];
+        double[] ys = new double[points];
+        Random random = new Random(7);
+        for (int i = 0; i < points; i++) {
+            xs[i] = -41.8 + random.nextDouble() * 3;
+            ys[i] = -21.3 + random.nextDouble() * 3;
+        }
+
+        JsonNode response = objectMapper.readTree(run(service.convertPacked(new CoordinateBatchDTO(xs, ys, 4326), 31984)));
+
+        assertThat(response.get("srid").asInt()).isEqualTo(31984);
+        assertThat(response.get("x").size()).isEqualTo(points);
+        for (int i = 0; i < points; i++) {
+            CoordinateDTO expected = coordinateService.convert(new CoordinateDTO(xs[i], ys[i], 4326), 31984);
+            assertThat(response.get("x").get(i).asDouble()).as("x[%d]", i).isEqualTo(expected.getX());
+            assertThat(response.get("y").get(i).asDouble()).as("y[%d]", i).isEqualTo(expected.getY());
+        }
+    }
+
+    private static String run(StreamingResponseBody body) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,18 @@
+package com.ogt.gis.service;
+
+import com.ogt.gis.entity.MapLayer;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CoordinateServiceTest {
+
+    private final CoordinateService coordinateService = new CoordinateService();
+
+    @Test
+    void layerWithoutSridIsStoredInTheDefaultZone() {
+        assertThat(coordinateService.layerStorageSrid(MapLayer.builder().srid(4326).build())).isEqualTo(4326);
+        // Zona del municipio (-40.3°): UTM 25S
+        assertThat(coordinateService.layerStorageSrid(MapLayer.builder().build())).isEqualTo(31985);
+    }
+}
@@ -0,0 +1,69 @@
+package com.ogt.gis.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ogt.gis.dto.CoordinateBatchDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalMatchers.eq;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.Mockito.*;
+
+class DistrictBatchServiceTest {
+
+    private final CoordinateService coordinateService = new CoordinateService();
+    private DistrictIndex districtIndex;
+    private DistrictBatchService service;
+
+    @BeforeEach
+    void setUp() {
+        districtIndex = mock(DistrictIndex.class);
+        when(districtIndex.findContaining(anyDouble(), anyDouble())).thenReturn(Optional.empty());
+        service = new DistrictBatchService(coordinateService, districtIndex, new ObjectMapper());
+    }
+
+    @Test
+    void pointsAreConvertedToTheSridOfTheLoadedDistricts() throws Exception {
+        when(districtIndex.getSrid()).thenReturn(31985);
+        DistrictIndex.District centro = new DistrictIndex.District(UUID.randomUUID(), "D01", "Centro", 0, null);
+        double[] xy = {-40.3, -20.3};
+        coordinateService.transform(4326, 31985, xy, 0, 1);
+        when(districtIndex.findContaining(eq(xy[0], 1e-6), eq(xy[1], 1e-6))).thenReturn(Optional.of(centro));
+
+        String json = run(service.locatePacked(new CoordinateBatchDTO(
+                new double[]{-40.3, -40.0}, new double[]{-20.3, -20.0}, 4326)));
+
+        assertThat(json).isEqualTo("{\"districts\":[{\"id\":\"" + centro.id()
+                + "\",\"code\":\"D01\",\"name\":\"Centro\"},null]}");
+    }
+
+    @Test
+    void withoutDistrictsEveryPointIsNull() throws Exception {
+        when(districtIndex.getSrid()).thenReturn(0);
+
+        String packed = run(service.locatePacked(new CoordinateBatchDTO(
+                new double[]{-40.3, -40.0}, new double[]{-20.3, -20.0}, 4326)));
+        String ndjson = run(service.locateNdjson(new ByteArrayInputStream("""
+                {"x": -40.3, "y": -20.3, "srid": 4326}
+                {"x": 350000, "y": 7750000, "srid": 31984}
+                """.getBytes(StandardCharsets.UTF_8))));
+
+        assertThat(packed).isEqualTo("{\"districts\":[null,null]}");
+        assertThat(ndjson).isEqualTo("null\nnull\n");
+        verify(districtIndex, never()).findContaining(anyDouble(), anyDouble());
+    }
+
+    private static String run(StreamingResponseBody body) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
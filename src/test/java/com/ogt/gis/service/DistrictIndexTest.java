@@ -0,0 +1,101 @@
+package com.ogt.gis.service;
+
+import com.ogt.gis.entity.DistrictBoundary;
+import com.ogt.gis.repository.DistrictBoundaryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.PrecisionModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class DistrictIndexTest {
+
+    private static final GeometryFactory UTM = new GeometryFactory(new PrecisionModel(), 31984);
+    private static final double X0 = 360_000;
+    private static final double Y0 = 7_750_000;
+    private static final double SIZE = 1_000;
+
+    private DistrictBoundaryRepository repository;
+    private DistrictIndex index;
+    private List<DistrictBoundary> districts;
+
+    @BeforeEach
+    void setUp() {
+        // Grilla de 3x3 distritos cuadrados que comparten bordes, más uno que pisa el centro
+        districts = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                districts.add(district("D" + i + j, X0 + i * SIZE, Y0 + j * SIZE, SIZE));
+            }
+        }
+        districts.add(district("SOLAPADO", X0 + 1_200, Y0 + 1_200, 600));
+
+        repository = mock(DistrictBoundaryRepository.class);
+        when(repository.findAll()).thenReturn(districts);
+        index = new DistrictIndex(repository);
+        index.reload();
+    }
+
+    @Test
+    void indexFindsTheSameDistrictAsALinearScan() {
+        List<Coordinate> points = new ArrayList<>();
+        Random random = new Random(42);
+        for (int k = 0; k < 2_000; k++) {
+            points.add(new Coordinate(X0 - 500 + random.nextDouble() * 4_000, Y0 - 500 + random.nextDouble() * 4_000));
+        }
+        // Bordes compartidos, un vértice común a cuatro distritos y puntos fuera de todos
+        points.add(new Coordinate(X0 + SIZE, Y0 + 500));
+        points.add(new Coordinate(X0 + 500, Y0 + 2 * SIZE));
+        points.add(new Coordinate(X0 + SIZE, Y0 + SIZE));
+        points.add(new Coordinate(X0 - 1, Y0 - 1));
+        points.add(new Coordinate(X0 + 10_000, Y0 + 10_000));
+
+        for (Coordinate c : points) {
+            assertThat(index.findContaining(c.x, c.y).map(DistrictIndex.District::code).orElse(null))
+                    .as("punto %s", c)
+                    .isEqualTo(linearScan(UTM.createPoint(c)));
+        }
+        assertThat(index.findContaining(X0 + 10_000, Y0 + 10_000)).isEmpty();
+        // Dentro de dos distritos: gana el primero cargado
+        assertThat(index.findContaining(X0 + 1_300, Y0 + 1_300).map(DistrictIndex.District::code)).contains("D11");
+        assertThat(index.getSrid()).isEqualTo(31984);
+    }
+
+    @Test
+    void failedRefreshKeepsThePreviousIndex() {
+        when(repository.findAll()).thenThrow(new RuntimeException("timeout"));
+
+        index.refresh();
+
+        assertThat(index.findContaining(X0 + 500, Y0 + 500).map(DistrictIndex.District::code)).contains("D00");
+        assertThat(index.inEnvelope(new Envelope(X0, X0 + 3 * SIZE, Y0, Y0 + 3 * SIZE))).hasSize(10);
+        assertThat(index.getSrid()).isEqualTo(31984);
+    }
+
+    /** Lo que hacía la consulta a la BD: el primer distrito, en orden de carga, que contiene el punto. */
+    private String linearScan(Point point) {
+        for (DistrictBoundary d : districts) {
+            if (d.getGeom().contains(point)) return d.getCode();
+        }
+        return null;
+    }
+
+    private static DistrictBoundary district(String code, double minX, double minY, double size) {
+        return DistrictBoundary.builder()
+                .id(UUID.randomUUID())
+                .code(code)
+                .name(code)
+                .geom(UTM.toGeometry(new Envelope(minX, minX + size, minY, minY + size)))
+                .build();
+    }
+}
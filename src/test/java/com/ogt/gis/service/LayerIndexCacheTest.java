@@ -0,0 +1,122 @@
+package com.ogt.gis.service;
+
+import com.ogt.gis.entity.MapLayer;
+import com.ogt.gis.repository.SpatialWindowRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.WKBWriter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class LayerIndexCacheTest {
+
+    private SpatialWindowRepository repository;
+    private LayerIndexCache cache;
+    private MapLayer layer;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(SpatialWindowRepository.class);
+        cache = new LayerIndexCache(repository, 1 << 20, 600_000);
+        layer = MapLayer.builder().code("POSTES").cacheInMemory(true).build();
+    }
+
+    @Test
+    void loadedIndexIsReused() {
+        assertThat(cache.get(layer)).isPresent();
+        assertThat(cache.get(layer)).isPresent();
+
+        verify(repository, times(1)).streamLayer(eq("POSTES"), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    void loadInvalidatedWhileRunningIsDiscarded() {
+        // El import termina (e invalida) mientras este request todavía está leyendo la capa
+        doAnswer(inv -> {
+            cache.invalidate("POSTES");
+            return null;
+        }).doNothing().when(repository).streamLayer(eq("POSTES"), any(RowCallbackHandler.class));
+
+        assertThat(cache.get(layer)).isEmpty();
+        assertThat(cache.get(layer)).isPresent();
+
+        verify(repository, times(2)).streamLayer(eq("POSTES"), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    void uuidOrderMatchesSqlServerUniqueidentifier() {
+        // De menor a mayor: SQL Server compara primero el último grupo y por último los 4 primeros bytes
+        List<UUID> expected = List.of(
+                UUID.fromString("00000000-0000-0000-0000-000000000000"),
+                UUID.fromString("01000000-0000-0000-0000-000000000000"),
+                UUID.fromString("00000001-0000-0000-0000-000000000000"),
+                UUID.fromString("00000000-0100-0000-0000-000000000000"),
+                UUID.fromString("00000000-0000-0000-0001-000000000000"),
+                UUID.fromString("00000000-0000-0000-0100-000000000000"),
+                UUID.fromString("00000000-0000-0000-0000-000000000001"),
+                UUID.fromString("00000000-0000-0000-0000-010000000000"));
+        List<UUID> sorted = new ArrayList<>(expected);
+        Collections.shuffle(sorted);
+
+        sorted.sort(LayerIndexCache.SQL_SERVER_UUID_ORDER);
+
+        assertThat(sorted).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void cachedWindowPagesLikeTheSqlKeyset() throws Exception {
+        GeometryFactory factory = new GeometryFactory();
+        List<ResultSet> rows = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            rows.add(row(UUID.randomUUID(), new WKBWriter().write(factory.createPoint(new Coordinate(i * 10, i * 10)))));
+        }
+        // Fuera de la ventana
+        rows.add(row(UUID.randomUUID(), new WKBWriter().write(factory.createPoint(new Coordinate(500, 500)))));
+        doAnswer(inv -> {
+            RowCallbackHandler handler = inv.getArgument(1);
+            for (ResultSet rs : rows) handler.processRow(rs);
+            return null;
+        }).when(repository).streamLayer(eq("POSTES"), any(RowCallbackHandler.class));
+        Geometry window = factory.toGeometry(new Envelope(-1, 100, -1, 100));
+
+        LayerIndexCache.LayerIndex index = cache.get(layer).orElseThrow();
+        List<LayerIndexCache.CachedFeature> first = index.intersecting(window, null, 3);
+        List<LayerIndexCache.CachedFeature> second = index.intersecting(window, first.get(2).id(), 3);
+
+        List<UUID> paged = new ArrayList<>();
+        first.forEach(f -> paged.add(f.id()));
+        second.forEach(f -> paged.add(f.id()));
+        assertThat(paged).hasSize(5).isSortedAccordingTo(LayerIndexCache.SQL_SERVER_UUID_ORDER);
+        assertThat(second).hasSize(2);
+    }
+
+    @Test
+    void layersWithoutCacheAreNotLoaded() {
+        MapLayer uncached = MapLayer.builder().code("RIOS").cacheInMemory(false).build();
+
+        assertThat(cache.get(uncached)).isEmpty();
+        verifyNoInteractions(repository);
+    }
+
+    private static ResultSet row(UUID id, byte[] wkb) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString("id")).thenReturn(id.toString());
+        when(rs.getInt("srid")).thenReturn(31984);
+        when(rs.getBytes("wkb")).thenReturn(wkb);
+        return rs;
+    }
+}
@@ -0,0 +1,93 @@
+package com.ogt.gis.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ogt.common.exception.BusinessException;
+import com.ogt.gis.dto.CoordinateBatchDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PointBatchTest {
+
+    private final CoordinateService coordinateService = new CoordinateService();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void ndjsonAnswersOneLinePerPointInOrder() throws Exception {
+        List<String> lines = run("""
+                {"x": 1.5, "y": 2.5, "srid": 4326}
+                {"x": 3, "y": 4, "srid": 4326}
+                """);
+
+        assertThat(lines).containsExactly("{\"x\":1.5,\"y\":2.5}", "{\"x\":3.0,\"y\":4.0}");
+    }
+
+    @Test
+    void invalidLineBecomesAnErrorRecordInItsPlace() throws Exception {
+        List<String> lines = run("""
+                {"x": 1, "y": 2, "srid": 4326}
+                {"x": 3, "srid": 4326}
+                {"x": 5, "y": 6, "srid": 4326}
+                """);
+
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0)).isEqualTo("{\"x\":1.0,\"y\":2.0}");
+        assertThat(lines.get(1)).startsWith("{\"error\":\"Línea 2: ");
+    }
+
+    @Test
+    void malformedJsonBecomesAnErrorRecord() throws Exception {
+        List<String> lines = run("""
+                {"x": 1, "y": 2, "srid": 4326}
+                {"x": 3, "y":
+                """);
+
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(1)).startsWith("{\"error\":\"Línea 2: JSON inválido");
+    }
+
+    @Test
+    void unknownSourceSridStopsAtItsLine() throws Exception {
+        List<String> lines = run("""
+                {"x": 1, "y": 2, "srid": 4326}
+                {"x": 3, "y": 4, "srid": 999999}
+                """);
+
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(1)).startsWith("{\"error\":\"Línea 2: no se puede convertir desde EPSG:999999");
+    }
+
+    @Test
+    void packedArraysOfDifferentLengthAreRejectedBeforeResponding() {
+        CoordinateBatchDTO batch = new CoordinateBatchDTO();
+        batch.setSrid(4326);
+        batch.setX(new double[]{1, 2});
+        batch.setY(new double[]{1});
+
+        assertThatThrownBy(() -> PointBatch.packed(batch, coordinateService, 4326))
+                .isInstanceOf(BusinessException.class);
+    }
+
+    /** Devuelve x/y sin convertir (mismo SRID) para ver solo la lectura y escritura. */
+    private List<String> run(String ndjson) throws Exception {
+        StreamingResponseBody body = PointBatch.ndjson("test",
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)),
+                objectMapper, coordinateService, 4326,
+                (xy, points) -> (i, json) -> {
+                    json.writeStartObject();
+                    json.writeNumberField("x", xy[2 * i]);
+                    json.writeNumberField("y", xy[2 * i + 1]);
+                    json.writeEndObject();
+                });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+        return out.toString(StandardCharsets.UTF_8).lines().toList();
+    }
+}
@@ -0,0 +1,78 @@
+package com.ogt.gis.service;
+
+import com.ogt.gis.dto.FeatureResponseDTO;
+import com.ogt.gis.repository.MapLayerRepository;
+import com.ogt.gis.repository.SpatialFeatureRepository;
+import com.ogt.gis.repository.SpatialWindowRepository;
+import com.ogt.gis.repository.SpatialWindowRepository.FeatureRow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SpatialQueryServiceTest {
+
+    private static final Map<String, Object> SQUARE = Map.of(
+            "type", "Polygon",
+            "coordinates", List.of(List.of(
+                    List.of(0, 0), List.of(0, 100), List.of(100, 100), List.of(100, 0), List.of(0, 0))));
+
+    private SpatialWindowRepository windowRepository;
+    private SpatialQueryService service;
+
+    @BeforeEach
+    void setUp() {
+        windowRepository = mock(SpatialWindowRepository.class);
+        service = new SpatialQueryService(mock(SpatialFeatureRepository.class), windowRepository,
+                mock(MapLayerRepository.class), mock(LayerIndexCache.class), mock(DistrictIndex.class),
+                mock(CoordinateService.class));
+    }
+
+    @Test
+    void fullPageReturnsTheCursorOfTheNextOne() {
+        List<FeatureRow> rows = rows(3);
+        when(windowRepository.findIntersecting(eq("RIOS"), any(), isNull(), eq(3))).thenReturn(rows);
+
+        SpatialQueryService.WithinPage page = service.findWithin(SQUARE, "RIOS", null, 2);
+
+        assertThat(page.features()).extracting(FeatureResponseDTO::getId)
+                .containsExactly(rows.get(0).id(), rows.get(1).id());
+        assertThat(page.nextAfter()).isEqualTo(rows.get(1).id());
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        when(windowRepository.findIntersecting(eq("RIOS"), any(), isNull(), eq(3))).thenReturn(rows(2));
+
+        SpatialQueryService.WithinPage page = service.findWithin(SQUARE, "RIOS", null, 2);
+
+        assertThat(page.features()).hasSize(2);
+        assertThat(page.nextAfter()).isNull();
+    }
+
+    @Test
+    void withoutLimitEveryPageIsRead() {
+        List<FeatureRow> first = rows(10_001);
+        UUID cursor = first.get(9_999).id();
+        when(windowRepository.findIntersecting(eq("RIOS"), any(), isNull(), eq(10_001))).thenReturn(first);
+        when(windowRepository.findIntersecting(eq("RIOS"), any(), eq(cursor), eq(10_001))).thenReturn(rows(5));
+
+        SpatialQueryService.WithinPage page = service.findWithin(SQUARE, "RIOS", null, null);
+
+        assertThat(page.features()).hasSize(10_005);
+        assertThat(page.nextAfter()).isNull();
+    }
+
+    private static List<FeatureRow> rows(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new FeatureRow(UUID.randomUUID(), "F" + i, null, i, i, 31984, null))
+                .toList();
+    }
+}
@@ -0,0 +1,120 @@
+package com.ogt.gis.service;
+
+import com.ogt.gis.service.TileCache.TileKey;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TileCacheTest {
+
+    private static final TileKey KEY = new TileKey("layer/POSTES", 0, 14, 6234, 9220);
+
+    @TempDir
+    Path directory;
+
+    private TileCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new TileCache(directory.toString(), 1 << 20, 1 << 20, 3_600_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.close();
+    }
+
+    @Test
+    void renderedTileIsCached() {
+        AtomicInteger renders = new AtomicInteger();
+
+        cache.get(KEY, () -> tile(renders.incrementAndGet()));
+        byte[] second = cache.get(KEY, () -> tile(renders.incrementAndGet()));
+
+        assertThat(renders).hasValue(1);
+        assertThat(second).containsExactly(1);
+    }
+
+    @Test
+    void tileRenderedDuringAnEvictionIsNotKept() {
+        AtomicInteger renders = new AtomicInteger();
+
+        // El import descarta la fuente mientras el tile se genera con los datos de antes
+        cache.get(KEY, () -> {
+            cache.evictAll(KEY.source());
+            return tile(renders.incrementAndGet());
+        });
+        byte[] fresh = cache.get(KEY, () -> tile(renders.incrementAndGet()));
+
+        assertThat(renders).hasValue(2);
+        assertThat(fresh).containsExactly(2);
+    }
+
+    @Test
+    void areaEvictionAlsoDropsTilesRenderingAtTheTime() {
+        AtomicInteger renders = new AtomicInteger();
+
+        cache.get(KEY, () -> {
+            cache.evict(KEY.source(), KEY.version(), (z, x, y) -> true);
+            return tile(renders.incrementAndGet());
+        });
+        cache.get(KEY, () -> tile(renders.incrementAndGet()));
+
+        assertThat(renders).hasValue(2);
+    }
+
+    @Test
+    void recordCutByAnInterruptedWriteIsTruncatedOnReopen() throws Exception {
+        TileKey other = new TileKey(KEY.source(), KEY.version(), 14, 6235, 9220);
+        cache.get(KEY, () -> tile(1));
+        cache.get(other, () -> tile(2));
+        cache.close();
+
+        Path file = tilesFile();
+        long complete = Files.size(file);
+        // Cabecera de un tile de 1000 bytes del que solo llegaron 5
+        ByteBuffer partial = ByteBuffer.allocate(25).putLong(42).putLong(System.currentTimeMillis()).putInt(1000);
+        Files.write(file, partial.array(), StandardOpenOption.APPEND);
+
+        cache = new TileCache(directory.toString(), 1 << 20, 1 << 20, 3_600_000);
+        AtomicInteger renders = new AtomicInteger();
+        byte[] first = cache.get(KEY, () -> tile(renders.incrementAndGet() + 10));
+        byte[] second = cache.get(other, () -> tile(renders.incrementAndGet() + 10));
+
+        assertThat(renders).hasValue(0);
+        assertThat(first).containsExactly(1);
+        assertThat(second).containsExactly(2);
+        assertThat(Files.size(file)).isEqualTo(complete);
+
+        // Lo que se agrega después del corte se vuelve a leer bien
+        TileKey third = new TileKey(KEY.source(), KEY.version(), 14, 6236, 9220);
+        cache.get(third, () -> tile(3));
+        cache.close();
+        cache = new TileCache(directory.toString(), 1 << 20, 1 << 20, 3_600_000);
+        assertThat(cache.get(third, () -> tile(renders.incrementAndGet() + 10))).containsExactly(3);
+        assertThat(renders).hasValue(0);
+    }
+
+    private Path tilesFile() throws Exception {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            List<Path> files = paths.filter(p -> p.toString().endsWith(".tiles")).toList();
+            assertThat(files).hasSize(1);
+            return files.get(0);
+        }
+    }
+
+    private static byte[] tile(int marker) {
+        return new byte[]{(byte) marker};
+    }
+}
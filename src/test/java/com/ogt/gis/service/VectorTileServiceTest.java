@@ -0,0 +1,71 @@
+package com.ogt.gis.service;
+
+import org.geotools.geometry.jts.JTS;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VectorTileServiceTest {
+
+    private static final double ORIGIN = 20037508.342789244;
+
+    private CoordinateService coordinateService;
+    private VectorTileService service;
+
+    @BeforeEach
+    void setUp() {
+        coordinateService = new CoordinateService();
+        service = new VectorTileService(null, null, null, null, null, coordinateService, null, 14, 1000);
+    }
+
+    @Test
+    void worldTileIsClampedToTheUtmZone() {
+        Envelope window = service.searchEnvelope(new Envelope(-ORIGIN, ORIGIN, -ORIGIN, ORIGIN), 31984);
+
+        assertThat(window).isNotNull();
+        assertThat(List.of(window.getMinX(), window.getMaxX(), window.getMinY(), window.getMaxY()))
+                .allMatch(Double::isFinite);
+        // Vitória en SIRGAS 2000 / UTM 24S
+        assertThat(window.contains(363_000, 7_754_000)).isTrue();
+        assertThat(window.getWidth()).isLessThan(3_000_000);
+    }
+
+    @Test
+    void tileOutsideTheUtmZoneHasNoWindow() {
+        // z=4, x=14, y=6: Japón
+        double size = 2 * ORIGIN / 16;
+        Envelope tile = new Envelope(-ORIGIN + 14 * size, -ORIGIN + 15 * size, ORIGIN - 7 * size, ORIGIN - 6 * size);
+
+        assertThat(service.searchEnvelope(tile, 31984)).isNull();
+    }
+
+    @Test
+    void lowZoomWindowCoversTheCurvedEdges() throws Exception {
+        // z=3, x=3, y=4: de 45°O a 0° y del ecuador a 41°S, contiene la zona 24S
+        double size = 2 * ORIGIN / 8;
+        Envelope tile = new Envelope(-ORIGIN + 3 * size, -ORIGIN + 4 * size, ORIGIN - 5 * size, ORIGIN - 4 * size);
+
+        Envelope window = service.searchEnvelope(tile, 31984);
+
+        assertThat(window).isNotNull();
+        // Entre dos puntos densificados la curva se aparta unos metros de la cuerda
+        window.expandBy(100);
+        var toUtm = coordinateService.findTransform(3857, 31984);
+        double minX = -42 / 180.0 * ORIGIN;
+        double maxX = -36 / 180.0 * ORIGIN;
+        for (int i = 0; i <= 20; i++) {
+            for (int j = 0; j <= 20; j++) {
+                Coordinate mercator = new Coordinate(
+                        minX + (maxX - minX) * i / 20,
+                        tile.getMinY() + tile.getHeight() * j / 20);
+                Coordinate utm = JTS.transform(mercator, null, toUtm);
+                assertThat(window.contains(utm)).as("punto %s dentro de %s", utm, window).isTrue();
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.ogt.gis.util;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExcelStreamReaderTest {
+
+    private static final double LONGITUDE = -40.312345678;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void xlsxNumbersArriveWithAllTheirDecimals() throws Exception {
+        Map<Integer, String[]> rows = read(write(new XSSFWorkbook(), "puntos.xlsx"));
+
+        assertThat(rows.get(1)).containsExactly("-40.312345678", "42", "Poste A", null, "7.5");
+    }
+
+    @Test
+    void xlsAndXlsxProduceTheSameRows() throws Exception {
+        Map<Integer, String[]> xlsx = read(write(new XSSFWorkbook(), "puntos.xlsx"));
+        Map<Integer, String[]> xls = read(write(new HSSFWorkbook(), "puntos.xls"));
+
+        assertThat(xls.keySet()).isEqualTo(xlsx.keySet());
+        xlsx.forEach((row, cells) -> assertThat(xls.get(row)).as("fila %d", row).containsExactly(cells));
+    }
+
+    @Test
+    void emptyRowsAreSkippedAndDimensionIsReported() throws Exception {
+        List<Integer> dimension = new ArrayList<>();
+        Map<Integer, String[]> rows = new TreeMap<>();
+        ExcelStreamReader.read(write(new XSSFWorkbook(), "puntos.xlsx"), new ExcelStreamReader.RowHandler() {
+            @Override
+            public void onSheetDimension(int lastRowIndex) {
+                dimension.add(lastRowIndex);
+            }
+
+            @Override
+            public void onRow(int rowIndex, String[] cells) {
+                rows.put(rowIndex, cells);
+            }
+        });
+
+        assertThat(dimension).containsExactly(4);
+        assertThat(rows.keySet()).containsExactly(0, 1, 4);
+    }
+
+    /**
+     * Encabezado, un punto con la coordenada en formato "0.00" (solo se ven dos decimales), una
+     * fila vacía en el medio y una fecha.
+     */
+    private File write(Workbook workbook, String name) throws Exception {
+        try (workbook) {
+            Sheet sheet = workbook.createSheet("Postes");
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("LONGITUD");
+            header.createCell(1).setCellValue("NUMERO");
+            header.createCell(2).setCellValue("NOMBRE");
+
+            CellStyle twoDecimals = workbook.createCellStyle();
+            twoDecimals.setDataFormat(workbook.createDataFormat().getFormat("0.00"));
+            Row point = sheet.createRow(1);
+            Cell longitude = point.createCell(0);
+            longitude.setCellValue(LONGITUDE);
+            longitude.setCellStyle(twoDecimals);
+            point.createCell(1).setCellValue(42);
+            point.createCell(2).setCellValue("Poste A");
+            point.createCell(4).setCellValue(7.5);
+
+            CellStyle date = workbook.createCellStyle();
+            date.setDataFormat(workbook.createDataFormat().getFormat("dd/mm/yyyy"));
+            Cell installed = sheet.createRow(4).createCell(0);
+            installed.setCellValue(new GregorianCalendar(2024, Calendar.MARCH, 5).getTime());
+            installed.setCellStyle(date);
+
+            File file = directory.resolve(name).toFile();
+            try (OutputStream out = new FileOutputStream(file)) {
+                workbook.write(out);
+            }
+            return file;
+        }
+    }
+
+    private static Map<Integer, String[]> read(File file) throws Exception {
+        Map<Integer, String[]> rows = new TreeMap<>();
+        ExcelStreamReader.read(file, rows::put);
+        return rows;
+    }
+}
@@ -0,0 +1,97 @@
+package com.ogt.gis.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.WKBWriter;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FeatureCollectionStreamTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final GeoJsonGeometryWriter geometryWriter = new GeoJsonGeometryWriter(7);
+    private final byte[] pointWkb = new WKBWriter().write(new GeometryFactory().createPoint(new Coordinate(-40.3, -20.3)));
+
+    @Test
+    void writesEveryRowAsAFeature() throws Exception {
+        ResultSet rs = row(pointWkb, "A1");
+        StreamingResponseBody body = FeatureCollectionStream.of("test", mapper, geometryWriter, handler -> {
+            try {
+                handler.processRow(rs);
+                handler.processRow(rs);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }, (r, json) -> json.writeStringField("code", r.getString("code")));
+
+        JsonNode collection = mapper.readTree(write(body));
+
+        assertThat(collection.get("type").asText()).isEqualTo("FeatureCollection");
+        assertThat(collection.get("features")).hasSize(2);
+        JsonNode feature = collection.get("features").get(0);
+        assertThat(feature.get("geometry").get("type").asText()).isEqualTo("Point");
+        assertThat(feature.get("properties").get("code").asText()).isEqualTo("A1");
+    }
+
+    @Test
+    void unreadableGeometryBecomesNull() throws Exception {
+        ResultSet rs = row(new byte[]{1, 2, 3}, "B2");
+        StreamingResponseBody body = FeatureCollectionStream.of("test", mapper, geometryWriter, handler -> {
+            try {
+                handler.processRow(rs);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }, (r, json) -> json.writeStringField("code", r.getString("code")));
+
+        JsonNode feature = mapper.readTree(write(body)).get("features").get(0);
+
+        assertThat(feature.get("geometry").isNull()).isTrue();
+    }
+
+    @Test
+    void failureMidStreamLeavesTheCollectionUnterminated() throws Exception {
+        ResultSet rs = row(pointWkb, "A1");
+        StreamingResponseBody body = FeatureCollectionStream.of("test", mapper, geometryWriter, handler -> {
+            try {
+                handler.processRow(rs);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            throw new DataAccessResourceFailureException("cursor cerrado");
+        }, (r, json) -> json.writeStringField("code", r.getString("code")));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThatThrownBy(() -> body.writeTo(out)).isInstanceOf(DataAccessResourceFailureException.class);
+
+        String partial = out.toString(StandardCharsets.UTF_8);
+        assertThat(partial).contains("\"A1\"").doesNotEndWith("]}");
+        assertThatThrownBy(() -> mapper.readTree(partial)).isInstanceOf(JsonProcessingException.class);
+    }
+
+    private ResultSet row(byte[] wkb, String code) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getBytes("wkb")).thenReturn(wkb);
+        when(rs.getString("code")).thenReturn(code);
+        return rs;
+    }
+
+    private static String write(StreamingResponseBody body) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
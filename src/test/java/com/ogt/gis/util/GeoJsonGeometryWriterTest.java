@@ -0,0 +1,93 @@
+package com.ogt.gis.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.geotools.geojson.geom.GeometryJSON;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.WKTReader;
+
+import java.io.StringWriter;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GeoJsonGeometryWriterTest {
+
+    private static final int DECIMALS = 6;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final GeoJsonGeometryWriter writer = new GeoJsonGeometryWriter(DECIMALS);
+
+    @Test
+    void matchesGeometryJsonForEveryType() throws Exception {
+        String[] wkts = {
+                "POINT (363123.4567891 7754321.1234567)",
+                "POINT Z (363123.25 7754321.5 12.125)",
+                "LINESTRING (0 0, 10.1234567 5.7654321, 20 -3)",
+                "POLYGON ((0 0, 100 0, 100 100, 0 100, 0 0), (20 20, 20 80, 80 80, 80 20, 20 20))",
+                "MULTIPOINT ((1 2), (3.3333333 4.4444444))",
+                "MULTILINESTRING ((0 0, 1 1), (2 2, 3 3, 4 5))",
+                "MULTIPOLYGON (((0 0, 10 0, 10 10, 0 0)), ((20 20, 30 20, 30 30, 20 20)))",
+                "GEOMETRYCOLLECTION (POINT (1 2), LINESTRING (0 0, 5 5))"
+        };
+        GeometryJSON reference = new GeometryJSON(DECIMALS);
+
+        for (String wkt : wkts) {
+            Geometry geom = new WKTReader().read(wkt);
+
+            JsonNode expected = objectMapper.readTree(reference.toString(geom));
+            JsonNode actual = objectMapper.readTree(write(writer, geom));
+
+            assertThat(actual.equals((a, b) -> a.isNumber() && b.isNumber()
+                            ? Double.compare(a.doubleValue(), b.doubleValue())
+                            : a.equals(b) ? 0 : 1, expected))
+                    .as("%s: %s != %s", wkt, actual, expected)
+                    .isTrue();
+        }
+    }
+
+    @Test
+    void coordinatesAreRoundedToTheConfiguredDecimals() throws Exception {
+        Geometry point = new WKTReader().read("POINT (1.23456789 -9.87654321)");
+
+        JsonNode coordinates = objectMapper.readTree(write(new GeoJsonGeometryWriter(3), point))
+                .get("coordinates");
+
+        assertThat(coordinates.get(0).doubleValue()).isEqualTo(1.235);
+        assertThat(coordinates.get(1).doubleValue()).isEqualTo(-9.877);
+    }
+
+    @Test
+    void linearRingIsWrittenAsLineString() throws Exception {
+        Geometry ring = new WKTReader().read("LINEARRING (0 0, 1 0, 1 1, 0 0)");
+
+        assertThat(objectMapper.readTree(write(writer, ring)).get("type").asText()).isEqualTo("LineString");
+    }
+
+    @Test
+    void moduleSerializesGeometriesInsideMaps() throws Exception {
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JtsGeoJsonModule(writer));
+        Geometry point = new WKTReader().read("POINT (1 2)");
+
+        JsonNode json = mapper.valueToTree(Map.of("geom", point));
+
+        assertThat(json.at("/geom/type").asText()).isEqualTo("Point");
+        assertThat(json.at("/geom/coordinates/1").doubleValue()).isEqualTo(2.0);
+    }
+
+    @Test
+    void invalidPrecisionIsRejected() {
+        assertThatThrownBy(() -> new GeoJsonGeometryWriter(16)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private String write(GeoJsonGeometryWriter geoJsonWriter, Geometry geom) throws Exception {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+            geoJsonWriter.write(geom, gen);
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,111 @@
+package com.ogt.gis.util;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.WKTReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GeoJsonStreamReaderTest {
+
+    @Test
+    void everyGeometryTypeMatchesTheNonStreamingParser() throws Exception {
+        List<String> geometries = List.of(
+                "{\"type\":\"Point\",\"coordinates\":[-40.31,-20.36,5]}",
+                "{\"type\":\"MultiPoint\",\"coordinates\":[[1,1],[2,2]]}",
+                "{\"type\":\"LineString\",\"coordinates\":[[1,1],[2,2],[3,1]]}",
+                "{\"type\":\"MultiLineString\",\"coordinates\":[[[1,1],[2,2]],[[3,3],[4,4]]]}",
+                "{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[10,0],[10,10],[0,10],[0,0]],[[2,2],[4,2],[4,4],[2,2]]]}",
+                "{\"type\":\"MultiPolygon\",\"coordinates\":[[[[0,0],[1,0],[1,1],[0,0]]],[[[5,5],[6,5],[6,6],[5,5]]]]}",
+                "{\"type\":\"GeometryCollection\",\"geometries\":[{\"type\":\"Point\",\"coordinates\":[1,2]},"
+                        + "{\"type\":\"LineString\",\"coordinates\":[[1,1],[2,2]]}]}");
+
+        for (String json : geometries) {
+            List<GeoJsonStreamReader.Feature> features = read(collection("{\"type\":\"Feature\",\"geometry\":" + json + "}"));
+            Geometry expected = GeoJSONHelper.geoJsonToGeometry(json);
+            assertThat(features).as(json).hasSize(1);
+            assertThat(features.get(0).getGeometry().equalsExact(expected)).as(json).isTrue();
+        }
+    }
+
+    @Test
+    void idAndPropertiesAreRead() throws Exception {
+        List<GeoJsonStreamReader.Feature> features = read(collection("""
+                {"type": "Feature", "id": 17, "properties": {"NAME": "Rio Doce", "TRECHO": 3, "ATIVO": true},
+                 "geometry": {"type": "Point", "coordinates": [1, 2]}}
+                """));
+
+        GeoJsonStreamReader.Feature feature = features.get(0);
+        assertThat(feature.getId()).isEqualTo("17");
+        assertThat(feature.getProperties()).containsExactlyInAnyOrderEntriesOf(
+                Map.of("NAME", "Rio Doce", "TRECHO", 3, "ATIVO", true));
+        assertThat(feature.getGeometry().getSRID()).isEqualTo(4326);
+    }
+
+    @Test
+    void typeAfterCoordinatesAndUnknownMembersAreAccepted() throws Exception {
+        List<GeoJsonStreamReader.Feature> features = read(collection("""
+                {"bbox": [0, 0, 1, 1], "geometry": {"coordinates": [[0, 0], [1, 1]], "extra": {"a": [1]}, "type": "LineString"},
+                 "type": "Feature"}
+                """));
+
+        assertThat(features.get(0).getGeometry()).isEqualTo(new WKTReader().read("LINESTRING (0 0, 1 1)"));
+    }
+
+    @Test
+    void crsMemberSetsTheSrid() throws Exception {
+        String json = """
+                {"type": "FeatureCollection",
+                 "crs": {"type": "name", "properties": {"name": "urn:ogc:def:crs:EPSG::31984"}},
+                 "features": [{"type": "Feature", "geometry": {"type": "Point", "coordinates": [363000, 7754000]}}]}
+                """;
+        List<GeoJsonStreamReader.Feature> features = new ArrayList<>();
+
+        int srid = GeoJsonStreamReader.read(stream(json), features::add);
+
+        assertThat(srid).isEqualTo(31984);
+        assertThat(features.get(0).getGeometry().getSRID()).isEqualTo(31984);
+    }
+
+    @Test
+    void invalidOrMissingGeometriesAreSkipped() throws Exception {
+        List<GeoJsonStreamReader.Feature> features = read(collection("""
+                {"type": "Feature", "geometry": null},
+                {"type": "Feature", "geometry": {"type": "Polygon", "coordinates": [[[0, 0], [1, 0], [1, 1]]]}},
+                {"type": "Feature", "geometry": {"type": "LineString", "coordinates": [[0, 0]]}},
+                {"type": "Feature", "geometry": {"type": "Point", "coordinates": [1, 2]}}
+                """));
+
+        assertThat(features).hasSize(1);
+    }
+
+    @Test
+    void unsupportedInputFails() {
+        assertThatThrownBy(() -> read("[1, 2, 3]")).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> read(collection("{\"type\":\"Feature\",\"geometry\":{\"type\":\"Circle\",\"coordinates\":[1,2]}}")))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Circle");
+    }
+
+    private static String collection(String features) {
+        return "{\"type\":\"FeatureCollection\",\"features\":[" + features + "]}";
+    }
+
+    private static List<GeoJsonStreamReader.Feature> read(String json) throws IOException {
+        List<GeoJsonStreamReader.Feature> features = new ArrayList<>();
+        GeoJsonStreamReader.read(stream(json), features::add);
+        return features;
+    }
+
+    private static ByteArrayInputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
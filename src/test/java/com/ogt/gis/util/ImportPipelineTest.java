@@ -0,0 +1,124 @@
+package com.ogt.gis.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImportPipelineTest {
+
+    @Test
+    void writerSeesRecordsInReadOrderDespiteUnevenPreparation() throws Exception {
+        ImportPipeline<Integer, Integer> pipeline = new ImportPipeline<>(4, 3, 2);
+        List<Integer> written = new ArrayList<>();
+
+        pipeline.run(range(100), 0, i -> {
+            sleep(ThreadLocalRandom.current().nextInt(3));
+            return i * 10;
+        }, written::add);
+
+        assertThat(written).containsExactlyElementsOf(IntStream.range(0, 100).map(i -> i * 10).boxed().toList());
+        assertThat(pipeline.metrics()).containsKeys("read", "prepare", "write");
+    }
+
+    @Test
+    void skippedRecordsAreNotPreparedAndNullsKeepTheirPosition() throws Exception {
+        ImportPipeline<Integer, String> pipeline = new ImportPipeline<>(2, 4, 2);
+        List<Integer> prepared = new ArrayList<>();
+        List<String> written = new ArrayList<>();
+
+        pipeline.run(range(10), 6, i -> {
+            synchronized (prepared) {
+                prepared.add(i);
+            }
+            return i % 2 == 0 ? null : "r" + i;
+        }, written::add);
+
+        assertThat(prepared).containsExactlyInAnyOrder(6, 7, 8, 9);
+        assertThat(written).containsExactly(null, "r7", null, "r9");
+    }
+
+    @Test
+    void preparationErrorStopsThePipeline() {
+        ImportPipeline<Integer, Integer> pipeline = new ImportPipeline<>(2, 2, 2);
+        List<Integer> written = new ArrayList<>();
+
+        assertThatThrownBy(() -> pipeline.run(range(1_000), 0, i -> {
+            if (i == 5) throw new IllegalStateException("registro 5 inválido");
+            return i;
+        }, written::add)).isInstanceOf(IllegalStateException.class).hasMessage("registro 5 inválido");
+
+        // Se escribió a lo sumo hasta el bloque anterior al que falló
+        assertThat(written).isSubsetOf(0, 1, 2, 3);
+    }
+
+    @Test
+    void readErrorSurfacesAfterWritingWhatWasRead() {
+        Iterator<Integer> failing = new Iterator<>() {
+            int next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == 4) throw new IllegalStateException("archivo cortado");
+                return true;
+            }
+
+            @Override
+            public Integer next() {
+                return next++;
+            }
+        };
+        List<Integer> written = new ArrayList<>();
+
+        assertThatThrownBy(() -> new ImportPipeline<Integer, Integer>(2, 2, 2).run(failing, 0, i -> i, written::add))
+                .hasMessage("archivo cortado");
+        assertThat(written).containsExactly(0, 1, 2, 3);
+    }
+
+    @Test
+    void boundedQueueHoldsTheReaderBack() throws Exception {
+        AtomicInteger read = new AtomicInteger();
+        Iterator<Integer> source = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return read.get() < 50;
+            }
+
+            @Override
+            public Integer next() {
+                return read.getAndIncrement();
+            }
+        };
+        int[] readWhenWritingFirst = new int[1];
+
+        new ImportPipeline<Integer, Integer>(1, 1, 1).run(source, 0, i -> i, i -> {
+            if (i == 0) {
+                sleep(200);
+                readWhenWritingFirst[0] = read.get();
+            }
+        });
+
+        // El bloque que se escribe + la cola (1) + el que el lector tiene listo para encolar
+        assertThat(readWhenWritingFirst[0]).isLessThanOrEqualTo(3);
+    }
+
+    private static Iterator<Integer> range(int count) {
+        return Arrays.asList(IntStream.range(0, count).boxed().toArray(Integer[]::new)).iterator();
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
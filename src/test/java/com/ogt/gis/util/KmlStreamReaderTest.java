@@ -0,0 +1,192 @@
+package com.ogt.gis.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.*;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KmlStreamReaderTest {
+
+    @Test
+    void placemarksArriveInOrderWithTheirDescriptionTable() throws Exception {
+        List<KmlStreamReader.Placemark> placemarks = read(kml("""
+                <Placemark>
+                  <name> Poste 1 </name>
+                  <description><![CDATA[<table><tr><td>ID_POSTE</td><td>P-001</td></tr>
+                    <tr><td>Circuito</td><td>C7</td></tr><tr><td>OBS</td><td>null</td></tr></table>]]></description>
+                  <Point><coordinates>-40.31,-20.36,0</coordinates></Point>
+                </Placemark>
+                <Placemark>
+                  <name>Poste 2</name>
+                  <Point><coordinates>-40.32,-20.37</coordinates></Point>
+                </Placemark>
+                """), StandardCharsets.UTF_8);
+
+        assertThat(placemarks).extracting(KmlStreamReader.Placemark::getName).containsExactly("Poste 1", "Poste 2");
+        KmlStreamReader.Placemark first = placemarks.get(0);
+        assertThat(first.getLon()).isEqualTo(-40.31);
+        assertThat(first.getLat()).isEqualTo(-20.36);
+        assertThat(first.field("id_poste")).isEqualTo("P-001");
+        assertThat(first.field("CIRCUITO")).isEqualTo("C7");
+        assertThat(first.field("OBS")).isNull();
+    }
+
+    @Test
+    void htmlDescriptionWithoutCdataIsStillReadable() throws Exception {
+        List<KmlStreamReader.Placemark> placemarks = read(kml("""
+                <Placemark>
+                  <description><table><tr><td>BAIRRO</td><td>Centro</td></tr></table></description>
+                  <Point><coordinates>-40.31,-20.36</coordinates></Point>
+                </Placemark>
+                """), StandardCharsets.UTF_8);
+
+        assertThat(placemarks.get(0).field("BAIRRO")).isEqualTo("Centro");
+    }
+
+    @Test
+    void placemarksWithoutGeometryAreSkipped() throws Exception {
+        List<KmlStreamReader.Placemark> placemarks = read(kml("""
+                <Placemark><name>Sin geometría</name></Placemark>
+                <Placemark><name>Vacío</name><Point><coordinates> </coordinates></Point></Placemark>
+                """), StandardCharsets.UTF_8);
+
+        assertThat(placemarks).isEmpty();
+    }
+
+    @Test
+    void latin1FileIsRetriedAsIso88591() throws Exception {
+        List<KmlStreamReader.Placemark> placemarks = read(kml("""
+                <Placemark>
+                  <name>Iluminação São José</name>
+                  <Point><coordinates>-40.31,-20.36</coordinates></Point>
+                </Placemark>
+                """), StandardCharsets.ISO_8859_1);
+
+        assertThat(placemarks).extracting(KmlStreamReader.Placemark::getName).containsExactly("Iluminação São José");
+    }
+
+    @Test
+    void malformedFileFails() {
+        byte[] broken = "<kml><Document><Placemark><name>Roto</name></Document></kml>".getBytes(StandardCharsets.UTF_8);
+
+        assertThatThrownBy(() -> KmlStreamReader.read(() -> new ByteArrayInputStream(broken), p -> { }))
+                .isInstanceOf(XMLStreamException.class);
+    }
+
+    @Test
+    void errorAfterTheFirstPlacemarkIsNotRetried() {
+        byte[] truncated = kml("""
+                <Placemark><Point><coordinates>-40.31,-20.36</coordinates></Point></Placemark>
+                <Placemark><name>Cortado
+                """).replace("</Document></kml>", "").getBytes(StandardCharsets.UTF_8);
+        List<KmlStreamReader.Placemark> placemarks = new ArrayList<>();
+
+        assertThatThrownBy(() -> KmlStreamReader.read(() -> new ByteArrayInputStream(truncated), placemarks::add))
+                .isInstanceOf(XMLStreamException.class);
+        assertThat(placemarks).hasSize(1);
+    }
+
+    @Test
+    void polygonKeepsItsHolesAndUnclosedRingsAreClosed() throws Exception {
+        List<KmlStreamReader.Placemark> placemarks = read(kml("""
+                <Placemark><Polygon>
+                  <outerBoundaryIs><LinearRing><coordinates>0,0 10,0 10,10 0,10</coordinates></LinearRing></outerBoundaryIs>
+                  <innerBoundaryIs><LinearRing><coordinates>2,2 4,2 4,4 2,4 2,2</coordinates></LinearRing></innerBoundaryIs>
+                </Polygon></Placemark>
+                """), StandardCharsets.UTF_8);
+
+        Polygon polygon = (Polygon) placemarks.get(0).getGeometry();
+        assertThat(polygon.getExteriorRing().isClosed()).isTrue();
+        assertThat(polygon.getNumInteriorRing()).isEqualTo(1);
+        assertThat(polygon.getArea()).isEqualTo(96.0);
+        assertThat(polygon.getSRID()).isEqualTo(4326);
+    }
+
+    @Test
+    void lineStringDropsAltitude() throws Exception {
+        List<KmlStreamReader.Placemark> placemarks = read(kml("""
+                <Placemark><LineString><coordinates>
+                  -40.31,-20.36,12 -40.32,-20.37,15
+                </coordinates></LineString></Placemark>
+                """), StandardCharsets.UTF_8);
+
+        LineString line = (LineString) placemarks.get(0).getGeometry();
+        assertThat(line.getNumPoints()).isEqualTo(2);
+        assertThat(Double.isNaN(line.getCoordinateN(1).getZ())).isTrue();
+    }
+
+    @Test
+    void multiGeometryBecomesMultiOrCollection() throws Exception {
+        List<KmlStreamReader.Placemark> placemarks = read(kml("""
+                <Placemark><MultiGeometry>
+                  <Point><coordinates>1,1</coordinates></Point>
+                  <Point><coordinates>2,2</coordinates></Point>
+                </MultiGeometry></Placemark>
+                <Placemark><MultiGeometry>
+                  <Point><coordinates>1,1</coordinates></Point>
+                  <gx:Track xmlns:gx="http://www.google.com/kml/ext/2.2"><gx:coord>1 1 0</gx:coord></gx:Track>
+                  <LineString><coordinates>1,1 2,2</coordinates></LineString>
+                </MultiGeometry></Placemark>
+                """), StandardCharsets.UTF_8);
+
+        assertThat(placemarks.get(0).getGeometry()).isInstanceOf(MultiPoint.class);
+        Geometry mixed = placemarks.get(1).getGeometry();
+        assertThat(mixed.getGeometryType()).isEqualTo("GeometryCollection");
+        assertThat(mixed.getNumGeometries()).isEqualTo(2);
+    }
+
+    @Test
+    void kmzIsReadFromItsFirstKmlEntry(@TempDir File directory) throws Exception {
+        File kmz = new File(directory, "postes.kmz");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(kmz))) {
+            zip.putNextEntry(new ZipEntry("files/icono.png"));
+            zip.write(new byte[]{1, 2, 3});
+            zip.putNextEntry(new ZipEntry("doc.kml"));
+            zip.write(kml("""
+                    <Placemark><name>Desde KMZ</name><Point><coordinates>-40.31,-20.36</coordinates></Point></Placemark>
+                    """).getBytes(StandardCharsets.UTF_8));
+        }
+        List<KmlStreamReader.Placemark> placemarks = new ArrayList<>();
+
+        KmlStreamReader.read(() -> KmlStreamReader.openKmz(kmz), placemarks::add);
+
+        assertThat(placemarks).extracting(KmlStreamReader.Placemark::getName).containsExactly("Desde KMZ");
+    }
+
+    @Test
+    void kmzWithoutKmlIsRejected(@TempDir File directory) throws Exception {
+        File kmz = new File(directory, "vacio.kmz");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(kmz))) {
+            zip.putNextEntry(new ZipEntry("leeme.txt"));
+            zip.write("nada".getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertThatThrownBy(() -> KmlStreamReader.openKmz(kmz)).isInstanceOf(IOException.class);
+    }
+
+    static String kml(String placemarks) {
+        return "<kml xmlns=\"http://www.opengis.net/kml/2.2\"><Document>" + placemarks + "</Document></kml>";
+    }
+
+    static List<KmlStreamReader.Placemark> read(String kml, Charset charset) throws Exception {
+        byte[] bytes = kml.getBytes(charset);
+        List<KmlStreamReader.Placemark> placemarks = new ArrayList<>();
+        int count = KmlStreamReader.read(() -> new ByteArrayInputStream(bytes), placemarks::add);
+        assertThat(count).isEqualTo(placemarks.size());
+        return placemarks;
+    }
+}
@@ -0,0 +1,154 @@
+package com.ogt.gis.util;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MvtEncoderTest {
+
+    private static final int MOVE_TO_1 = 1 | 1 << 3;
+    private static final int LINE_TO_1 = 2 | 1 << 3;
+    private static final int CLOSE_PATH = 7 | 1 << 3;
+
+    private final GeometryFactory factory = new GeometryFactory();
+
+    @Test
+    void pointIsZigzagEncoded() {
+        assertThat(commands(factory.createPoint(new Coordinate(25, 17))))
+                .containsExactly(MOVE_TO_1, 50, 34);
+    }
+
+    @Test
+    void deltasAreRelativeToThePreviousVertex() {
+        // (10,10) -> (5,20): dx = -5 -> 9, dy = +10 -> 20
+        assertThat(commands(factory.createLineString(coordinates(10, 10, 5, 20))))
+                .containsExactly(MOVE_TO_1, 20, 20, LINE_TO_1, 9, 20);
+    }
+
+    @Test
+    void cursorCarriesAcrossParts() {
+        var points = factory.createMultiPointFromCoords(coordinates(5, 5, 3, 8));
+
+        assertThat(commands(points)).containsExactly(1 | 2 << 3, 10, 10, 3, 6);
+    }
+
+    @Test
+    void ringsAreWoundAsTheSpecRequires() {
+        // Exterior y agujero con la orientación contraria a la de la spec (y hacia abajo)
+        LinearRing shell = factory.createLinearRing(coordinates(0, 0, 0, 100, 100, 100, 100, 0, 0, 0));
+        LinearRing hole = factory.createLinearRing(coordinates(20, 20, 80, 20, 80, 80, 20, 80, 20, 20));
+        Polygon polygon = factory.createPolygon(shell, new LinearRing[]{hole});
+
+        List<List<int[]>> rings = rings(commands(polygon));
+
+        assertThat(rings).hasSize(2);
+        // Sin el punto de cierre: lo reemplaza ClosePath
+        assertThat(rings.get(0)).hasSize(4);
+        assertThat(signedArea(rings.get(0))).isPositive();
+        assertThat(signedArea(rings.get(1))).isNegative();
+    }
+
+    @Test
+    void ringDegeneratedByRoundingIsDropped() {
+        Polygon tiny = factory.createPolygon(coordinates(0.1, 0.1, 0.3, 0.1, 0.3, 0.3, 0.1, 0.1));
+        MvtEncoder encoder = new MvtEncoder("test", 4096);
+
+        assertThat(encoder.addFeature(tiny, Map.of())).isFalse();
+        assertThat(encoder.encode()).isEmpty();
+    }
+
+    // ---------------------------------------------------------------------------------------
+
+    private static Coordinate[] coordinates(double... xy) {
+        Coordinate[] coordinates = new Coordinate[xy.length / 2];
+        for (int i = 0; i < coordinates.length; i++) coordinates[i] = new Coordinate(xy[2 * i], xy[2 * i + 1]);
+        return coordinates;
+    }
+
+    /** Comandos de geometría del único feature del tile. */
+    private static List<Integer> commands(Geometry geom) {
+        MvtEncoder encoder = new MvtEncoder("test", 4096);
+        assertThat(encoder.addFeature(geom, Map.of("id", 1))).isTrue();
+
+        byte[] layer = field(encoder.encode(), 3);
+        byte[] feature = field(layer, 2);
+        ByteArrayInputStream packed = new ByteArrayInputStream(field(feature, 4));
+        List<Integer> commands = new ArrayList<>();
+        while (packed.available() > 0) commands.add((int) varint(packed));
+        return commands;
+    }
+
+    /** Anillos en coordenadas absolutas, decodificados a partir de los comandos. */
+    private static List<List<int[]>> rings(List<Integer> commands) {
+        List<List<int[]>> rings = new ArrayList<>();
+        List<int[]> current = null;
+        int x = 0;
+        int y = 0;
+        for (int i = 0; i < commands.size(); ) {
+            int id = commands.get(i) & 0x7;
+            int count = commands.get(i) >>> 3;
+            i++;
+            if (id == 7) continue;
+            if (id == 1) rings.add(current = new ArrayList<>());
+            for (int c = 0; c < count; c++) {
+                x += unzigzag(commands.get(i++));
+                y += unzigzag(commands.get(i++));
+                current.add(new int[]{x, y});
+            }
+        }
+        assertThat(commands.get(commands.size() - 1)).isEqualTo(CLOSE_PATH);
+        return rings;
+    }
+
+    private static long signedArea(List<int[]> ring) {
+        long sum = 0;
+        for (int i = 0; i < ring.size(); i++) {
+            int[] a = ring.get(i);
+            int[] b = ring.get((i + 1) % ring.size());
+            sum += (long) a[0] * b[1] - (long) b[0] * a[1];
+        }
+        return sum;
+    }
+
+    private static int unzigzag(int n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    /** Primer campo length-delimited con ese número; los demás se saltean. */
+    private static byte[] field(byte[] message, int number) {
+        ByteArrayInputStream in = new ByteArrayInputStream(message);
+        while (in.available() > 0) {
+            long tag = varint(in);
+            switch ((int) (tag & 0x7)) {
+                case 0 -> varint(in);
+                case 1 -> in.skip(8);
+                case 2 -> {
+                    byte[] bytes = new byte[(int) varint(in)];
+                    in.read(bytes, 0, bytes.length);
+                    if (tag >>> 3 == number) return bytes;
+                }
+                default -> throw new IllegalStateException("wire type " + (tag & 0x7));
+            }
+        }
+        throw new IllegalStateException("sin campo " + number);
+    }
+
+    private static long varint(ByteArrayInputStream in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+    }
+}
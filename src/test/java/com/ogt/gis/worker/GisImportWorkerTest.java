@@ -0,0 +1,196 @@
+package com.ogt.gis.worker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ogt.gis.entity.ImportJob;
+import com.ogt.gis.entity.MapLayer;
+import com.ogt.gis.entity.SpatialFeature;
+import com.ogt.gis.repository.*;
+import com.ogt.gis.service.CoordinateService;
+import com.ogt.gis.service.DistrictIndex;
+import com.ogt.gis.service.LayerIndexCache;
+import com.ogt.gis.service.VectorTileService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class GisImportWorkerTest {
+
+    private static final UUID LAYER_ID = UUID.randomUUID();
+
+    @TempDir
+    Path dir;
+
+    private ImportJobRepository jobRepository;
+    private MapLayerRepository layerRepository;
+    private SpatialBulkWriter bulkWriter;
+    private GisImportWorker worker;
+    private MapLayer layer;
+    /** external_id de los features insertados, en orden. */
+    private final List<String> inserted = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jobRepository = mock(ImportJobRepository.class);
+        layerRepository = mock(MapLayerRepository.class);
+        bulkWriter = mock(SpatialBulkWriter.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        doAnswer(inv -> {
+            Consumer<TransactionStatus> action = inv.getArgument(0);
+            action.accept(mock(TransactionStatus.class));
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        layer = MapLayer.builder()
+                .id(LAYER_ID)
+                .code("ARBOLES")
+                .srid(4326)
+                .businessTarget("NONE")
+                .activeVersion(2)
+                .build();
+        when(layerRepository.findByCode("ARBOLES")).thenReturn(Optional.of(layer));
+        when(bulkWriter.getChunkSize()).thenReturn(2);
+        when(bulkWriter.claimLayerImport(eq(LAYER_ID), any(), anyLong())).thenReturn(true);
+        when(bulkWriter.insertFeatures(anyList())).thenAnswer(inv -> {
+            List<SpatialFeature> features = inv.getArgument(0);
+            features.forEach(f -> inserted.add(f.getExternalId()));
+            return features.size();
+        });
+
+        worker = new GisImportWorker(jobRepository, layerRepository, bulkWriter,
+                mock(LightPointBatchPublisher.class), mock(ImportOutboxRepository.class), new ObjectMapper(),
+                new CoordinateService(), mock(DistrictIndex.class), mock(LayerIndexCache.class),
+                mock(VectorTileService.class), transactionTemplate, mock(ImportProgressReporter.class));
+    }
+
+    @Test
+    void importIsRejectedWhileAnotherJobHoldsTheLayer() throws Exception {
+        ImportJob job = job("APPEND");
+        when(bulkWriter.claimLayerImport(eq(LAYER_ID), eq(job.getId()), anyLong())).thenReturn(false);
+
+        worker.processImport(job.getId() + ";ARBOLES");
+
+        assertThat(job.getStatus()).isEqualTo("FAILED");
+        assertThat(job.getErrorMessage()).contains("import en curso");
+        assertThat(inserted).isEmpty();
+        verify(bulkWriter, never()).releaseLayerImport(any(), any());
+    }
+
+    @Test
+    void layerIsReleasedAfterACompletedImport() throws Exception {
+        ImportJob job = job("APPEND");
+
+        worker.processImport(job.getId() + ";ARBOLES");
+
+        assertThat(job.getStatus()).isEqualTo("COMPLETED");
+        assertThat(inserted).containsExactly("f1", "f2", "f3", "f4", "f5");
+        verify(bulkWriter, atLeastOnce()).touchLayerImport(job.getId());
+        verify(bulkWriter).releaseLayerImport(LAYER_ID, job.getId());
+    }
+
+    @Test
+    void layerIsReleasedAfterAFailedImport() throws Exception {
+        ImportJob job = job("APPEND");
+        when(bulkWriter.insertFeatures(anyList())).thenThrow(new RuntimeException("sin conexión"));
+
+        worker.processImport(job.getId() + ";ARBOLES");
+
+        assertThat(job.getStatus()).isEqualTo("FAILED");
+        verify(bulkWriter).releaseLayerImport(LAYER_ID, job.getId());
+    }
+
+    @Test
+    void replaceOnlyPurgesReplacedVersionsAndItsOwnTarget() throws Exception {
+        ImportJob job = job("REPLACE");
+
+        worker.processImport(job.getId() + ";ARBOLES");
+
+        assertThat(job.getTargetLayerVersion()).isEqualTo(3);
+        verify(bulkWriter).deleteStaleVersions(LAYER_ID, 2);
+        verify(bulkWriter).deleteVersion(LAYER_ID, 3);
+        verify(bulkWriter).activateLayerVersion(LAYER_ID, 3);
+        verify(bulkWriter).deleteStaleVersions(LAYER_ID, 3);
+    }
+
+    @Test
+    void redeliveredJobSkipsTheCheckpointedRecordsAndKeepsItsCounters() throws Exception {
+        ImportJob job = job("APPEND");
+        LocalDateTime startedAt = LocalDateTime.of(2026, 1, 10, 8, 0);
+        job.setStatus("PROCESSING");
+        job.setStartedAt(startedAt);
+        job.setCheckpointOffset(3);
+        job.setCheckpointWritten(3);
+
+        worker.processImport(job.getId() + ";ARBOLES");
+
+        assertThat(inserted).containsExactly("f4", "f5");
+        assertThat(job.getStatus()).isEqualTo("COMPLETED");
+        assertThat(job.getStartedAt()).isEqualTo(startedAt);
+        assertThat(job.getCheckpointOffset()).isEqualTo(5);
+        assertThat(job.getCheckpointWritten()).isEqualTo(5);
+        assertThat(job.getRowsProcessed()).isEqualTo(5);
+    }
+
+    @Test
+    void completedJobIsIgnored() throws Exception {
+        ImportJob job = job("APPEND");
+        job.setStatus("COMPLETED");
+
+        worker.processImport(job.getId() + ";ARBOLES");
+
+        verify(jobRepository, never()).save(any());
+        verifyNoInteractions(bulkWriter, layerRepository);
+    }
+
+    @Test
+    void incrementalImportIsNotResumed() throws Exception {
+        ImportJob job = job("INCREMENTAL");
+        job.setStatus("PROCESSING");
+        job.setCheckpointOffset(3);
+        job.setCheckpointWritten(3);
+        when(bulkWriter.loadFeatureIndex(LAYER_ID, 2))
+                .thenReturn(new SpatialBulkWriter.FeatureIndex(new HashMap<>(), new ArrayList<>()));
+
+        worker.processImport(job.getId() + ";ARBOLES");
+
+        assertThat(inserted).containsExactly("f1", "f2", "f3", "f4", "f5");
+        assertThat(job.getCheckpointWritten()).isEqualTo(5);
+        assertThat(job.getRowsInserted()).isEqualTo(5);
+    }
+
+    private ImportJob job(String mode) throws Exception {
+        Path file = dir.resolve("arboles.geojson");
+        StringBuilder json = new StringBuilder("{\"type\":\"FeatureCollection\",\"features\":[");
+        for (int i = 1; i <= 5; i++) {
+            if (i > 1) json.append(',');
+            json.append("{\"type\":\"Feature\",\"id\":\"f").append(i)
+                    .append("\",\"properties\":{},\"geometry\":{\"type\":\"Point\",\"coordinates\":[-40.3,")
+                    .append(-20.0 - i / 100.0).append("]}}");
+        }
+        Files.writeString(file, json.append("]}").toString());
+
+        ImportJob job = ImportJob.builder()
+                .id(UUID.randomUUID())
+                .status("PENDING")
+                .importMode(mode)
+                .fileUrl(file.toString())
+                .build();
+        when(jobRepository.findById(job.getId())).thenReturn(Optional.of(job));
+        return job;
+    }
+}
@@ -0,0 +1,62 @@
+package com.ogt.gis.worker;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class LightPointBatchPublisherTest {
+
+    private RabbitTemplate rabbitTemplate;
+
+    @BeforeEach
+    void setUp() {
+        rabbitTemplate = mock(RabbitTemplate.class);
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        when(connectionFactory.isPublisherConfirms()).thenReturn(true);
+        when(rabbitTemplate.getConnectionFactory()).thenReturn(connectionFactory);
+    }
+
+    @Test
+    void fullWindowWithoutConfirmsFailsTheBatch() {
+        // Un lote por punto, uno solo en vuelo, y el broker nunca confirma
+        LightPointBatchPublisher publisher = new LightPointBatchPublisher(rabbitTemplate, 1 << 20, 1, 1, false, 50);
+        LightPointBatchPublisher.Session session = publisher.open(UUID.randomUUID());
+
+        session.add("{\"id\":1}");
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> session.add("{\"id\":2}"))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("lotes en vuelo");
+
+        assertThat((System.nanoTime() - start) / 1_000_000).isLessThan(5_000);
+        verify(rabbitTemplate, times(1)).send(anyString(), anyString(), any(Message.class), any(CorrelationData.class));
+    }
+
+    @Test
+    void confirmedBatchesFreeTheWindow() {
+        doAnswer(inv -> {
+            CorrelationData correlation = inv.getArgument(3);
+            correlation.getFuture().complete(new CorrelationData.Confirm(true, null));
+            return null;
+        }).when(rabbitTemplate).send(anyString(), anyString(), any(Message.class), any(CorrelationData.class));
+        LightPointBatchPublisher publisher = new LightPointBatchPublisher(rabbitTemplate, 1 << 20, 1, 1, false, 50);
+        LightPointBatchPublisher.Session session = publisher.open(UUID.randomUUID());
+
+        session.add("{\"id\":1}");
+        session.add("{\"id\":2}");
+        session.add("{\"id\":3}");
+
+        assertThat(session.awaitConfirms()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,152 @@
+package com.ogt.gis.worker;
+
+import com.ogt.gis.entity.ImportJob;
+import com.ogt.gis.repository.ImportJobRepository;
+import com.ogt.gis.repository.ImportOutboxRepository;
+import com.ogt.gis.repository.ImportOutboxRepository.OutboxRow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class OutboxRelayTest {
+
+    private static final UUID JOB_A = UUID.randomUUID();
+    private static final UUID JOB_B = UUID.randomUUID();
+
+    private RabbitTemplate rabbitTemplate;
+    private ImportOutboxRepository outbox;
+    private ImportJobRepository jobRepository;
+    private OutboxRelay relay;
+    private final List<CorrelationData> sent = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        rabbitTemplate = mock(RabbitTemplate.class);
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        when(connectionFactory.isPublisherConfirms()).thenReturn(true);
+        when(rabbitTemplate.getConnectionFactory()).thenReturn(connectionFactory);
+
+        outbox = mock(ImportOutboxRepository.class);
+        jobRepository = mock(ImportJobRepository.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(inv ->
+                inv.<TransactionCallback<?>>getArgument(0).doInTransaction(mock(TransactionStatus.class)));
+
+        // Un lote por punto
+        LightPointBatchPublisher publisher = new LightPointBatchPublisher(rabbitTemplate, 1 << 20, 1, 8, false, 5_000);
+        relay = new OutboxRelay(outbox, jobRepository, publisher, transactionTemplate, 100);
+    }
+
+    @Test
+    void rowsAreDeletedOnlyAfterEveryBatchIsAcked() {
+        // El broker confirma más tarde, desde otro hilo
+        brokerAnswers(true, 50);
+        List<OutboxRow> rows = rows(JOB_A, JOB_B, JOB_A);
+        when(outbox.claim(100)).thenReturn(rows, List.of());
+        doAnswer(inv -> {
+            assertThat(sent).hasSize(3);
+            assertThat(sent).allMatch(c -> c.getFuture().isDone() && c.getFuture().join().isAck());
+            return null;
+        }).when(outbox).delete(rows);
+
+        relay.relay();
+
+        verify(outbox).delete(rows);
+    }
+
+    @Test
+    void nackedPublishLeavesTheRowsForTheNextRun() {
+        brokerAnswers(false, 0);
+        List<OutboxRow> rows = rows(JOB_A, JOB_A);
+        when(outbox.claim(100)).thenReturn(rows, rows, List.of());
+
+        relay.relay();
+
+        verify(outbox, never()).delete(any());
+
+        brokerAnswers(true, 0);
+        relay.relay();
+
+        verify(outbox).delete(rows);
+    }
+
+    @Test
+    void failedPublishLeavesTheRowsForTheNextRun() {
+        doThrow(new AmqpException("conexión cerrada"))
+                .when(rabbitTemplate).send(anyString(), anyString(), any(Message.class), any(CorrelationData.class));
+        List<OutboxRow> rows = rows(JOB_A);
+        when(outbox.claim(100)).thenReturn(rows, rows, List.of());
+
+        relay.relay();
+
+        verify(outbox, never()).delete(any());
+
+        brokerAnswers(true, 0);
+        relay.relay();
+
+        verify(outbox).delete(rows);
+    }
+
+    @Test
+    void publishMetricsAreSavedOnceTheJobIsFinishedAndDrained() {
+        brokerAnswers(true, 0);
+        ImportJob job = ImportJob.builder().id(JOB_A).status("PROCESSING").stageMetrics("{\"read\":{}}").build();
+        when(jobRepository.findById(JOB_A)).thenReturn(Optional.of(job));
+        when(outbox.claim(100)).thenReturn(rows(JOB_A), List.of());
+        when(outbox.countByJob(JOB_A)).thenReturn(0);
+
+        // El import sigue corriendo
+        relay.relay();
+        verify(jobRepository, never()).save(any());
+
+        // Terminó pero todavía tiene filas sin publicar
+        job.setStatus("COMPLETED");
+        when(outbox.countByJob(JOB_A)).thenReturn(2);
+        relay.relay();
+        verify(jobRepository, never()).save(any());
+
+        when(outbox.countByJob(JOB_A)).thenReturn(0);
+        relay.relay();
+        relay.relay();
+
+        verify(jobRepository, times(1)).save(job);
+        assertThat(job.getStageMetrics()).contains("\"read\"").contains("\"publish\"").contains("\"records\":1");
+    }
+
+    /** Cada envío se confirma (o rechaza) {@code delayMs} después, en otro hilo. */
+    private void brokerAnswers(boolean ack, long delayMs) {
+        doAnswer(inv -> {
+            CorrelationData correlation = inv.getArgument(3);
+            sent.add(correlation);
+            CompletableFuture.runAsync(
+                    () -> correlation.getFuture().complete(new CorrelationData.Confirm(ack, ack ? null : "nack")),
+                    CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS));
+            return null;
+        }).when(rabbitTemplate).send(anyString(), anyString(), any(Message.class), any(CorrelationData.class));
+    }
+
+    private static List<OutboxRow> rows(UUID... jobs) {
+        OutboxRow[] rows = new OutboxRow[jobs.length];
+        for (int i = 0; i < jobs.length; i++) rows[i] = new OutboxRow(i + 1, jobs[i], "{\"id\":" + (i + 1) + "}");
+        return List.of(rows);
+    }
+}